@@ -0,0 +1,223 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.ojalgo.netio.BasicLogger.Printer;
+import org.ojalgo.netio.CharacterRing;
+import org.ojalgo.netio.CharacterRing.PrinterBuffer;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Optimisation;
+
+import mosek.Stream;
+
+/**
+ * Solves many independent models concurrently, on a bounded pool of worker threads, all sharing the one
+ * MOSEK environment of {@link SolverMosek#INTEGRATION}. The machine's cores are divided between the workers:
+ * each MOSEK task is limited to (cores / parallelism) threads so that the total never oversubscribes the
+ * machine. Each task logs to its own buffer, so output from concurrent solves is never interleaved.
+ * <p>
+ * Each model is solved by calling {@link ExpressionsBasedModel#minimise()}/{@link ExpressionsBasedModel#maximise()}
+ * on a worker thread - ojAlgo presolves and validates it, selects the integration, and writes the solution
+ * back to the model. Register {@link SolverMosek#INTEGRATION} as a preferred
+ * solver ({@link ExpressionsBasedModel#addPreferredSolver(ExpressionsBasedModel.Integration)}) for that to be
+ * MOSEK; the per task thread limit and log buffer only apply to MOSEK.
+ *
+ * @author apete
+ */
+public final class BatchSolver implements AutoCloseable {
+
+    /**
+     * What applies to the MOSEK solver built on a worker thread, while that thread solves a model.
+     */
+    static final class Local {
+
+        final Stream log;
+        SolverMosek solver = null;
+        final int threads;
+
+        Local(final Stream log, final int threads) {
+            super();
+            this.log = log;
+            this.threads = threads;
+        }
+
+    }
+
+    private static final ThreadLocal<Local> LOCAL = new ThreadLocal<>();
+
+    private static final Stream SILENT = new Stream() {
+
+        @Override
+        public void stream(final String message) {
+            // Discard
+        }
+    };
+
+    /**
+     * Called by {@link SolverMosek.Integration#build(ExpressionsBasedModel)} - if the current thread is
+     * solving a model for a batch solver, the solver gets that batch's thread limit and log buffer.
+     */
+    static void configure(final SolverMosek solver) {
+        final Local tmpLocal = LOCAL.get();
+        if ((tmpLocal != null) && (tmpLocal.solver == null)) {
+            tmpLocal.solver = solver;
+            solver.setLog(tmpLocal.log);
+            solver.setNumberOfThreads(tmpLocal.threads);
+        }
+    }
+
+    private final ExecutorService myExecutor;
+    private final SolverMosek.Integration myIntegration;
+    private final int myParallelism;
+    private final int myThreadsPerTask;
+
+    BatchSolver(final SolverMosek.Integration integration, final int parallelism) {
+
+        super();
+
+        final int tmpCores = Runtime.getRuntime().availableProcessors();
+
+        myIntegration = integration;
+        myParallelism = Math.max(1, Math.min(parallelism, tmpCores));
+        myThreadsPerTask = Math.max(1, tmpCores / myParallelism);
+
+        final AtomicInteger tmpCounter = new AtomicInteger();
+        final ThreadFactory tmpFactory = runnable -> {
+            final Thread retVal = new Thread(runnable, "MOSEK-batch-" + tmpCounter.incrementAndGet());
+            retVal.setDaemon(true);
+            return retVal;
+        };
+        myExecutor = Executors.newFixedThreadPool(myParallelism, tmpFactory);
+    }
+
+    public void close() {
+        myExecutor.shutdown();
+    }
+
+    public int getParallelism() {
+        return myParallelism;
+    }
+
+    public int getThreadsPerTask() {
+        return myThreadsPerTask;
+    }
+
+    /**
+     * Maximise all models, discarding MOSEK's log output.
+     *
+     * @return The results, in the same order as the models
+     */
+    public List<Optimisation.Result> maximiseAll(final Collection<ExpressionsBasedModel> models) {
+        return this.solveAll(models, false, null);
+    }
+
+    /**
+     * @param logs Supplies the target for each model's MOSEK log. The log is buffered during the solve and
+     *        flushed to the target afterwards. May be null, or return null, to discard the log.
+     * @return The results, in the same order as the models
+     */
+    public List<Optimisation.Result> maximiseAll(final Collection<ExpressionsBasedModel> models, final Function<ExpressionsBasedModel, Printer> logs) {
+        return this.solveAll(models, false, logs);
+    }
+
+    /**
+     * Minimise all models, discarding MOSEK's log output.
+     *
+     * @return The results, in the same order as the models
+     */
+    public List<Optimisation.Result> minimiseAll(final Collection<ExpressionsBasedModel> models) {
+        return this.solveAll(models, true, null);
+    }
+
+    /**
+     * @param logs Supplies the target for each model's MOSEK log. The log is buffered during the solve and
+     *        flushed to the target afterwards. May be null, or return null, to discard the log.
+     * @return The results, in the same order as the models
+     */
+    public List<Optimisation.Result> minimiseAll(final Collection<ExpressionsBasedModel> models, final Function<ExpressionsBasedModel, Printer> logs) {
+        return this.solveAll(models, true, logs);
+    }
+
+    private List<Optimisation.Result> solveAll(final Collection<ExpressionsBasedModel> models, final boolean minimisation,
+            final Function<ExpressionsBasedModel, Printer> logs) {
+
+        final List<Future<Optimisation.Result>> tmpFutures = new ArrayList<>(models.size());
+        for (final ExpressionsBasedModel tmpModel : models) {
+            final Printer tmpTarget = logs != null ? logs.apply(tmpModel) : null;
+            tmpFutures.add(myExecutor.submit(() -> this.solve(tmpModel, minimisation, tmpTarget)));
+        }
+
+        final List<Optimisation.Result> retVal = new ArrayList<>(tmpFutures.size());
+        for (final Future<Optimisation.Result> tmpFuture : tmpFutures) {
+            try {
+                retVal.add(tmpFuture.get());
+            } catch (final InterruptedException | ExecutionException cause) {
+                throw new IllegalStateException(cause);
+            }
+        }
+        return retVal;
+    }
+
+    Optimisation.Result solve(final ExpressionsBasedModel model, final boolean minimisation, final Printer log) {
+
+        final PrinterBuffer tmpBuffer = log != null ? new CharacterRing().asPrinter() : null;
+        final Stream tmpStream = tmpBuffer != null ? new Stream() {
+
+            @Override
+            public void stream(final String message) {
+                tmpBuffer.print(message);
+            }
+        } : SILENT;
+
+        final Local tmpLocal = new Local(tmpStream, myThreadsPerTask);
+        LOCAL.set(tmpLocal);
+
+        try {
+
+            // The MOSEK solver (if any) is built on this thread, and picks up the thread limit and log
+            return minimisation ? model.minimise() : model.maximise();
+
+        } finally {
+            LOCAL.remove();
+            if (tmpLocal.solver != null) {
+                // The task may be reused by other solvers
+                tmpLocal.solver.setLog(myIntegration.getStream());
+                tmpLocal.solver.dispose();
+            }
+            if (tmpBuffer != null) {
+                tmpBuffer.flush(log);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Optimisation;
+import org.ojalgo.optimisation.integer.IntegerSolver;
+
+/**
+ * Node mode: integer models are solved by ojAlgo's own branch-and-bound ({@link IntegerSolver}), and MOSEK
+ * solves the node relaxations with tasks retained per thread. This integration wraps the branch-and-bound so
+ * that those tasks are disposed as soon as the last of the (concurrently) running branch-and-bound solves has
+ * finished - their lifetime does not depend on that of the (pool) threads that solved the nodes.
+ * <p>
+ * Registered as a preferred solver by {@link SolverMosek.Integration#setNodeMode(boolean)}.
+ *
+ * @author apete
+ */
+final class BranchAndBound extends ExpressionsBasedModel.Integration<BranchAndBound.Solver> {
+
+    static final class Solver implements Optimisation.Solver {
+
+        private final IntegerSolver myDelegate;
+        private final BranchAndBound myIntegration;
+
+        Solver(final BranchAndBound integration, final IntegerSolver delegate) {
+            super();
+            myIntegration = integration;
+            myDelegate = delegate;
+        }
+
+        @Override
+        public void dispose() {
+            myDelegate.dispose();
+        }
+
+        public Optimisation.Result solve(final Optimisation.Result kickStarter) {
+            myIntegration.started();
+            try {
+                return myDelegate.solve(kickStarter);
+            } finally {
+                myIntegration.finished();
+            }
+        }
+
+    }
+
+    private final IntegerSolver.ModelIntegration myIntegerIntegration = new IntegerSolver.ModelIntegration();
+    private final IncrementalTasks<Thread> myNodeTasks;
+    private int myRunning = 0;
+
+    BranchAndBound(final IncrementalTasks<Thread> nodeTasks) {
+        super();
+        myNodeTasks = nodeTasks;
+    }
+
+    public BranchAndBound.Solver build(final ExpressionsBasedModel model) {
+        return new Solver(this, myIntegerIntegration.build(model));
+    }
+
+    public boolean isCapable(final ExpressionsBasedModel model) {
+        return model.isAnyVariableInteger() && myIntegerIntegration.isCapable(model);
+    }
+
+    @Override
+    public Optimisation.Result toModelState(final Optimisation.Result solverState, final ExpressionsBasedModel model) {
+        return myIntegerIntegration.toModelState(solverState, model);
+    }
+
+    @Override
+    public Optimisation.Result toSolverState(final Optimisation.Result modelState, final ExpressionsBasedModel model) {
+        return myIntegerIntegration.toSolverState(modelState, model);
+    }
+
+    @Override
+    protected boolean isSolutionMapped() {
+        return false;
+    }
+
+    /**
+     * @return The number of branch-and-bound solves running right now
+     */
+    synchronized int countRunning() {
+        return myRunning;
+    }
+
+    synchronized void finished() {
+        myRunning--;
+        if (myRunning == 0) {
+            // Tasks still in use (by a node solve outside any branch-and-bound) are disposed when checked in
+            myNodeTasks.clear();
+        }
+    }
+
+    synchronized void started() {
+        myRunning++;
+    }
+
+}
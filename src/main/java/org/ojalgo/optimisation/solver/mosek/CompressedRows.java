@@ -0,0 +1,293 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Arrays;
+
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.structure.Structure1D.IntIndex;
+
+import mosek.Env.boundkey;
+
+/**
+ * The linear part of a block of constraints in compressed sparse row (CSR) format, together with the row
+ * bounds. Rows are appended one at a time and the whole block is then pushed to a task with one
+ * slice call for the coefficients and one for the bounds. The arrays only ever grow so an instance can be
+ * reset and reused.
+ * <p>
+ * The same structure can just as well hold a block of variables (columns) in compressed sparse column (CSC)
+ * format - see {@link #putColumnsInto(TaskBackend, int)}.
+ *
+ * @author apete
+ */
+final class CompressedRows {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private boundkey[] myBoundKeys;
+    private double[] myLowerBounds;
+    private int myNumberOfElements = 0;
+    private int myNumberOfRows = 0;
+    private long[] myPointerBegin;
+    private long[] myPointerEnd;
+    private int[] mySubscripts;
+    private double[] myUpperBounds;
+    private double[] myValues;
+
+    CompressedRows() {
+        this(INITIAL_CAPACITY, INITIAL_CAPACITY);
+    }
+
+    CompressedRows(final int rowsCapacity, final int elementsCapacity) {
+
+        super();
+
+        final int tmpRows = Math.max(1, rowsCapacity);
+        final int tmpElements = Math.max(1, elementsCapacity);
+
+        myPointerBegin = new long[tmpRows];
+        myPointerEnd = new long[tmpRows];
+        myBoundKeys = new boundkey[tmpRows];
+        myLowerBounds = new double[tmpRows];
+        myUpperBounds = new double[tmpRows];
+
+        mySubscripts = new int[tmpElements];
+        myValues = new double[tmpElements];
+    }
+
+    /**
+     * Add a coefficient to the row currently being built (the one started by the most recent call to
+     * {@link #startRow()}).
+     */
+    void add(final int column, final double value) {
+
+        if (myNumberOfElements == mySubscripts.length) {
+            final int tmpCapacity = 2 * mySubscripts.length;
+            mySubscripts = Arrays.copyOf(mySubscripts, tmpCapacity);
+            myValues = Arrays.copyOf(myValues, tmpCapacity);
+        }
+
+        mySubscripts[myNumberOfElements] = column;
+        myValues[myNumberOfElements] = value;
+        myNumberOfElements++;
+    }
+
+    /**
+     * Add the linear factors of the expression to the row currently being built.
+     *
+     * @return The sum of the terms of fixed variables - to be subtracted from the row bounds
+     */
+    double addLinear(final Expression expression, final FreeVariables columns) {
+
+        double retVal = 0.0;
+
+        for (final IntIndex tmpKey : expression.getLinearKeySet()) {
+            if (tmpKey.index >= 0) {
+                final int tmpColumn = columns.column(tmpKey.index);
+                if (tmpColumn >= 0) {
+                    this.add(tmpColumn, expression.getAdjustedLinearFactor(tmpKey));
+                } else {
+                    retVal += expression.getAdjustedLinearFactor(tmpKey) * columns.value(tmpKey.index);
+                }
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Discard the row currently being built (it must be the last one).
+     */
+    void cancelRow() {
+        myNumberOfRows--;
+        myNumberOfElements = (int) myPointerBegin[myNumberOfRows];
+    }
+
+    /**
+     * Append all rows of another instance.
+     */
+    void append(final CompressedRows other) {
+
+        final int tmpOffset = myNumberOfElements;
+
+        for (int i = 0; i < other.myNumberOfRows; i++) {
+            this.startRow();
+            final int tmpRow = myNumberOfRows - 1;
+            myPointerBegin[tmpRow] = tmpOffset + other.myPointerBegin[i];
+            myPointerEnd[tmpRow] = tmpOffset + other.myPointerEnd[i];
+            myBoundKeys[tmpRow] = other.myBoundKeys[i];
+            myLowerBounds[tmpRow] = other.myLowerBounds[i];
+            myUpperBounds[tmpRow] = other.myUpperBounds[i];
+        }
+
+        final int tmpNumberOfElements = myNumberOfElements + other.myNumberOfElements;
+        if (tmpNumberOfElements > mySubscripts.length) {
+            mySubscripts = Arrays.copyOf(mySubscripts, tmpNumberOfElements);
+            myValues = Arrays.copyOf(myValues, tmpNumberOfElements);
+        }
+        System.arraycopy(other.mySubscripts, 0, mySubscripts, myNumberOfElements, other.myNumberOfElements);
+        System.arraycopy(other.myValues, 0, myValues, myNumberOfElements, other.myNumberOfElements);
+        myNumberOfElements = tmpNumberOfElements;
+    }
+
+    int countElements() {
+        return myNumberOfElements;
+    }
+
+    int countRows() {
+        return myNumberOfRows;
+    }
+
+    /**
+     * Complete the row currently being built.
+     */
+    void endRow(final boundkey boundType, final double lowerBound, final double upperBound) {
+
+        final int tmpRow = myNumberOfRows - 1;
+
+        myPointerEnd[tmpRow] = myNumberOfElements;
+        myBoundKeys[tmpRow] = boundType;
+        myLowerBounds[tmpRow] = lowerBound;
+        myUpperBounds[tmpRow] = upperBound;
+    }
+
+    boundkey getBoundKey(final int row) {
+        return myBoundKeys[row];
+    }
+
+    int getColumn(final int element) {
+        return mySubscripts[element];
+    }
+
+    double getLowerBound(final int row) {
+        return myLowerBounds[row];
+    }
+
+    int getRowBegin(final int row) {
+        return (int) myPointerBegin[row];
+    }
+
+    int getRowEnd(final int row) {
+        return (int) myPointerEnd[row];
+    }
+
+    double getUpperBound(final int row) {
+        return myUpperBounds[row];
+    }
+
+    double getValue(final int element) {
+        return myValues[element];
+    }
+
+    /**
+     * Push the block to the task as columns, starting at task variable index firstColumn: the "rows" of this
+     * block are the variables, and their elements are constraint (row) subscripts. The bounds are variable
+     * bounds.
+     */
+    void putColumnsInto(final TaskBackend task, final int firstColumn) {
+
+        if (myNumberOfRows == 0) {
+            return;
+        }
+
+        final int tmpLast = firstColumn + myNumberOfRows;
+
+        if (myNumberOfElements > 0) {
+            task.putacolslice(firstColumn, tmpLast, this.trimRows(myPointerBegin), this.trimRows(myPointerEnd), this.trimElements(mySubscripts),
+                    this.trimElements(myValues));
+        }
+
+        task.putvarboundslice(firstColumn, tmpLast, this.trimRows(myBoundKeys), this.trimRows(myLowerBounds), this.trimRows(myUpperBounds));
+    }
+
+    /**
+     * Push all rows to the task, starting at task constraint index firstRow. Does nothing if there are no
+     * rows.
+     */
+    void putInto(final TaskBackend task, final int firstRow) {
+
+        if (myNumberOfRows == 0) {
+            return;
+        }
+
+        final int tmpLast = firstRow + myNumberOfRows;
+
+        if (myNumberOfElements > 0) {
+            task.putarowslice(firstRow, tmpLast, this.trimRows(myPointerBegin), this.trimRows(myPointerEnd), this.trimElements(mySubscripts),
+                    this.trimElements(myValues));
+        }
+
+        task.putconboundslice(firstRow, tmpLast, this.trimRows(myBoundKeys), this.trimRows(myLowerBounds), this.trimRows(myUpperBounds));
+    }
+
+    void reset() {
+        myNumberOfRows = 0;
+        myNumberOfElements = 0;
+    }
+
+    /**
+     * Start a new row. Coefficients added from now on, until the matching {@link #endRow(boundkey, double, double)},
+     * belong to this row.
+     */
+    void startRow() {
+
+        if (myNumberOfRows == myPointerBegin.length) {
+            final int tmpCapacity = 2 * myPointerBegin.length;
+            myPointerBegin = Arrays.copyOf(myPointerBegin, tmpCapacity);
+            myPointerEnd = Arrays.copyOf(myPointerEnd, tmpCapacity);
+            myBoundKeys = Arrays.copyOf(myBoundKeys, tmpCapacity);
+            myLowerBounds = Arrays.copyOf(myLowerBounds, tmpCapacity);
+            myUpperBounds = Arrays.copyOf(myUpperBounds, tmpCapacity);
+        }
+
+        myPointerBegin[myNumberOfRows] = myNumberOfElements;
+        myPointerEnd[myNumberOfRows] = myNumberOfElements;
+        myNumberOfRows++;
+    }
+
+    /*
+     * The trim methods only copy if the array is larger than its content. The JNI layer copies the arrays
+     * anyway, so a copy here would be a second one. Blocks created with exact capacity, such as the stitched
+     * ones, are passed on without any copying.
+     */
+
+    private double[] trimElements(final double[] elementValues) {
+        return elementValues.length == myNumberOfElements ? elementValues : Arrays.copyOf(elementValues, myNumberOfElements);
+    }
+
+    private int[] trimElements(final int[] elementValues) {
+        return elementValues.length == myNumberOfElements ? elementValues : Arrays.copyOf(elementValues, myNumberOfElements);
+    }
+
+    private boundkey[] trimRows(final boundkey[] rowValues) {
+        return rowValues.length == myNumberOfRows ? rowValues : Arrays.copyOf(rowValues, myNumberOfRows);
+    }
+
+    private double[] trimRows(final double[] rowValues) {
+        return rowValues.length == myNumberOfRows ? rowValues : Arrays.copyOf(rowValues, myNumberOfRows);
+    }
+
+    private long[] trimRows(final long[] rowValues) {
+        return rowValues.length == myNumberOfRows ? rowValues : Arrays.copyOf(rowValues, myNumberOfRows);
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ojalgo.matrix.decomposition.Cholesky;
+import org.ojalgo.matrix.decomposition.Eigenvalue;
+import org.ojalgo.matrix.store.MatrixStore;
+import org.ojalgo.matrix.store.Primitive64Store;
+import org.ojalgo.optimisation.Expression;
+
+import mosek.Env.boundkey;
+import mosek.Env.conetype;
+
+/**
+ * Replaces dense, convex, quadratic terms x<sup>T</sup>Qx with rotated quadratic cones. Q is factored once,
+ * Q = FF<sup>T</sup>, and each term is replaced by a new variable t with
+ * <ul>
+ * <li>y = F<sup>T</sup>x (new free variables y and new equality constraints)</li>
+ * <li>2 t s &ge; ||y||<sup>2</sup> with s fixed at 0.5, i.e. t &ge; x<sup>T</sup>Qx (a rotated quadratic
+ * cone)</li>
+ * </ul>
+ * For the interior-point optimizer that is much cheaper than a dense Q, which has to be factored in every
+ * iteration. The new variables and constraints are appended after the model's, so the solution of the
+ * model's variables is unaffected.
+ * <p>
+ * F is the Cholesky factor if Q is positive definite. If it is only positive semidefinite (rank deficient,
+ * as covariance matrices of factor models often are) F is taken from an eigenvalue decomposition, and y only
+ * has as many elements as the rank of Q.
+ * <p>
+ * MOSEK does not accept a task that mixes cones with general quadratic terms, so it's all or nothing: a term
+ * is only reformulated if every quadratic term of the model can be. That requires that each term involves
+ * at least a minimum number of variables, is dense enough, belongs to the objective or to a one-sided
+ * constraint, and (after adjusting for the sense of the objective or constraint) is positive semidefinite.
+ * The factors are computed up front, by {@link #of(int, double, List, Expression, FreeVariables, boolean)},
+ * and then consumed in translation order.
+ *
+ * @author apete
+ */
+final class ConicReformulation {
+
+    static final class Factor {
+
+        final MatrixStore<Double> factor;
+        final int rank;
+        final double sign;
+        final int[] variables;
+
+        Factor(final int[] variables, final MatrixStore<Double> factor, final int rank, final double sign) {
+            super();
+            this.variables = variables;
+            this.factor = factor;
+            this.rank = rank;
+            this.sign = sign;
+        }
+
+    }
+
+    /**
+     * Relative to the largest eigenvalue - smaller eigenvalues are considered to be zero.
+     */
+    private static final double EIGENVALUE_TOLERANCE = 1E-12;
+
+    /**
+     * @param constraints The (model) constraints, in the order they will be translated
+     * @param minimisation The sense of the objective
+     * @return An instance with factors prepared for every quadratic term (the constraints' in order, then the
+     *         objective's), or null if there are no quadratic terms or if any one of them can't be
+     *         reformulated
+     */
+    static ConicReformulation of(final int minimumSize, final double minimumDensity, final List<Expression> constraints, final Expression objective,
+            final FreeVariables columns, final boolean minimisation) {
+
+        final ConicReformulation retVal = new ConicReformulation(minimumSize, minimumDensity);
+
+        for (final Expression tmpConstraint : constraints) {
+            if (!tmpConstraint.getQuadraticKeySet().isEmpty()) {
+                final Expression tmpReduced = columns.reduce(tmpConstraint);
+                final TermBuffer tmpTerms = TermBuffer.local().quadratic(tmpReduced, columns);
+                if (tmpTerms.countQuadratic() > 0) {
+                    // Only one-sided constraints can be convex
+                    final boundkey tmpBoundType = SolverMosek.getBoundKey(tmpReduced);
+                    if ((tmpBoundType != boundkey.up) && (tmpBoundType != boundkey.lo)) {
+                        return null;
+                    }
+                    if (!retVal.prepare(tmpTerms, tmpBoundType == boundkey.up ? 1.0 : -1.0)) {
+                        return null;
+                    }
+                }
+            }
+        }
+
+        final TermBuffer tmpTerms = TermBuffer.local().quadratic(columns.reduce(objective), columns);
+        if ((tmpTerms.countQuadratic() > 0) && !retVal.prepare(tmpTerms, minimisation ? 1.0 : -1.0)) {
+            return null;
+        }
+
+        return retVal.myFactors.isEmpty() ? null : retVal;
+    }
+
+    private static int[] distinct(final TermBuffer terms) {
+
+        final int tmpCount = terms.countQuadratic();
+
+        final int[] tmpAll = new int[2 * tmpCount];
+        for (int e = 0; e < tmpCount; e++) {
+            tmpAll[2 * e] = terms.quadraticRow(e);
+            tmpAll[(2 * e) + 1] = terms.quadraticColumn(e);
+        }
+        Arrays.sort(tmpAll);
+
+        int tmpDistinct = 0;
+        for (int i = 0; i < tmpAll.length; i++) {
+            if ((i == 0) || (tmpAll[i] != tmpAll[i - 1])) {
+                tmpAll[tmpDistinct++] = tmpAll[i];
+            }
+        }
+
+        return Arrays.copyOf(tmpAll, tmpDistinct);
+    }
+
+    private final ArrayDeque<Factor> myFactors = new ArrayDeque<>();
+    private final double myMinimumDensity;
+    private final int myMinimumSize;
+
+    ConicReformulation(final int minimumSize, final double minimumDensity) {
+        super();
+        myMinimumSize = minimumSize;
+        myMinimumDensity = minimumDensity;
+    }
+
+    /**
+     * Replace the next quadratic term, in translation order, with a cone.
+     *
+     * @param terms The canonicalised (lower triangular, doubled diagonal) quadratic terms
+     * @param row The constraint to which the term belongs, or -1 for the objective
+     */
+    void reformulate(final TaskBackend task, final TermBuffer terms, final int row) {
+
+        final Factor tmpFactor = myFactors.poll();
+        if ((tmpFactor == null) || !Arrays.equals(tmpFactor.variables, ConicReformulation.distinct(terms))) {
+            throw new IllegalStateException("Quadratic terms not translated in the order they were prepared!");
+        }
+
+        final int tmpSize = tmpFactor.variables.length;
+        final int tmpRank = tmpFactor.rank;
+
+        final int tmpT = task.getnumvar();
+        final int tmpFirstY = tmpT + 2;
+        final int tmpFirstRow = task.getnumcon();
+
+        task.appendvars(tmpRank + 2);
+        task.appendcons(tmpRank);
+
+        final boundkey[] tmpKeys = new boundkey[tmpRank + 2];
+        final double[] tmpLower = new double[tmpRank + 2];
+        final double[] tmpUpper = new double[tmpRank + 2];
+        tmpKeys[0] = boundkey.lo;
+        tmpUpper[0] = Double.POSITIVE_INFINITY;
+        tmpKeys[1] = boundkey.fx;
+        tmpLower[1] = 0.5;
+        tmpUpper[1] = 0.5;
+        for (int r = 0; r < tmpRank; r++) {
+            tmpKeys[2 + r] = boundkey.fr;
+            tmpLower[2 + r] = Double.NEGATIVE_INFINITY;
+            tmpUpper[2 + r] = Double.POSITIVE_INFINITY;
+        }
+        task.putvarboundslice(tmpT, tmpT + tmpRank + 2, tmpKeys, tmpLower, tmpUpper);
+
+        // y_r - sum_i F(i,r) x_i = 0
+        final CompressedRows tmpRows = new CompressedRows(tmpRank, (tmpRank * tmpSize) + tmpRank);
+        for (int r = 0; r < tmpRank; r++) {
+            tmpRows.startRow();
+            tmpRows.add(tmpFirstY + r, 1.0);
+            for (int i = 0; i < tmpSize; i++) {
+                final double tmpValue = tmpFactor.factor.doubleValue(i, r);
+                if (tmpValue != 0.0) {
+                    tmpRows.add(tmpFactor.variables[i], -tmpValue);
+                }
+            }
+            tmpRows.endRow(boundkey.fx, 0.0, 0.0);
+        }
+        tmpRows.putInto(task, tmpFirstRow);
+
+        final int[] tmpMembers = new int[tmpRank + 2];
+        for (int m = 0; m < tmpMembers.length; m++) {
+            tmpMembers[m] = tmpT + m;
+        }
+        task.appendcone(conetype.rquad, 0.0, tmpMembers);
+
+        // sign * t replaces the quadratic term
+        if (row < 0) {
+            task.putcj(tmpT, tmpFactor.sign);
+        } else {
+            task.putaij(row, tmpT, tmpFactor.sign);
+        }
+    }
+
+    /**
+     * @param sign +1 if the term must be convex (minimised objective or upper limited constraint) -1 if it
+     *        must be concave (maximised objective or lower limited constraint)
+     * @return true if the term can be reformulated, and the factor was queued
+     */
+    private boolean prepare(final TermBuffer terms, final double sign) {
+
+        final int tmpCount = terms.countQuadratic();
+
+        final int[] tmpVariables = ConicReformulation.distinct(terms);
+        final int tmpSize = tmpVariables.length;
+
+        if ((tmpSize < myMinimumSize) || (tmpCount < (myMinimumDensity * ((tmpSize * (tmpSize + 1.0)) / 2.0)))) {
+            return false;
+        }
+
+        // The symmetric S with x'Sx = sign * (the term). The buffered (MOSEK form) values are 2*S(i,j), diagonal or not.
+        final Primitive64Store tmpMatrix = Primitive64Store.FACTORY.make(tmpSize, tmpSize);
+        for (int e = 0; e < tmpCount; e++) {
+            final int tmpRow = Arrays.binarySearch(tmpVariables, terms.quadraticRow(e));
+            final int tmpCol = Arrays.binarySearch(tmpVariables, terms.quadraticColumn(e));
+            final double tmpValue = (sign * terms.quadraticValue(e)) / 2.0;
+            tmpMatrix.set(tmpRow, tmpCol, tmpValue);
+            tmpMatrix.set(tmpCol, tmpRow, tmpValue);
+        }
+
+        final Cholesky<Double> tmpCholesky = Cholesky.PRIMITIVE.make(tmpMatrix);
+        if (tmpCholesky.decompose(tmpMatrix) && tmpCholesky.isSPD()) {
+            myFactors.add(new Factor(tmpVariables, tmpCholesky.getL(), tmpSize, sign));
+            return true;
+        }
+
+        // Not positive definite - maybe semidefinite: S = VDV' and F = V sqrt(D), keeping the nonzero eigenvalues
+        final Eigenvalue<Double> tmpEigenvalue = Eigenvalue.PRIMITIVE.make(tmpMatrix, true);
+        if (!tmpEigenvalue.decompose(tmpMatrix)) {
+            return false;
+        }
+        final MatrixStore<Double> tmpD = tmpEigenvalue.getD();
+        final MatrixStore<Double> tmpV = tmpEigenvalue.getV();
+
+        double tmpLargest = 0.0;
+        for (int k = 0; k < tmpSize; k++) {
+            tmpLargest = Math.max(tmpLargest, Math.abs(tmpD.doubleValue(k, k)));
+        }
+        final double tmpTolerance = EIGENVALUE_TOLERANCE * Math.max(1.0, tmpLargest) * tmpSize;
+
+        final Primitive64Store tmpF = Primitive64Store.FACTORY.make(tmpSize, tmpSize);
+        int tmpRank = 0;
+        for (int k = 0; k < tmpSize; k++) {
+            final double tmpValue = tmpD.doubleValue(k, k);
+            if (tmpValue < -tmpTolerance) {
+                return false;
+            } else if (tmpValue > tmpTolerance) {
+                final double tmpScale = Math.sqrt(tmpValue);
+                for (int i = 0; i < tmpSize; i++) {
+                    tmpF.set(i, tmpRank, tmpScale * tmpV.doubleValue(i, k));
+                }
+                tmpRank++;
+            }
+        }
+
+        if (tmpRank == 0) {
+            return false;
+        }
+
+        myFactors.add(new Factor(tmpVariables, tmpF, tmpRank, sign));
+        return true;
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.ojalgo.optimisation.Expression;
+
+import mosek.Env.boundkey;
+
+/**
+ * The row data extracted from a contiguous partition of the constraints: the linear parts and bounds in CSR
+ * format, with the fixed variables already moved to the bounds, the quadratic constraints (by row within the
+ * block), and the singleton rows that were turned into variable bounds. Extraction only reads the model, so
+ * partitions can be extracted in parallel - see {@link #extract(List, FreeVariables, boolean)}. Anything
+ * that touches the task is done afterwards, on the calling thread.
+ *
+ * @author apete
+ */
+final class ConstraintBlock {
+
+    /**
+     * Below this number of constraints everything is extracted as one block on the calling thread.
+     */
+    static final int PARALLEL_THRESHOLD = 8_192;
+
+    private static final int MINIMUM_BLOCK_SIZE = 1_024;
+
+    /**
+     * Extract all constraints, in parallel (on the common fork/join pool) if there are many.
+     *
+     * @return One or more blocks, in constraint order
+     */
+    static ConstraintBlock[] extract(final List<Expression> constraints, final FreeVariables columns, final boolean eliminate) {
+
+        final int tmpNumberOfConstraints = constraints.size();
+        final int tmpParallelism = ForkJoinPool.getCommonPoolParallelism();
+
+        if ((tmpNumberOfConstraints < PARALLEL_THRESHOLD) || (tmpParallelism <= 1)) {
+            return new ConstraintBlock[] { ConstraintBlock.extract(constraints, 0, tmpNumberOfConstraints, columns, eliminate) };
+        }
+
+        // A few partitions per thread evens out differences in row density
+        final int tmpNumberOfBlocks = Math.min(4 * tmpParallelism, Math.max(1, tmpNumberOfConstraints / MINIMUM_BLOCK_SIZE));
+        final int tmpBlockSize = (tmpNumberOfConstraints + tmpNumberOfBlocks - 1) / tmpNumberOfBlocks;
+
+        return IntStream.range(0, tmpNumberOfBlocks).parallel().mapToObj(b -> {
+            final int tmpFrom = Math.min(tmpNumberOfConstraints, b * tmpBlockSize);
+            final int tmpTo = Math.min(tmpNumberOfConstraints, tmpFrom + tmpBlockSize);
+            return ConstraintBlock.extract(constraints, tmpFrom, tmpTo, columns, eliminate);
+        }).toArray(ConstraintBlock[]::new);
+    }
+
+    /**
+     * Stitch the rows of the blocks together into one CSR structure.
+     */
+    static CompressedRows stitch(final ConstraintBlock[] blocks) {
+
+        if (blocks.length == 1) {
+            return blocks[0].rows;
+        }
+
+        int tmpNumberOfRows = 0;
+        int tmpNumberOfElements = 0;
+        for (final ConstraintBlock tmpBlock : blocks) {
+            tmpNumberOfRows += tmpBlock.rows.countRows();
+            tmpNumberOfElements += tmpBlock.rows.countElements();
+        }
+
+        final CompressedRows retVal = new CompressedRows(tmpNumberOfRows, tmpNumberOfElements);
+        for (final ConstraintBlock tmpBlock : blocks) {
+            retVal.append(tmpBlock.rows);
+        }
+        return retVal;
+    }
+
+    private static ConstraintBlock extract(final List<Expression> constraints, final int from, final int to, final FreeVariables columns,
+            final boolean eliminate) {
+
+        final int tmpNumberOfConstraints = to - from;
+
+        final ConstraintBlock retVal = new ConstraintBlock(tmpNumberOfConstraints);
+        final CompressedRows tmpRows = retVal.rows;
+
+        for (int c = from; c < to; c++) {
+
+            final Expression tmpConstraint = columns.reduce(constraints.get(c));
+            final boundkey tmpBoundType = SolverMosek.getBoundKey(tmpConstraint);
+
+            tmpRows.startRow();
+            final double tmpFixed = tmpRows.addLinear(tmpConstraint, columns);
+            final double tmpLowerBound = tmpConstraint.getAdjustedLowerLimit() - tmpFixed;
+            final double tmpUpperBound = tmpConstraint.getAdjustedUpperLimit() - tmpFixed;
+
+            final int tmpRow = tmpRows.countRows() - 1;
+            final int tmpBegin = tmpRows.getRowBegin(tmpRow);
+            final int tmpNumberOfElements = tmpRows.countElements() - tmpBegin;
+            final boolean tmpLinear = tmpConstraint.getQuadraticKeySet().isEmpty();
+
+            if (eliminate && tmpLinear && (tmpNumberOfElements == 0) && SolverMosek.isSatisfied(tmpBoundType, tmpLowerBound, tmpUpperBound)) {
+                tmpRows.cancelRow();
+            } else if (eliminate && tmpLinear && (tmpNumberOfElements == 1) && (tmpRows.getValue(tmpBegin) != 0.0)) {
+                retVal.addSingleton(tmpRows.getColumn(tmpBegin), tmpRows.getValue(tmpBegin), tmpBoundType, tmpLowerBound, tmpUpperBound);
+                tmpRows.cancelRow();
+            } else {
+                tmpRows.endRow(tmpBoundType, tmpLowerBound, tmpUpperBound);
+                if (!tmpLinear) {
+                    retVal.quadratic[tmpRow] = tmpConstraint;
+                }
+            }
+        }
+
+        return retVal;
+    }
+
+    private boundkey[] mySingletonBoundKeys = new boundkey[0];
+    private int[] mySingletonColumns = new int[0];
+    private double[] mySingletonFactors = new double[0];
+    private double[] mySingletonLower = new double[0];
+    private int mySingletons = 0;
+    private double[] mySingletonUpper = new double[0];
+    /**
+     * The (reduced) quadratic constraints, indexed by row within the block. null for linear rows.
+     */
+    final Expression[] quadratic;
+    final CompressedRows rows;
+
+    ConstraintBlock(final int numberOfConstraints) {
+
+        super();
+
+        rows = new CompressedRows(numberOfConstraints, 4 * numberOfConstraints);
+        quadratic = new Expression[numberOfConstraints];
+    }
+
+    /**
+     * Apply the bounds implied by the singleton rows to the variables of the solver's task.
+     */
+    void putSingletons(final SolverMosek solver) {
+        for (int s = 0; s < mySingletons; s++) {
+            solver.tightenBounds(mySingletonColumns[s], mySingletonFactors[s], mySingletonBoundKeys[s], mySingletonLower[s], mySingletonUpper[s]);
+        }
+    }
+
+    private void addSingleton(final int column, final double factor, final boundkey boundType, final double lowerBound, final double upperBound) {
+
+        if (mySingletons == mySingletonColumns.length) {
+            final int tmpCapacity = Math.max(8, 2 * mySingletons);
+            mySingletonColumns = Arrays.copyOf(mySingletonColumns, tmpCapacity);
+            mySingletonFactors = Arrays.copyOf(mySingletonFactors, tmpCapacity);
+            mySingletonBoundKeys = Arrays.copyOf(mySingletonBoundKeys, tmpCapacity);
+            mySingletonLower = Arrays.copyOf(mySingletonLower, tmpCapacity);
+            mySingletonUpper = Arrays.copyOf(mySingletonUpper, tmpCapacity);
+        }
+
+        mySingletonColumns[mySingletons] = column;
+        mySingletonFactors[mySingletons] = factor;
+        mySingletonBoundKeys[mySingletons] = boundType;
+        mySingletonLower[mySingletons] = lowerBound;
+        mySingletonUpper[mySingletons] = upperBound;
+        mySingletons++;
+    }
+
+}
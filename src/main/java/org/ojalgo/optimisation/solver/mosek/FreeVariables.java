@@ -0,0 +1,183 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Variable;
+import org.ojalgo.structure.Structure1D.IntIndex;
+import org.ojalgo.structure.Structure2D.IntRowColumn;
+
+/**
+ * Maps model variable indices to task columns. Fixed variables are not columns - wherever they occur their
+ * contribution is moved to the row bounds on the fly (by the code that extracts the terms) rather than by
+ * first creating compensated copies of the expressions. Only expressions with quadratic terms involving
+ * fixed variables are still compensated (see {@link #reduce(Expression)}), since those terms change the
+ * linear part.
+ *
+ * @author apete
+ */
+final class FreeVariables {
+
+    /**
+     * Every model variable is a column, with the same index, also the fixed ones.
+     */
+    static FreeVariables all(final ExpressionsBasedModel model) {
+
+        final List<Variable> tmpVariables = model.getVariables();
+
+        final int[] tmpColumns = new int[tmpVariables.size()];
+        for (int j = 0; j < tmpColumns.length; j++) {
+            tmpColumns[j] = j;
+        }
+
+        return new FreeVariables(tmpVariables, tmpColumns, new double[tmpColumns.length], Collections.emptySet());
+    }
+
+    /**
+     * The free model variables are the columns.
+     */
+    static FreeVariables of(final ExpressionsBasedModel model) {
+
+        final List<Variable> tmpVariables = model.getVariables();
+        final Set<IntIndex> tmpFixed = model.getFixedVariables();
+
+        final int[] tmpColumns = new int[tmpVariables.size()];
+        final double[] tmpValues = new double[tmpVariables.size()];
+
+        if (tmpFixed.isEmpty()) {
+            for (int j = 0; j < tmpColumns.length; j++) {
+                tmpColumns[j] = j;
+            }
+            return new FreeVariables(tmpVariables, tmpColumns, tmpValues, tmpFixed);
+        }
+
+        Arrays.fill(tmpColumns, -1);
+        for (final IntIndex tmpIndex : tmpFixed) {
+            tmpValues[tmpIndex.index] = tmpVariables.get(tmpIndex.index).getUnadjustedLowerLimit();
+        }
+
+        final List<Variable> tmpFreeVariables = model.getFreeVariables();
+        for (int j = 0; j < tmpFreeVariables.size(); j++) {
+            tmpColumns[model.indexOf(tmpFreeVariables.get(j))] = j;
+        }
+
+        return new FreeVariables(tmpFreeVariables, tmpColumns, tmpValues, tmpFixed);
+    }
+
+    private final int[] myColumns;
+    private final Set<IntIndex> myFixed;
+    private final double[] myValues;
+    private final List<Variable> myVariables;
+
+    FreeVariables(final List<Variable> variables, final int[] columns, final double[] values, final Set<IntIndex> fixed) {
+
+        super();
+
+        myVariables = variables;
+        myColumns = columns;
+        myValues = values;
+        myFixed = fixed;
+    }
+
+    /**
+     * @return The value of the terms that only involve fixed variables (unadjusted, in model units) - the
+     *         part of the expression that is not passed to the task.
+     */
+    double constant(final Expression expression) {
+
+        if (myFixed.isEmpty()) {
+            return 0.0;
+        }
+
+        double retVal = 0.0;
+
+        for (final IntIndex tmpKey : expression.getLinearKeySet()) {
+            if ((tmpKey.index >= 0) && (myColumns[tmpKey.index] < 0)) {
+                retVal += expression.get(tmpKey).doubleValue() * myValues[tmpKey.index];
+            }
+        }
+
+        for (final IntRowColumn tmpKey : expression.getQuadraticKeySet()) {
+            if ((tmpKey.row >= 0) && (tmpKey.column >= 0) && (myColumns[tmpKey.row] < 0) && (myColumns[tmpKey.column] < 0)) {
+                retVal += expression.get(tmpKey).doubleValue() * myValues[tmpKey.row] * myValues[tmpKey.column];
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * @param index A model variable index
+     * @return The task column, or -1 if the variable is fixed
+     */
+    int column(final int index) {
+        return index >= 0 ? myColumns[index] : -1;
+    }
+
+    /**
+     * @return The number of columns
+     */
+    int count() {
+        return myVariables.size();
+    }
+
+    /**
+     * @return The (free) variables, in column order
+     */
+    List<Variable> getVariables() {
+        return myVariables;
+    }
+
+    /**
+     * @return The expression itself, or a compensated copy if it has quadratic terms involving fixed
+     *         variables.
+     */
+    Expression reduce(final Expression expression) {
+
+        if (myFixed.isEmpty()) {
+            return expression;
+        }
+
+        for (final IntRowColumn tmpKey : expression.getQuadraticKeySet()) {
+            if ((tmpKey.row >= 0) && (tmpKey.column >= 0) && ((myColumns[tmpKey.row] < 0) || (myColumns[tmpKey.column] < 0))) {
+                return expression.compensate(myFixed);
+            }
+        }
+
+        return expression;
+    }
+
+    /**
+     * @param index A model variable index
+     * @return The value of a fixed variable (0.0 for free variables)
+     */
+    double value(final int index) {
+        return index >= 0 ? myValues[index] : 0.0;
+    }
+
+}
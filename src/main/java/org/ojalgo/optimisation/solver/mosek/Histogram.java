@@ -0,0 +1,113 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Arrays;
+
+/**
+ * A small, thread safe, log-linear bucketed histogram of non-negative long values (durations in
+ * nanoseconds, iteration counts...). Each power of 2 is split into 8 sub-buckets, so percentiles are
+ * accurate to within 12.5%.
+ *
+ * @author apete
+ */
+final class Histogram {
+
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0L, value);
+        }
+        final int tmpExponent = 63 - Long.numberOfLeadingZeros(value);
+        final int tmpSub = (int) ((value >>> (tmpExponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return ((tmpExponent - SUB_BITS + 1) * SUB_BUCKETS) + tmpSub;
+    }
+
+    static long lowerBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int tmpExponent = ((bucket / SUB_BUCKETS) - 1) + SUB_BITS;
+        final long tmpSub = bucket % SUB_BUCKETS;
+        return (1L << tmpExponent) + (tmpSub << (tmpExponent - SUB_BITS));
+    }
+
+    private long myCount = 0L;
+    private final long[] myCounts = new long[Histogram.bucket(Long.MAX_VALUE) + 1];
+    private long myMax = 0L;
+    private double mySum = 0.0;
+
+    Histogram() {
+        super();
+    }
+
+    synchronized long count() {
+        return myCount;
+    }
+
+    synchronized long max() {
+        return myMax;
+    }
+
+    synchronized double mean() {
+        return myCount > 0L ? mySum / myCount : 0.0;
+    }
+
+    /**
+     * @param quantile 0.0 - 1.0
+     */
+    synchronized long percentile(final double quantile) {
+
+        if (myCount == 0L) {
+            return 0L;
+        }
+
+        final long tmpRank = (long) Math.ceil(quantile * myCount);
+
+        long tmpSeen = 0L;
+        for (int b = 0; b < myCounts.length; b++) {
+            tmpSeen += myCounts[b];
+            if (tmpSeen >= tmpRank) {
+                return Math.min(Histogram.lowerBound(b), myMax);
+            }
+        }
+        return myMax;
+    }
+
+    synchronized void record(final long value) {
+        final long tmpValue = Math.max(0L, value);
+        myCounts[Histogram.bucket(tmpValue)]++;
+        myCount++;
+        mySum += tmpValue;
+        myMax = Math.max(myMax, tmpValue);
+    }
+
+    synchronized void reset() {
+        Arrays.fill(myCounts, 0L);
+        myCount = 0L;
+        mySum = 0.0;
+        myMax = 0L;
+    }
+
+}
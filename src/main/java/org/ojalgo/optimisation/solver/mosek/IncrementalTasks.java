@@ -0,0 +1,154 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import mosek.Task;
+
+/**
+ * Keeps a MOSEK task (and a snapshot of the values pushed to it) per owner, so that solving a model with the
+ * same structure again only needs to push the changes. In incremental mode the owner is the model, in node
+ * mode it is the thread. Owners are weakly referenced - when an owner is garbage collected (without having
+ * been released) its task is disposed by the {@link NativeCleaner}.
+ *
+ * @author apete
+ */
+final class IncrementalTasks<K> {
+
+    static final class Entry {
+
+        boolean busy = true;
+        NativeCleaner.Cleanable cleanable = null;
+        boolean discarded = false;
+        final TaskCache.Key key;
+        ModelSnapshot snapshot;
+        final Task task;
+
+        Entry(final Task task, final TaskCache.Key key, final ModelSnapshot snapshot) {
+            super();
+            this.task = task;
+            this.key = key;
+            this.snapshot = snapshot;
+        }
+
+    }
+
+    private final Map<K, Entry> myEntries = new WeakHashMap<>();
+
+    IncrementalTasks() {
+        super();
+    }
+
+    /**
+     * Mark the entry as no longer in use. If it was discarded while in use its task is disposed now.
+     */
+    synchronized void checkIn(final Entry entry) {
+        entry.busy = false;
+        if (entry.discarded) {
+            TaskPool.dispose(entry.task);
+        }
+    }
+
+    /**
+     * @return The entry for this owner, if it exists, is not in use and has the same structure - otherwise
+     *         null. A non-matching idle entry is discarded.
+     */
+    synchronized Entry checkOut(final K owner, final TaskCache.Key key) {
+
+        final Entry tmpEntry = myEntries.get(owner);
+
+        if ((tmpEntry == null) || tmpEntry.busy) {
+            return null;
+        }
+
+        if (tmpEntry.key.equals(key)) {
+            tmpEntry.busy = true;
+            return tmpEntry;
+        }
+
+        myEntries.remove(owner);
+        this.discard(tmpEntry);
+        return null;
+    }
+
+    synchronized void clear() {
+        for (final Entry tmpEntry : myEntries.values()) {
+            this.discard(tmpEntry);
+        }
+        myEntries.clear();
+    }
+
+    synchronized void release(final K owner) {
+        final Entry tmpEntry = myEntries.remove(owner);
+        if (tmpEntry != null) {
+            this.discard(tmpEntry);
+        }
+    }
+
+    /**
+     * Start retaining the task for this owner, unless an entry for the owner is currently in use. An idle
+     * entry for the owner is replaced, and its task disposed.
+     *
+     * @return The new (busy) entry, or null if the task is not retained
+     */
+    synchronized Entry retain(final K owner, final Task task, final TaskCache.Key key, final ModelSnapshot snapshot) {
+
+        final Entry tmpExisting = myEntries.get(owner);
+        if (tmpExisting != null) {
+            if (tmpExisting.busy) {
+                return null;
+            }
+            this.discard(tmpExisting);
+        }
+
+        final Entry retVal = new Entry(task, key, snapshot);
+        // The action must not reference the owner
+        retVal.cleanable = NativeCleaner.INSTANCE.register(owner, () -> this.dispose(retVal));
+        myEntries.put(owner, retVal);
+        return retVal;
+    }
+
+    synchronized int size() {
+        return myEntries.size();
+    }
+
+    /**
+     * Run the entry's cleaner action now - it is run only once, either by this or when the owner is collected.
+     */
+    private void discard(final Entry entry) {
+        entry.cleanable.clean();
+    }
+
+    /**
+     * Dispose the task now, or when the entry is checked in if it is in use.
+     */
+    private synchronized void dispose(final Entry entry) {
+        if (entry.busy) {
+            entry.discarded = true;
+        } else {
+            TaskPool.dispose(entry.task);
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.function.Predicate;
+
+import org.ojalgo.optimisation.Optimisation;
+
+/**
+ * An integer feasible solution found by MOSEK's mixed integer optimizer while it is running, together with
+ * the best objective bound known at the time. The solution is in the same form as the final result (mapped
+ * to the model's variables when the solver was built from a model). The objective value and the bound are in
+ * model units, including any constant contributed by fixed variables, so gap targets can be given in the same
+ * units as the model's objective.
+ *
+ * @author apete
+ */
+public final class Incumbent {
+
+    public interface Listener {
+
+        /**
+         * Called, from the solving thread, for every new integer solution. Should return quickly.
+         */
+        void incumbent(Incumbent incumbent);
+
+    }
+
+    /**
+     * A stop condition that is met when the relative or the absolute gap is small enough (or both, if
+     * both targets are given).
+     *
+     * @param relative Target relative gap, or NaN if not used
+     * @param absolute Target absolute gap, or NaN if not used
+     */
+    public static Predicate<Incumbent> gap(final double relative, final double absolute) {
+        return incumbent -> (Double.isNaN(relative) || (incumbent.getRelativeGap() <= relative))
+                && (Double.isNaN(absolute) || (incumbent.getAbsoluteGap() <= absolute)) && (!Double.isNaN(relative) || !Double.isNaN(absolute));
+    }
+
+    private final double myBound;
+    private final long myElapsed;
+    private final int myNumber;
+    private final double myObjective;
+    private final Optimisation.Result mySolution;
+
+    Incumbent(final int number, final Optimisation.Result solution, final double objective, final double bound, final long elapsed) {
+
+        super();
+
+        myNumber = number;
+        mySolution = solution;
+        myObjective = objective;
+        myBound = bound;
+        myElapsed = elapsed;
+    }
+
+    /**
+     * @return |objective - bound|, or +inf if there is no bound yet
+     */
+    public double getAbsoluteGap() {
+        return Double.isNaN(myBound) ? Double.POSITIVE_INFINITY : Math.abs(myObjective - myBound);
+    }
+
+    /**
+     * @return The best objective bound, or NaN if there is none yet
+     */
+    public double getBound() {
+        return myBound;
+    }
+
+    /**
+     * @return Nanoseconds since the optimizer started
+     */
+    public long getElapsed() {
+        return myElapsed;
+    }
+
+    /**
+     * @return 1 for the first solution found, 2 for the next...
+     */
+    public int getNumber() {
+        return myNumber;
+    }
+
+    public double getObjective() {
+        return myObjective;
+    }
+
+    /**
+     * @return The absolute gap relative to the objective value (MOSEK's definition)
+     */
+    public double getRelativeGap() {
+        return this.getAbsoluteGap() / Math.max(1E-10, Math.abs(myObjective));
+    }
+
+    public Optimisation.Result getSolution() {
+        return mySolution;
+    }
+
+    @Override
+    public String toString() {
+        return "Incumbent [number=" + myNumber + ", objective=" + myObjective + ", bound=" + myBound + ", elapsed=" + myElapsed + "]";
+    }
+
+    Incumbent withBound(final double bound, final long elapsed) {
+        return new Incumbent(myNumber, mySolution, myObjective, bound, elapsed);
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.ojalgo.optimisation.Optimisation;
+
+import mosek.DataCallback;
+import mosek.Env;
+import mosek.Env.callbackcode;
+import mosek.ItgSolutionCallback;
+import mosek.Task;
+
+/**
+ * Connects MOSEK's integer solution and information callbacks to an {@link Incumbent.Listener} and a stop
+ * condition. Also takes over the role of the plain progress callback (stop requests and deadlines) for the
+ * solve, since MOSEK has only one such callback per task.
+ * <p>
+ * Task functions must not be called from within the callbacks, so the objective function is read from the
+ * task beforehand and the incumbent objective values are evaluated here. Objective values and bounds are
+ * mapped back to model units (see {@link SolverMosek#toModelObjective(double)}) before they are reported or
+ * tested against the stop condition.
+ *
+ * @author apete
+ */
+final class IncumbentTracker {
+
+    private volatile double myBound = Double.NaN;
+    private final double[] myCost;
+    private final double myFixedCost;
+    private volatile Incumbent myLatest = null;
+    private final Incumbent.Listener myListener;
+    private final Function<double[], Optimisation.Result> myMapper;
+    private int myNumber = 0;
+    private final int[] myQuadraticColumns;
+    private final int[] myQuadraticRows;
+    private final double[] myQuadraticValues;
+    private final SolverMosek mySolver;
+    private final long myStart;
+    private final Predicate<Incumbent> myStopCondition;
+    private volatile boolean myStopped = false;
+
+    /**
+     * @param mapper Maps task solutions (all columns) to results
+     */
+    IncumbentTracker(final SolverMosek solver, final Task task, final Incumbent.Listener listener, final Predicate<Incumbent> stopCondition,
+            final Function<double[], Optimisation.Result> mapper) {
+
+        super();
+
+        mySolver = solver;
+        myListener = listener;
+        myStopCondition = stopCondition;
+        myMapper = mapper;
+
+        final int tmpNumberOfVariables = task.getnumvar();
+        myCost = new double[tmpNumberOfVariables];
+        task.getc(myCost);
+        final double[] tmpFixed = new double[1];
+        task.getcfix(tmpFixed);
+        myFixedCost = tmpFixed[0];
+
+        final int tmpQuadratic = (int) task.getnumqobjnz();
+        myQuadraticRows = new int[tmpQuadratic];
+        myQuadraticColumns = new int[tmpQuadratic];
+        myQuadraticValues = new double[tmpQuadratic];
+        if (tmpQuadratic > 0) {
+            final long[] tmpCount = new long[1];
+            task.getqobj(myQuadraticRows, myQuadraticColumns, myQuadraticValues, tmpCount);
+        }
+
+        myStart = System.nanoTime();
+    }
+
+    /**
+     * Install the callbacks on the task (replacing the progress callback).
+     */
+    void attach(final Task task) {
+
+        task.set_ItgSolutionCallback(new ItgSolutionCallback() {
+
+            @Override
+            public void callback(final double[] xx) {
+                IncumbentTracker.this.solution(xx);
+            }
+        });
+
+        task.set_InfoCallback(new DataCallback() {
+
+            @Override
+            public int callback(final callbackcode caller, final double[] douinf, final int[] intinf, final long[] lintinf) {
+                return IncumbentTracker.this.information(douinf) ? 1 : 0;
+            }
+        });
+    }
+
+    Incumbent getLatest() {
+        return myLatest;
+    }
+
+    /**
+     * @return true if the solve stopped because the stop condition was met
+     */
+    boolean isStopped() {
+        return myStopped;
+    }
+
+    /**
+     * @return true if the solve should stop
+     */
+    private boolean information(final double[] information) {
+
+        final double tmpBound = mySolver.toModelObjective(information[Env.dinfitem.mio_obj_bound.value]);
+        final Incumbent tmpLatest = myLatest;
+
+        if ((tmpLatest != null) && (tmpBound != myBound)) {
+            myBound = tmpBound;
+            this.check(tmpLatest.withBound(tmpBound, System.nanoTime() - myStart));
+        } else {
+            myBound = tmpBound;
+        }
+
+        return myStopped || mySolver.isStopRequested();
+    }
+
+    private void check(final Incumbent incumbent) {
+        if ((myStopCondition != null) && !myStopped && myStopCondition.test(incumbent)) {
+            myStopped = true;
+        }
+    }
+
+    /**
+     * @return The objective function value in task units
+     */
+    private double evaluate(final double[] solution) {
+
+        double retVal = myFixedCost;
+
+        for (int j = 0; j < myCost.length; j++) {
+            retVal += myCost[j] * solution[j];
+        }
+
+        // MOSEK's quadratic objective is 0.5 x'Qx with only the lower triangular part stored
+        for (int k = 0; k < myQuadraticValues.length; k++) {
+            final int tmpRow = myQuadraticRows[k];
+            final int tmpCol = myQuadraticColumns[k];
+            final double tmpTerm = myQuadraticValues[k] * solution[tmpRow] * solution[tmpCol];
+            retVal += tmpRow == tmpCol ? 0.5 * tmpTerm : tmpTerm;
+        }
+
+        return retVal;
+    }
+
+    private void solution(final double[] solution) {
+
+        final double tmpObjective = mySolver.toModelObjective(this.evaluate(solution));
+        final Optimisation.Result tmpResult = myMapper.apply(solution);
+
+        final Incumbent tmpIncumbent = new Incumbent(++myNumber, new Optimisation.Result(Optimisation.State.FEASIBLE, tmpObjective, tmpResult), tmpObjective,
+                myBound, System.nanoTime() - myStart);
+        myLatest = tmpIncumbent;
+
+        if (myListener != null) {
+            myListener.incumbent(tmpIncumbent);
+        }
+
+        this.check(tmpIncumbent);
+    }
+
+}
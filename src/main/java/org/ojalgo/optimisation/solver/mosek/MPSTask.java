@@ -0,0 +1,607 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ojalgo.optimisation.Optimisation;
+
+import mosek.Env.boundkey;
+import mosek.Env.objsense;
+import mosek.Env.variabletype;
+import mosek.Task;
+
+/**
+ * Loads an MPS file (free or fixed format, linear and mixed integer) directly into a MOSEK task, without
+ * building an {@link org.ojalgo.optimisation.ExpressionsBasedModel}. The file is memory mapped and parsed in
+ * a single pass; the columns are pushed to the task in blocks (putacolslice/putvarboundslice) as they are
+ * read. Apart from the task itself only the row and column name tables, and per row bound information, are
+ * kept on the heap.
+ * <p>
+ * Only the sections NAME, OBJSENSE, ROWS, COLUMNS, RHS, RANGES, BOUNDS and ENDATA are supported. Any other
+ * section (quadratic, SOS, indicator or cone sections...) is rejected, rather than silently solving a
+ * different model than the file describes.
+ *
+ * @author apete
+ */
+public final class MPSTask implements AutoCloseable {
+
+    /**
+     * Splits memory mapped bytes into lines and whitespace separated tokens. Files larger than a single
+     * mapping are handled by remapping a window as the position advances.
+     */
+    static final class Lines {
+
+        private static final long WINDOW = 1L << 28;
+
+        private final FileChannel myChannel;
+        private byte[] myLine = new byte[256];
+        private int myLength = 0;
+        private long myPosition = 0L;
+        private final long mySize;
+        private int myTokens = 0;
+        private int[] myTokenBegin = new int[8];
+        private int[] myTokenEnd = new int[8];
+        private MappedByteBuffer myWindow = null;
+        private long myWindowStart = 0L;
+
+        Lines(final FileChannel channel) throws IOException {
+            super();
+            myChannel = channel;
+            mySize = channel.size();
+        }
+
+        int countTokens() {
+            return myTokens;
+        }
+
+        /**
+         * @return true if the current line starts in column 1 (a section header)
+         */
+        boolean isHeader() {
+            return (myLength > 0) && (myLine[0] != ' ') && (myLine[0] != '\t');
+        }
+
+        /**
+         * Advance to the next non-empty, non-comment line.
+         *
+         * @return false at end of file
+         */
+        boolean next() throws IOException {
+
+            while (myPosition < mySize) {
+
+                myLength = 0;
+
+                while (myPosition < mySize) {
+
+                    if ((myWindow == null) || (myPosition >= (myWindowStart + myWindow.limit()))) {
+                        myWindowStart = myPosition;
+                        myWindow = myChannel.map(FileChannel.MapMode.READ_ONLY, myWindowStart, Math.min(WINDOW, mySize - myWindowStart));
+                    }
+
+                    final byte tmpByte = myWindow.get((int) (myPosition - myWindowStart));
+                    myPosition++;
+
+                    if (tmpByte == '\n') {
+                        break;
+                    } else if (tmpByte != '\r') {
+                        if (myLength == myLine.length) {
+                            myLine = Arrays.copyOf(myLine, 2 * myLength);
+                        }
+                        myLine[myLength++] = tmpByte;
+                    }
+                }
+
+                this.tokenize();
+
+                if ((myTokens > 0) && (myLine[myTokenBegin[0]] != '*')) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        boolean is(final int token, final String value) {
+            final int tmpLength = myTokenEnd[token] - myTokenBegin[token];
+            if (tmpLength != value.length()) {
+                return false;
+            }
+            for (int i = 0; i < tmpLength; i++) {
+                if (myLine[myTokenBegin[token] + i] != value.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double number(final int token) {
+            return Double.parseDouble(this.token(token));
+        }
+
+        String token(final int token) {
+            return new String(myLine, myTokenBegin[token], myTokenEnd[token] - myTokenBegin[token], StandardCharsets.ISO_8859_1);
+        }
+
+        private void tokenize() {
+
+            myTokens = 0;
+
+            int i = 0;
+            while (i < myLength) {
+                while ((i < myLength) && ((myLine[i] == ' ') || (myLine[i] == '\t'))) {
+                    i++;
+                }
+                if (i < myLength) {
+                    if (myTokens == myTokenBegin.length) {
+                        myTokenBegin = Arrays.copyOf(myTokenBegin, 2 * myTokens);
+                        myTokenEnd = Arrays.copyOf(myTokenEnd, 2 * myTokens);
+                    }
+                    myTokenBegin[myTokens] = i;
+                    while ((i < myLength) && (myLine[i] != ' ') && (myLine[i] != '\t')) {
+                        i++;
+                    }
+                    myTokenEnd[myTokens] = i;
+                    myTokens++;
+                }
+            }
+        }
+
+    }
+
+    private static final int BLOCK_ELEMENTS = 1 << 20;
+    private static final int BLOCK_VARIABLES = 1 << 14;
+
+    private static final byte ROW_E = 'E';
+    private static final byte ROW_G = 'G';
+    private static final byte ROW_L = 'L';
+    private static final byte ROW_N = 'N';
+    private static final Set<String> SECTIONS = new HashSet<>(Arrays.asList("NAME", "OBJSENSE", "ROWS", "COLUMNS", "RHS", "RANGES", "BOUNDS", "ENDATA"));
+
+    /**
+     * @param file An MPS file
+     * @param options Solver options (time limit, logging...)
+     */
+    public static MPSTask load(final File file, final Optimisation.Options options) {
+        try (FileChannel tmpChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MPSTask retVal = new MPSTask(SolverMosek.INTEGRATION.makeTask(0, 0), options);
+            try {
+                retVal.parse(new Lines(tmpChannel));
+            } catch (final RuntimeException | IOException cause) {
+                retVal.close();
+                throw cause;
+            }
+            return retVal;
+        } catch (final IOException cause) {
+            throw new UncheckedIOException(cause);
+        }
+    }
+
+    private boolean myAnyInteger = false;
+    private final Map<String, Integer> myColumnIndex = new HashMap<>();
+    private final List<String> myColumnNames = new ArrayList<>();
+    private String myObjectiveName = null;
+    private double[] myRanges;
+    private double[] myRightHandSides;
+    private final Map<String, Integer> myRowIndex = new HashMap<>();
+    private byte[] myRowTypes;
+    private final SolverMosek mySolver;
+    private final Task myTask;
+
+    MPSTask(final Task task, final Optimisation.Options options) {
+
+        super();
+
+        myTask = task;
+        mySolver = new SolverMosek(task, options);
+    }
+
+    public void close() {
+        mySolver.dispose();
+    }
+
+    public int countConstraints() {
+        return myRowIndex.size();
+    }
+
+    public int countVariables() {
+        return myColumnNames.size();
+    }
+
+    public String getVariableName(final int index) {
+        return myColumnNames.get(index);
+    }
+
+    /**
+     * @return The index of the named variable in the {@link Optimisation.Result} returned by
+     *         {@link #solve()}, or -1 if there is no such variable.
+     */
+    public int indexOfVariable(final String name) {
+        final Integer tmpIndex = myColumnIndex.get(name);
+        return tmpIndex != null ? tmpIndex.intValue() : -1;
+    }
+
+    /**
+     * The solution is indexed the same way as the columns in the file - use {@link #getVariableName(int)} or
+     * {@link #indexOfVariable(String)} to map to/from names.
+     */
+    public Optimisation.Result solve() {
+        return mySolver.solve(null);
+    }
+
+    /**
+     * @return The solution as a map from variable name to value.
+     */
+    public Map<String, Double> toNamedSolution(final Optimisation.Result result) {
+        final Map<String, Double> retVal = new HashMap<>();
+        for (int j = 0; j < myColumnNames.size(); j++) {
+            retVal.put(myColumnNames.get(j), result.doubleValue(j));
+        }
+        return retVal;
+    }
+
+    private void applyBound(final String type, final int column, final double value) throws IOException {
+
+        final boundkey[] tmpKey = new boundkey[1];
+        final double[] tmpLower = new double[1];
+        final double[] tmpUpper = new double[1];
+        myTask.getvarbound(column, tmpKey, tmpLower, tmpUpper);
+
+        boolean tmpHasLower = (tmpKey[0] == boundkey.lo) || (tmpKey[0] == boundkey.ra) || (tmpKey[0] == boundkey.fx);
+        boolean tmpHasUpper = (tmpKey[0] == boundkey.up) || (tmpKey[0] == boundkey.ra) || (tmpKey[0] == boundkey.fx);
+        double tmpLo = tmpLower[0];
+        double tmpUp = tmpUpper[0];
+
+        switch (type) {
+        case "UP":
+        case "UI":
+            tmpHasUpper = true;
+            tmpUp = value;
+            if ((value < 0.0) && tmpHasLower && (tmpLo == 0.0)) {
+                // Traditional MPS: a negative upper bound on a default lower bound makes the lower bound -inf
+                tmpHasLower = false;
+            }
+            break;
+        case "LO":
+        case "LI":
+            tmpHasLower = true;
+            tmpLo = value;
+            break;
+        case "FX":
+            tmpHasLower = true;
+            tmpHasUpper = true;
+            tmpLo = value;
+            tmpUp = value;
+            break;
+        case "FR":
+            tmpHasLower = false;
+            tmpHasUpper = false;
+            break;
+        case "MI":
+            tmpHasLower = false;
+            break;
+        case "PL":
+            tmpHasUpper = false;
+            break;
+        case "BV":
+            tmpHasLower = true;
+            tmpHasUpper = true;
+            tmpLo = 0.0;
+            tmpUp = 1.0;
+            break;
+        default:
+            throw new IOException("Unknown bound type: " + type);
+        }
+
+        if ("UI".equals(type) || "LI".equals(type) || "BV".equals(type)) {
+            myTask.putvartype(column, variabletype.type_int);
+            myAnyInteger = true;
+        }
+
+        final boundkey tmpType;
+        if (tmpHasLower && tmpHasUpper) {
+            tmpType = tmpLo == tmpUp ? boundkey.fx : boundkey.ra;
+        } else if (tmpHasLower) {
+            tmpType = boundkey.lo;
+        } else if (tmpHasUpper) {
+            tmpType = boundkey.up;
+        } else {
+            tmpType = boundkey.fr;
+        }
+
+        myTask.putvarbound(column, tmpType, tmpHasLower ? tmpLo : Double.NEGATIVE_INFINITY, tmpHasUpper ? tmpUp : Double.POSITIVE_INFINITY);
+    }
+
+    private int column(final String name) throws IOException {
+        final Integer tmpIndex = myColumnIndex.get(name);
+        if (tmpIndex == null) {
+            throw new IOException("Unknown column: " + name);
+        }
+        return tmpIndex.intValue();
+    }
+
+    private void flushColumns(final CompressedRows block, final List<Integer> objectiveColumns, final List<Double> objectiveValues,
+            final List<Integer> integerColumns) {
+
+        final int tmpFirst = myTask.getnumvar();
+        final int tmpCount = block.countRows();
+
+        if (tmpCount == 0) {
+            return;
+        }
+
+        myTask.appendvars(tmpCount);
+        block.putColumnsInto(TaskBackend.of(myTask), tmpFirst);
+
+        if (!objectiveColumns.isEmpty()) {
+            final int[] tmpColumns = new int[objectiveColumns.size()];
+            final double[] tmpValues = new double[objectiveColumns.size()];
+            for (int i = 0; i < tmpColumns.length; i++) {
+                tmpColumns[i] = objectiveColumns.get(i);
+                tmpValues[i] = objectiveValues.get(i);
+            }
+            myTask.putclist(tmpColumns, tmpValues);
+        }
+
+        if (!integerColumns.isEmpty()) {
+            final int[] tmpColumns = new int[integerColumns.size()];
+            final variabletype[] tmpTypes = new variabletype[integerColumns.size()];
+            for (int i = 0; i < tmpColumns.length; i++) {
+                tmpColumns[i] = integerColumns.get(i);
+                tmpTypes[i] = variabletype.type_int;
+            }
+            myTask.putvartypelist(tmpColumns, tmpTypes);
+            myAnyInteger = true;
+        }
+
+        block.reset();
+        objectiveColumns.clear();
+        objectiveValues.clear();
+        integerColumns.clear();
+    }
+
+    private void parse(final Lines lines) throws IOException {
+
+        String tmpSection = null;
+        boolean tmpIntegerMarker = false;
+        boolean tmpMaximise = false;
+
+        byte[] tmpRowTypes = new byte[256];
+        final CompressedRows tmpBlock = new CompressedRows(BLOCK_VARIABLES, BLOCK_ELEMENTS);
+        final List<Integer> tmpObjectiveColumns = new ArrayList<>();
+        final List<Double> tmpObjectiveValues = new ArrayList<>();
+        final List<Integer> tmpIntegerColumns = new ArrayList<>();
+        String tmpCurrentColumn = null;
+
+        while (lines.next()) {
+
+            if (lines.isHeader()) {
+
+                if ("COLUMNS".equals(tmpSection) && (tmpCurrentColumn != null)) {
+                    tmpBlock.endRow(boundkey.lo, 0.0, Double.POSITIVE_INFINITY);
+                    this.flushColumns(tmpBlock, tmpObjectiveColumns, tmpObjectiveValues, tmpIntegerColumns);
+                    tmpCurrentColumn = null;
+                }
+
+                tmpSection = lines.token(0);
+
+                if (!SECTIONS.contains(tmpSection)) {
+                    throw new IOException("Unsupported MPS section: " + tmpSection);
+                }
+
+                if ("OBJSENSE".equals(tmpSection) && (lines.countTokens() > 1)) {
+                    tmpMaximise = lines.is(1, "MAX") || lines.is(1, "MAXIMIZE");
+                } else if ("COLUMNS".equals(tmpSection)) {
+                    final int tmpNumberOfRows = myRowIndex.size();
+                    myTask.appendcons(tmpNumberOfRows);
+                    myRowTypes = Arrays.copyOf(tmpRowTypes, tmpNumberOfRows);
+                    myRightHandSides = new double[tmpNumberOfRows];
+                    myRanges = new double[tmpNumberOfRows];
+                    Arrays.fill(myRanges, Double.NaN);
+                } else if ("ENDATA".equals(tmpSection)) {
+                    break;
+                }
+
+                continue;
+            }
+
+            switch (tmpSection) {
+
+            case "OBJSENSE":
+                tmpMaximise = lines.is(0, "MAX") || lines.is(0, "MAXIMIZE");
+                break;
+
+            case "ROWS":
+                final String tmpName = lines.token(1);
+                if (lines.is(0, "N")) {
+                    if (myObjectiveName == null) {
+                        myObjectiveName = tmpName;
+                    }
+                    // Additional free rows are ignored
+                } else {
+                    final int tmpRowIndex = myRowIndex.size();
+                    if (tmpRowIndex == tmpRowTypes.length) {
+                        tmpRowTypes = Arrays.copyOf(tmpRowTypes, 2 * tmpRowIndex);
+                    }
+                    tmpRowTypes[tmpRowIndex] = (byte) lines.token(0).charAt(0);
+                    myRowIndex.put(tmpName, tmpRowIndex);
+                }
+                break;
+
+            case "COLUMNS":
+                if ((lines.countTokens() >= 3) && lines.is(1, "'MARKER'")) {
+                    tmpIntegerMarker = lines.is(2, "'INTORG'");
+                    break;
+                }
+                final String tmpColumn = lines.token(0);
+                if (!tmpColumn.equals(tmpCurrentColumn)) {
+                    if (tmpCurrentColumn != null) {
+                        tmpBlock.endRow(boundkey.lo, 0.0, Double.POSITIVE_INFINITY);
+                        if ((tmpBlock.countRows() >= BLOCK_VARIABLES) || (tmpBlock.countElements() >= BLOCK_ELEMENTS)) {
+                            this.flushColumns(tmpBlock, tmpObjectiveColumns, tmpObjectiveValues, tmpIntegerColumns);
+                        }
+                    }
+                    tmpCurrentColumn = tmpColumn;
+                    final int tmpIndex = myColumnNames.size();
+                    myColumnIndex.put(tmpColumn, tmpIndex);
+                    myColumnNames.add(tmpColumn);
+                    tmpBlock.startRow();
+                    if (tmpIntegerMarker) {
+                        tmpIntegerColumns.add(tmpIndex);
+                    }
+                }
+                for (int t = 1; (t + 1) < lines.countTokens(); t += 2) {
+                    final String tmpRow = lines.token(t);
+                    final double tmpValue = lines.number(t + 1);
+                    if (tmpRow.equals(myObjectiveName)) {
+                        tmpObjectiveColumns.add(myColumnNames.size() - 1);
+                        tmpObjectiveValues.add(tmpValue);
+                    } else {
+                        final Integer tmpRowIndex = myRowIndex.get(tmpRow);
+                        if (tmpRowIndex != null) {
+                            tmpBlock.add(tmpRowIndex.intValue(), tmpValue);
+                        }
+                    }
+                }
+                break;
+
+            case "RHS":
+            case "RANGES":
+                // The set name is optional - if present there's an odd number of tokens
+                for (int t = lines.countTokens() % 2; (t + 1) < lines.countTokens(); t += 2) {
+                    final String tmpRow = lines.token(t);
+                    final double tmpValue = lines.number(t + 1);
+                    if (tmpRow.equals(myObjectiveName)) {
+                        if ("RHS".equals(tmpSection)) {
+                            myTask.putcfix(-tmpValue);
+                        }
+                    } else {
+                        final Integer tmpRowIndex = myRowIndex.get(tmpRow);
+                        if (tmpRowIndex != null) {
+                            if ("RHS".equals(tmpSection)) {
+                                myRightHandSides[tmpRowIndex] = tmpValue;
+                            } else {
+                                myRanges[tmpRowIndex] = tmpValue;
+                            }
+                        }
+                    }
+                }
+                break;
+
+            case "BOUNDS":
+                final String tmpType = lines.token(0);
+                final boolean tmpValueless = "FR".equals(tmpType) || "MI".equals(tmpType) || "PL".equals(tmpType) || "BV".equals(tmpType);
+                final int tmpTokens = lines.countTokens();
+                if (tmpValueless) {
+                    // The bound set name is optional, and some writers add a (redundant) value: "BV BND X 1"
+                    final int tmpColumnToken = tmpTokens >= 4 ? 2 : tmpTokens - 1;
+                    this.applyBound(tmpType, this.column(lines.token(tmpColumnToken)), 0.0);
+                } else {
+                    this.applyBound(tmpType, this.column(lines.token(tmpTokens - 2)), lines.number(tmpTokens - 1));
+                }
+                break;
+
+            default:
+                // NAME - nothing to do
+                break;
+            }
+        }
+
+        this.putRowBounds();
+
+        myTask.putobjsense(tmpMaximise ? objsense.maximize : objsense.minimize);
+
+        // The solver was created on the empty task
+        mySolver.setNumberOfVariables(myColumnNames.size());
+        mySolver.setSolutionType(myAnyInteger, false);
+    }
+
+    private void putRowBounds() {
+
+        final int tmpNumberOfRows = myRowIndex.size();
+        if (tmpNumberOfRows == 0) {
+            return;
+        }
+
+        final boundkey[] tmpKeys = new boundkey[tmpNumberOfRows];
+        final double[] tmpLower = new double[tmpNumberOfRows];
+        final double[] tmpUpper = new double[tmpNumberOfRows];
+
+        for (int i = 0; i < tmpNumberOfRows; i++) {
+
+            final double tmpRHS = myRightHandSides[i];
+            final double tmpRange = Math.abs(myRanges[i]);
+            final boolean tmpRanged = !Double.isNaN(myRanges[i]);
+
+            switch (myRowTypes[i]) {
+            case ROW_E:
+                if (!tmpRanged) {
+                    tmpKeys[i] = boundkey.fx;
+                    tmpLower[i] = tmpRHS;
+                    tmpUpper[i] = tmpRHS;
+                } else if (myRanges[i] >= 0.0) {
+                    tmpKeys[i] = boundkey.ra;
+                    tmpLower[i] = tmpRHS;
+                    tmpUpper[i] = tmpRHS + tmpRange;
+                } else {
+                    tmpKeys[i] = boundkey.ra;
+                    tmpLower[i] = tmpRHS - tmpRange;
+                    tmpUpper[i] = tmpRHS;
+                }
+                break;
+            case ROW_L:
+                tmpKeys[i] = tmpRanged ? boundkey.ra : boundkey.up;
+                tmpLower[i] = tmpRanged ? tmpRHS - tmpRange : Double.NEGATIVE_INFINITY;
+                tmpUpper[i] = tmpRHS;
+                break;
+            case ROW_G:
+                tmpKeys[i] = tmpRanged ? boundkey.ra : boundkey.lo;
+                tmpLower[i] = tmpRHS;
+                tmpUpper[i] = tmpRanged ? tmpRHS + tmpRange : Double.POSITIVE_INFINITY;
+                break;
+            case ROW_N:
+            default:
+                tmpKeys[i] = boundkey.fr;
+                tmpLower[i] = Double.NEGATIVE_INFINITY;
+                tmpUpper[i] = Double.POSITIVE_INFINITY;
+                break;
+            }
+        }
+
+        myTask.putconboundslice(0, tmpNumberOfRows, tmpKeys, tmpLower, tmpUpper);
+    }
+
+}
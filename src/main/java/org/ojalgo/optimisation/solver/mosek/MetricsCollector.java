@@ -0,0 +1,253 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.ojalgo.optimisation.Optimisation;
+
+/**
+ * Aggregates {@link SolveMetrics} over many solves into histograms, and exposes them as a JMX MBean.
+ * Install with {@link SolverMosek.Integration#setMetricsListener(SolveMetrics.Listener)}. Another listener
+ * can be chained to receive each individual {@link SolveMetrics}.
+ *
+ * @author apete
+ */
+public final class MetricsCollector implements SolveMetrics.Listener, MetricsCollectorMBean {
+
+    public static final String OBJECT_NAME = "org.ojalgo.optimisation.solver.mosek:type=MetricsCollector";
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final Histogram myExtraction = new Histogram();
+    private volatile long myFailed = 0L;
+    private final Histogram myIterations = new Histogram();
+    private final Histogram myMipNodes = new Histogram();
+    private final SolveMetrics.Listener myNext;
+    private ObjectName myObjectName = null;
+    private final Histogram myOptimisation = new Histogram();
+    /**
+     * MOSEK's optimizer time, in nanoseconds
+     */
+    private final Histogram myOptimizerTime = new Histogram();
+    /**
+     * MOSEK's presolve time, in nanoseconds
+     */
+    private final Histogram myPresolveTime = new Histogram();
+    private final Histogram myRetrieval = new Histogram();
+    private final Histogram myTaskMemory = new Histogram();
+    private final Histogram myTranslation = new Histogram();
+
+    public MetricsCollector() {
+        this(null);
+    }
+
+    /**
+     * @param next Also receives every individual {@link SolveMetrics} (may be null)
+     */
+    public MetricsCollector(final SolveMetrics.Listener next) {
+        super();
+        myNext = next;
+    }
+
+    public long getCount() {
+        return myOptimisation.count();
+    }
+
+    public long getCountFailed() {
+        return myFailed;
+    }
+
+    public double getExtractionMean() {
+        return myExtraction.mean() / NANOS_PER_MILLI;
+    }
+
+    public double getExtractionP99() {
+        return myExtraction.percentile(0.99) / NANOS_PER_MILLI;
+    }
+
+    public double getIterationsMean() {
+        return myIterations.mean();
+    }
+
+    public double getIterationsP99() {
+        return myIterations.percentile(0.99);
+    }
+
+    public long getLiveTasks() {
+        return TaskPool.countLiveTasks();
+    }
+
+    public double getMipNodesMean() {
+        return myMipNodes.mean();
+    }
+
+    public double getMipNodesP99() {
+        return myMipNodes.percentile(0.99);
+    }
+
+    public double getOptimisationMax() {
+        return myOptimisation.max() / NANOS_PER_MILLI;
+    }
+
+    public double getOptimisationMean() {
+        return myOptimisation.mean() / NANOS_PER_MILLI;
+    }
+
+    public double getOptimisationP50() {
+        return myOptimisation.percentile(0.50) / NANOS_PER_MILLI;
+    }
+
+    public double getOptimisationP90() {
+        return myOptimisation.percentile(0.90) / NANOS_PER_MILLI;
+    }
+
+    public double getOptimisationP99() {
+        return myOptimisation.percentile(0.99) / NANOS_PER_MILLI;
+    }
+
+    public double getOptimizerTimeMean() {
+        return myOptimizerTime.mean() / NANOS_PER_MILLI;
+    }
+
+    public double getOptimizerTimeP99() {
+        return myOptimizerTime.percentile(0.99) / NANOS_PER_MILLI;
+    }
+
+    public int getPooledTasks() {
+        return SolverMosek.INTEGRATION.getTaskPool().size();
+    }
+
+    public double getPoolUtilisation() {
+        return SolverMosek.INTEGRATION.getTaskPool().getUtilisation();
+    }
+
+    public double getPresolveTimeMean() {
+        return myPresolveTime.mean() / NANOS_PER_MILLI;
+    }
+
+    public double getPresolveTimeP99() {
+        return myPresolveTime.percentile(0.99) / NANOS_PER_MILLI;
+    }
+
+    public double getRetrievalMean() {
+        return myRetrieval.mean() / NANOS_PER_MILLI;
+    }
+
+    public double getRetrievalP99() {
+        return myRetrieval.percentile(0.99) / NANOS_PER_MILLI;
+    }
+
+    public long getTaskMemoryMax() {
+        return myTaskMemory.max();
+    }
+
+    public double getTaskMemoryMean() {
+        return myTaskMemory.mean();
+    }
+
+    public double getTaskMemoryP99() {
+        return myTaskMemory.percentile(0.99);
+    }
+
+    public double getTranslationMean() {
+        return myTranslation.mean() / NANOS_PER_MILLI;
+    }
+
+    public double getTranslationP99() {
+        return myTranslation.percentile(0.99) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Register with the platform MBean server, under {@link #OBJECT_NAME}.
+     */
+    public synchronized void register() {
+        if (myObjectName == null) {
+            try {
+                final ObjectName tmpName = new ObjectName(OBJECT_NAME);
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, tmpName);
+                myObjectName = tmpName;
+            } catch (final JMException cause) {
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    /**
+     * Holds the same lock as the failure count update in {@link #solved(SolveMetrics)}.
+     */
+    public synchronized void reset() {
+        myExtraction.reset();
+        myTranslation.reset();
+        myOptimisation.reset();
+        myRetrieval.reset();
+        myIterations.reset();
+        myMipNodes.reset();
+        myPresolveTime.reset();
+        myOptimizerTime.reset();
+        myTaskMemory.reset();
+        myFailed = 0L;
+    }
+
+    public void solved(final SolveMetrics metrics) {
+
+        myExtraction.record(metrics.extraction);
+        myTranslation.record(metrics.translation);
+        myOptimisation.record(metrics.optimisation);
+        myRetrieval.record(metrics.retrieval);
+        myIterations.record((long) metrics.simplexIterations + metrics.interiorPointIterations);
+        myMipNodes.record(metrics.mipNodes);
+        myPresolveTime.record(Math.round(metrics.presolveTime * NANOS_PER_SECOND));
+        myOptimizerTime.record(Math.round(metrics.optimizerTime * NANOS_PER_SECOND));
+        myTaskMemory.record(metrics.taskMemory);
+
+        if (metrics.state == Optimisation.State.FAILED) {
+            synchronized (this) {
+                myFailed++;
+            }
+        }
+
+        if (myNext != null) {
+            myNext.solved(metrics);
+        }
+    }
+
+    public synchronized void unregister() {
+        if (myObjectName != null) {
+            try {
+                final MBeanServer tmpServer = ManagementFactory.getPlatformMBeanServer();
+                if (tmpServer.isRegistered(myObjectName)) {
+                    tmpServer.unregisterMBean(myObjectName);
+                }
+                myObjectName = null;
+            } catch (final JMException cause) {
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+}
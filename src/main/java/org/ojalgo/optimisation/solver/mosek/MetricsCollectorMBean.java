@@ -0,0 +1,105 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+/**
+ * JMX view of a {@link MetricsCollector}. Durations are in milliseconds.
+ *
+ * @author apete
+ */
+public interface MetricsCollectorMBean {
+
+    long getCount();
+
+    long getCountFailed();
+
+    double getExtractionMean();
+
+    double getExtractionP99();
+
+    double getIterationsMean();
+
+    double getIterationsP99();
+
+    /**
+     * The number of native MOSEK tasks currently allocated
+     */
+    long getLiveTasks();
+
+    double getMipNodesMean();
+
+    double getMipNodesP99();
+
+    double getOptimisationMax();
+
+    double getOptimisationMean();
+
+    double getOptimisationP50();
+
+    double getOptimisationP90();
+
+    double getOptimisationP99();
+
+    /**
+     * MOSEK's own optimizer time (information item optimizer_time)
+     */
+    double getOptimizerTimeMean();
+
+    double getOptimizerTimeP99();
+
+    /**
+     * The number of cleared tasks currently pooled, of all threads
+     */
+    int getPooledTasks();
+
+    /**
+     * The fraction of requests for a task that were served from the pool
+     */
+    double getPoolUtilisation();
+
+    /**
+     * MOSEK's own presolve time (information item presolve_time)
+     */
+    double getPresolveTimeMean();
+
+    double getPresolveTimeP99();
+
+    double getRetrievalMean();
+
+    double getRetrievalP99();
+
+    /**
+     * The maximum number of bytes MOSEK had allocated for a task
+     */
+    long getTaskMemoryMax();
+
+    double getTaskMemoryMean();
+
+    double getTaskMemoryP99();
+
+    double getTranslationMean();
+
+    double getTranslationP99();
+
+    void reset();
+
+}
@@ -0,0 +1,536 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Variable;
+import org.ojalgo.structure.Structure1D.IntIndex;
+
+import mosek.Env.boundkey;
+import mosek.Env.objsense;
+
+/**
+ * All numerical values of a translated model, in the form they were (or are to be) pushed to a MOSEK task.
+ * Comparing a new snapshot with the previous one gives the (minimal) set of changes that needs to be
+ * pushed to an already populated task.
+ * <p>
+ * A snapshot can also be written to, and read from, a stream in a compact columnar binary format (see
+ * {@link #write(DataOutputStream)}) - that is how models are passed to out-of-process workers.
+ *
+ * @author apete
+ */
+final class ModelSnapshot {
+
+    /**
+     * Quadratic factors in the lower triangular form MOSEK expects, with the diagonal doubled.
+     */
+    static final class Quadratic {
+
+        static Quadratic of(final Expression expression, final FreeVariables columns) {
+
+            final TermBuffer tmpTerms = TermBuffer.local().quadratic(expression, columns);
+            if (tmpTerms.countQuadratic() == 0) {
+                return null;
+            }
+
+            return new Quadratic(tmpTerms.copyQuadraticRows(), tmpTerms.copyQuadraticColumns(), tmpTerms.copyQuadraticValues());
+        }
+
+        final int[] columns;
+        final int[] rows;
+        final double[] values;
+
+        Quadratic(final int[] rows, final int[] columns, final double[] values) {
+            super();
+            this.rows = rows;
+            this.columns = columns;
+            this.values = values;
+        }
+
+        boolean isSame(final Quadratic other) {
+            return (other != null) && Arrays.equals(rows, other.rows) && Arrays.equals(columns, other.columns) && Arrays.equals(values, other.values);
+        }
+
+    }
+
+    /**
+     * Extract everything from the model, just as {@link SolverMosek.Integration#build(ExpressionsBasedModel)}
+     * does, but without touching MOSEK.
+     */
+    static ModelSnapshot of(final ExpressionsBasedModel model) {
+
+        final List<Expression> tmpConstraints = model.constraints().collect(Collectors.toList());
+
+        return ModelSnapshot.of(FreeVariables.of(model), tmpConstraints, model.objective(), model);
+    }
+
+    static ModelSnapshot of(final FreeVariables columns, final List<Expression> constraints, final Expression objective, final ExpressionsBasedModel model) {
+
+        final List<Variable> tmpVariables = columns.getVariables();
+
+        final int tmpNumberOfVariables = tmpVariables.size();
+        final int tmpNumberOfConstraints = constraints.size();
+
+        final boundkey[] tmpVariableKeys = new boundkey[tmpNumberOfVariables];
+        final double[] tmpLowerBounds = new double[tmpNumberOfVariables];
+        final double[] tmpUpperBounds = new double[tmpNumberOfVariables];
+        for (int j = 0; j < tmpNumberOfVariables; j++) {
+            final Variable tmpVariable = tmpVariables.get(j);
+            tmpVariableKeys[j] = SolverMosek.getBoundKey(tmpVariable);
+            tmpLowerBounds[j] = tmpVariable.getUnadjustedLowerLimit();
+            tmpUpperBounds[j] = tmpVariable.getUnadjustedUpperLimit();
+        }
+
+        // Without elimination there is one row per constraint
+        final ConstraintBlock[] tmpBlocks = ConstraintBlock.extract(constraints, columns, false);
+        final CompressedRows tmpRows = ConstraintBlock.stitch(tmpBlocks);
+        final Quadratic[] tmpQuadraticConstraints = new Quadratic[tmpNumberOfConstraints];
+        int tmpFirstRow = 0;
+        for (final ConstraintBlock tmpBlock : tmpBlocks) {
+            for (int i = 0, limit = tmpBlock.rows.countRows(); i < limit; i++) {
+                if (tmpBlock.quadratic[i] != null) {
+                    tmpQuadraticConstraints[tmpFirstRow + i] = Quadratic.of(tmpBlock.quadratic[i], columns);
+                }
+            }
+            tmpFirstRow += tmpBlock.rows.countRows();
+        }
+
+        final Expression tmpReduced = columns.reduce(objective);
+        final double[] tmpObjective = new double[tmpNumberOfVariables];
+        for (final IntIndex tmpKey : tmpReduced.getLinearKeySet()) {
+            final int tmpColumn = columns.column(tmpKey.index);
+            if (tmpColumn >= 0) {
+                tmpObjective[tmpColumn] = tmpReduced.getAdjustedLinearFactor(tmpKey);
+            }
+        }
+
+        final objsense tmpSense = model.isMinimisation() ? objsense.minimize : objsense.maximize;
+
+        return new ModelSnapshot(tmpVariableKeys, tmpLowerBounds, tmpUpperBounds, tmpRows, tmpQuadraticConstraints, tmpObjective, Quadratic.of(tmpReduced, columns),
+                tmpSense);
+    }
+
+    /**
+     * Read a snapshot written by {@link #write(DataOutputStream)}.
+     */
+    static ModelSnapshot read(final DataInputStream input) throws IOException {
+
+        final boundkey[] tmpKeys = boundkey.values();
+
+        final int tmpNumberOfVariables = input.readInt();
+        final boundkey[] tmpVariableKeys = new boundkey[tmpNumberOfVariables];
+        for (int j = 0; j < tmpNumberOfVariables; j++) {
+            tmpVariableKeys[j] = tmpKeys[input.readByte()];
+        }
+        final double[] tmpLowerBounds = ModelSnapshot.readDoubles(input, tmpNumberOfVariables);
+        final double[] tmpUpperBounds = ModelSnapshot.readDoubles(input, tmpNumberOfVariables);
+        final double[] tmpObjective = ModelSnapshot.readDoubles(input, tmpNumberOfVariables);
+
+        final int tmpNumberOfConstraints = input.readInt();
+        final int tmpNumberOfElements = input.readInt();
+        final boundkey[] tmpRowKeys = new boundkey[tmpNumberOfConstraints];
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            tmpRowKeys[i] = tmpKeys[input.readByte()];
+        }
+        final double[] tmpRowLower = ModelSnapshot.readDoubles(input, tmpNumberOfConstraints);
+        final double[] tmpRowUpper = ModelSnapshot.readDoubles(input, tmpNumberOfConstraints);
+        final int[] tmpRowLengths = ModelSnapshot.readInts(input, tmpNumberOfConstraints);
+        final int[] tmpColumns = ModelSnapshot.readInts(input, tmpNumberOfElements);
+        final double[] tmpValues = ModelSnapshot.readDoubles(input, tmpNumberOfElements);
+
+        final CompressedRows tmpRows = new CompressedRows(tmpNumberOfConstraints, tmpNumberOfElements);
+        int tmpElement = 0;
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            tmpRows.startRow();
+            for (int e = 0; e < tmpRowLengths[i]; e++, tmpElement++) {
+                tmpRows.add(tmpColumns[tmpElement], tmpValues[tmpElement]);
+            }
+            tmpRows.endRow(tmpRowKeys[i], tmpRowLower[i], tmpRowUpper[i]);
+        }
+
+        final Quadratic[] tmpQuadraticConstraints = new Quadratic[tmpNumberOfConstraints];
+        for (int k = 0, limit = input.readInt(); k < limit; k++) {
+            final int tmpRow = input.readInt();
+            tmpQuadraticConstraints[tmpRow] = ModelSnapshot.readQuadratic(input);
+        }
+        final Quadratic tmpQuadraticObjective = ModelSnapshot.readQuadratic(input);
+
+        final objsense tmpSense = objsense.values()[input.readByte()];
+
+        return new ModelSnapshot(tmpVariableKeys, tmpLowerBounds, tmpUpperBounds, tmpRows, tmpQuadraticConstraints, tmpObjective, tmpQuadraticObjective,
+                tmpSense);
+    }
+
+    private static void flush(final MessageDigest digest, final ByteBuffer buffer) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+    }
+
+    private static boolean isSame(final double value1, final double value2) {
+        return Double.doubleToLongBits(value1) == Double.doubleToLongBits(value2);
+    }
+
+    private static double[] readDoubles(final DataInputStream input, final int count) throws IOException {
+        final double[] retVal = new double[count];
+        for (int i = 0; i < count; i++) {
+            retVal[i] = input.readDouble();
+        }
+        return retVal;
+    }
+
+    private static int[] readInts(final DataInputStream input, final int count) throws IOException {
+        final int[] retVal = new int[count];
+        for (int i = 0; i < count; i++) {
+            retVal[i] = input.readInt();
+        }
+        return retVal;
+    }
+
+    /**
+     * @return The quadratic, or null if the number of terms was written as -1
+     */
+    private static Quadratic readQuadratic(final DataInputStream input) throws IOException {
+        final int tmpCount = input.readInt();
+        if (tmpCount < 0) {
+            return null;
+        }
+        return new Quadratic(ModelSnapshot.readInts(input, tmpCount), ModelSnapshot.readInts(input, tmpCount), ModelSnapshot.readDoubles(input, tmpCount));
+    }
+
+    private static void update(final MessageDigest digest, final ByteBuffer buffer, final double value) {
+        if (buffer.remaining() < Double.BYTES) {
+            ModelSnapshot.flush(digest, buffer);
+        }
+        buffer.putLong(Double.doubleToLongBits(value));
+    }
+
+    private static void update(final MessageDigest digest, final ByteBuffer buffer, final int value) {
+        if (buffer.remaining() < Integer.BYTES) {
+            ModelSnapshot.flush(digest, buffer);
+        }
+        buffer.putInt(value);
+    }
+
+    private static void update(final MessageDigest digest, final ByteBuffer buffer, final Quadratic quadratic) {
+        if (quadratic != null) {
+            ModelSnapshot.update(digest, buffer, quadratic.values.length);
+            for (int k = 0; k < quadratic.values.length; k++) {
+                ModelSnapshot.update(digest, buffer, quadratic.rows[k]);
+                ModelSnapshot.update(digest, buffer, quadratic.columns[k]);
+                ModelSnapshot.update(digest, buffer, quadratic.values[k]);
+            }
+        } else {
+            ModelSnapshot.update(digest, buffer, -1);
+        }
+    }
+
+    private static void write(final DataOutputStream output, final Quadratic quadratic) throws IOException {
+        if (quadratic != null) {
+            output.writeInt(quadratic.values.length);
+            for (int k = 0; k < quadratic.values.length; k++) {
+                output.writeInt(quadratic.rows[k]);
+            }
+            for (int k = 0; k < quadratic.values.length; k++) {
+                output.writeInt(quadratic.columns[k]);
+            }
+            for (int k = 0; k < quadratic.values.length; k++) {
+                output.writeDouble(quadratic.values[k]);
+            }
+        } else {
+            output.writeInt(-1);
+        }
+    }
+
+    private final double[] myObjective;
+    private final Quadratic myQuadraticObjective;
+    private final Quadratic[] myQuadraticConstraints;
+    private final CompressedRows myRows;
+    private final objsense mySense;
+    private final boundkey[] myVariableKeys;
+    private final double[] myVariableLower;
+    private final double[] myVariableUpper;
+
+    ModelSnapshot(final boundkey[] variableKeys, final double[] variableLower, final double[] variableUpper, final CompressedRows rows,
+            final Quadratic[] quadraticConstraints, final double[] objective, final Quadratic quadraticObjective, final objsense sense) {
+
+        super();
+
+        myVariableKeys = variableKeys;
+        myVariableLower = variableLower;
+        myVariableUpper = variableUpper;
+        myRows = rows;
+        myQuadraticConstraints = quadraticConstraints;
+        myObjective = objective;
+        myQuadraticObjective = quadraticObjective;
+        mySense = sense;
+    }
+
+    /**
+     * Feed every value of the snapshot to the digest, in a fixed order, so that equal snapshots give equal
+     * digests.
+     */
+    void digest(final MessageDigest digest) {
+
+        final ByteBuffer tmpBuffer = ByteBuffer.allocate(8192);
+
+        ModelSnapshot.update(digest, tmpBuffer, myVariableKeys.length);
+        for (int j = 0; j < myVariableKeys.length; j++) {
+            ModelSnapshot.update(digest, tmpBuffer, myVariableKeys[j].ordinal());
+            ModelSnapshot.update(digest, tmpBuffer, myVariableLower[j]);
+            ModelSnapshot.update(digest, tmpBuffer, myVariableUpper[j]);
+            ModelSnapshot.update(digest, tmpBuffer, myObjective[j]);
+        }
+
+        ModelSnapshot.update(digest, tmpBuffer, myRows.countRows());
+        for (int i = 0, limit = myRows.countRows(); i < limit; i++) {
+            ModelSnapshot.update(digest, tmpBuffer, myRows.getBoundKey(i).ordinal());
+            ModelSnapshot.update(digest, tmpBuffer, myRows.getLowerBound(i));
+            ModelSnapshot.update(digest, tmpBuffer, myRows.getUpperBound(i));
+            ModelSnapshot.update(digest, tmpBuffer, myRows.getRowEnd(i) - myRows.getRowBegin(i));
+            for (int e = myRows.getRowBegin(i), end = myRows.getRowEnd(i); e < end; e++) {
+                ModelSnapshot.update(digest, tmpBuffer, myRows.getColumn(e));
+                ModelSnapshot.update(digest, tmpBuffer, myRows.getValue(e));
+            }
+            ModelSnapshot.update(digest, tmpBuffer, myQuadraticConstraints[i]);
+        }
+
+        ModelSnapshot.update(digest, tmpBuffer, myQuadraticObjective);
+        ModelSnapshot.update(digest, tmpBuffer, mySense.ordinal());
+
+        ModelSnapshot.flush(digest, tmpBuffer);
+    }
+
+    int countVariables() {
+        return myVariableKeys.length;
+    }
+
+    boolean isQuadratic() {
+        if (myQuadraticObjective != null) {
+            return true;
+        }
+        for (final Quadratic tmpQuadratic : myQuadraticConstraints) {
+            if (tmpQuadratic != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Push everything that differs from the previous snapshot to the task. The previous snapshot must have
+     * been taken from a model with the same structure (equal {@link TaskCache.Key}).
+     *
+     * @return The number of individual values that were changed
+     */
+    int putDifferences(final TaskBackend task, final ModelSnapshot previous) {
+
+        int retVal = 0;
+
+        for (int j = 0; j < myVariableKeys.length; j++) {
+            if ((myVariableKeys[j] != previous.myVariableKeys[j]) || !ModelSnapshot.isSame(myVariableLower[j], previous.myVariableLower[j])
+                    || !ModelSnapshot.isSame(myVariableUpper[j], previous.myVariableUpper[j])) {
+                task.putvarbound(j, myVariableKeys[j], myVariableLower[j], myVariableUpper[j]);
+                retVal++;
+            }
+        }
+
+        for (int j = 0; j < myObjective.length; j++) {
+            if (!ModelSnapshot.isSame(myObjective[j], previous.myObjective[j])) {
+                task.putcj(j, myObjective[j]);
+                retVal++;
+            }
+        }
+
+        for (int i = 0, limit = myRows.countRows(); i < limit; i++) {
+
+            if ((myRows.getBoundKey(i) != previous.myRows.getBoundKey(i)) || !ModelSnapshot.isSame(myRows.getLowerBound(i), previous.myRows.getLowerBound(i))
+                    || !ModelSnapshot.isSame(myRows.getUpperBound(i), previous.myRows.getUpperBound(i))) {
+                task.putconbound(i, myRows.getBoundKey(i), myRows.getLowerBound(i), myRows.getUpperBound(i));
+                retVal++;
+            }
+
+            final int tmpBegin = myRows.getRowBegin(i);
+            final int tmpEnd = myRows.getRowEnd(i);
+            final int tmpOffset = previous.myRows.getRowBegin(i) - tmpBegin;
+
+            boolean tmpSameOrder = (previous.myRows.getRowEnd(i) - previous.myRows.getRowBegin(i)) == (tmpEnd - tmpBegin);
+            for (int e = tmpBegin; tmpSameOrder && (e < tmpEnd); e++) {
+                tmpSameOrder = myRows.getColumn(e) == previous.myRows.getColumn(e + tmpOffset);
+            }
+
+            if (tmpSameOrder) {
+                for (int e = tmpBegin; e < tmpEnd; e++) {
+                    if (!ModelSnapshot.isSame(myRows.getValue(e), previous.myRows.getValue(e + tmpOffset))) {
+                        task.putaij(i, myRows.getColumn(e), myRows.getValue(e));
+                        retVal++;
+                    }
+                }
+            } else {
+                // Same pattern but enumerated in a different order - replace the whole row
+                final int tmpLength = tmpEnd - tmpBegin;
+                final int[] tmpColumns = new int[tmpLength];
+                final double[] tmpValues = new double[tmpLength];
+                for (int e = 0; e < tmpLength; e++) {
+                    tmpColumns[e] = myRows.getColumn(tmpBegin + e);
+                    tmpValues[e] = myRows.getValue(tmpBegin + e);
+                }
+                task.putarow(i, tmpColumns, tmpValues);
+                retVal += tmpLength;
+            }
+
+            final Quadratic tmpQuadratic = myQuadraticConstraints[i];
+            if ((tmpQuadratic != null) && !tmpQuadratic.isSame(previous.myQuadraticConstraints[i])) {
+                task.putqconk(i, tmpQuadratic.rows, tmpQuadratic.columns, tmpQuadratic.values);
+                retVal += tmpQuadratic.values.length;
+            }
+        }
+
+        if ((myQuadraticObjective != null) && !myQuadraticObjective.isSame(previous.myQuadraticObjective)) {
+            task.putqobj(myQuadraticObjective.rows, myQuadraticObjective.columns, myQuadraticObjective.values);
+            retVal += myQuadraticObjective.values.length;
+        }
+
+        if (mySense != previous.mySense) {
+            task.putobjsense(mySense);
+            retVal++;
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Populate an empty task - appends the variables and constraints.
+     */
+    void putInto(final TaskBackend task) {
+
+        final int tmpNumberOfVariables = myVariableKeys.length;
+        final int tmpNumberOfConstraints = myRows.countRows();
+
+        task.appendvars(tmpNumberOfVariables);
+        task.appendcons(tmpNumberOfConstraints);
+
+        if (tmpNumberOfVariables > 0) {
+            task.putvarboundslice(0, tmpNumberOfVariables, myVariableKeys, myVariableLower, myVariableUpper);
+            task.putcslice(0, tmpNumberOfVariables, myObjective);
+        }
+
+        myRows.putInto(task, 0);
+
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            final Quadratic tmpQuadratic = myQuadraticConstraints[i];
+            if (tmpQuadratic != null) {
+                task.putqconk(i, tmpQuadratic.rows, tmpQuadratic.columns, tmpQuadratic.values);
+            }
+        }
+
+        if (myQuadraticObjective != null) {
+            task.putqobj(myQuadraticObjective.rows, myQuadraticObjective.columns, myQuadraticObjective.values);
+        }
+
+        task.putobjsense(mySense);
+    }
+
+    /**
+     * Write the snapshot, column by column: first the variables (bound keys, lower bounds, upper bounds,
+     * objective coefficients), then the constraints (bound keys, lower bounds, upper bounds, row lengths,
+     * column subscripts and values of the CSR matrix), then the quadratic constraints and objective as
+     * (row, column, value) triplets, and finally the objective sense.
+     */
+    void write(final DataOutputStream output) throws IOException {
+
+        final int tmpNumberOfVariables = myVariableKeys.length;
+        final int tmpNumberOfConstraints = myRows.countRows();
+
+        output.writeInt(tmpNumberOfVariables);
+        for (int j = 0; j < tmpNumberOfVariables; j++) {
+            output.writeByte(myVariableKeys[j].ordinal());
+        }
+        for (int j = 0; j < tmpNumberOfVariables; j++) {
+            output.writeDouble(myVariableLower[j]);
+        }
+        for (int j = 0; j < tmpNumberOfVariables; j++) {
+            output.writeDouble(myVariableUpper[j]);
+        }
+        for (int j = 0; j < tmpNumberOfVariables; j++) {
+            output.writeDouble(myObjective[j]);
+        }
+
+        int tmpNumberOfElements = 0;
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            tmpNumberOfElements += myRows.getRowEnd(i) - myRows.getRowBegin(i);
+        }
+
+        output.writeInt(tmpNumberOfConstraints);
+        output.writeInt(tmpNumberOfElements);
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            output.writeByte(myRows.getBoundKey(i).ordinal());
+        }
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            output.writeDouble(myRows.getLowerBound(i));
+        }
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            output.writeDouble(myRows.getUpperBound(i));
+        }
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            output.writeInt(myRows.getRowEnd(i) - myRows.getRowBegin(i));
+        }
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            for (int e = myRows.getRowBegin(i), end = myRows.getRowEnd(i); e < end; e++) {
+                output.writeInt(myRows.getColumn(e));
+            }
+        }
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            for (int e = myRows.getRowBegin(i), end = myRows.getRowEnd(i); e < end; e++) {
+                output.writeDouble(myRows.getValue(e));
+            }
+        }
+
+        int tmpNumberOfQuadratic = 0;
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            if (myQuadraticConstraints[i] != null) {
+                tmpNumberOfQuadratic++;
+            }
+        }
+        output.writeInt(tmpNumberOfQuadratic);
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            if (myQuadraticConstraints[i] != null) {
+                output.writeInt(i);
+                ModelSnapshot.write(output, myQuadraticConstraints[i]);
+            }
+        }
+        ModelSnapshot.write(output, myQuadraticObjective);
+
+        output.writeByte(mySense.ordinal());
+    }
+
+}
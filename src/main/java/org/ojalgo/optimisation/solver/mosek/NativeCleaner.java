@@ -0,0 +1,122 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A safety net for native MOSEK resources, in place of finalize() - the same idea as
+ * java.lang.ref.Cleaner (not available in Java 8). An action is registered together with the object that
+ * owns the resource. It is run exactly once: either explicitly, by {@link Cleanable#clean()}, or by a
+ * daemon thread after the owner has become phantom reachable. The action must not reference the owner,
+ * or the owner will never become unreachable.
+ *
+ * @author apete
+ */
+final class NativeCleaner {
+
+    interface Cleanable {
+
+        /**
+         * Run the action now, unless it already has been. Deregisters it.
+         */
+        void clean();
+
+    }
+
+    private static final class Registration extends PhantomReference<Object> implements Cleanable {
+
+        private final Runnable myAction;
+        private final Set<Registration> myRegistrations;
+
+        Registration(final Object owner, final Runnable action, final ReferenceQueue<Object> queue, final Set<Registration> registrations) {
+            super(owner, queue);
+            myAction = action;
+            myRegistrations = registrations;
+            registrations.add(this);
+        }
+
+        public void clean() {
+            if (myRegistrations.remove(this)) {
+                this.clear();
+                myAction.run();
+            }
+        }
+
+    }
+
+    static final NativeCleaner INSTANCE = new NativeCleaner();
+
+    private final ReferenceQueue<Object> myQueue = new ReferenceQueue<>();
+    /**
+     * Keeps the registrations themselves reachable until they are cleaned.
+     */
+    private final Set<Registration> myRegistrations = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Thread myThread;
+
+    NativeCleaner() {
+
+        super();
+
+        myThread = new Thread(this::run, "MOSEK-cleaner");
+        myThread.setDaemon(true);
+        myThread.start();
+    }
+
+    /**
+     * @return The number of registered actions not yet run
+     */
+    int count() {
+        return myRegistrations.size();
+    }
+
+    /**
+     * @return true if called from the cleaner thread, i.e. from an action run because its owner was no longer
+     *         reachable
+     */
+    boolean isCleanerThread() {
+        return Thread.currentThread() == myThread;
+    }
+
+    Cleanable register(final Object owner, final Runnable action) {
+        return new Registration(owner, action, myQueue, myRegistrations);
+    }
+
+    private void run() {
+        for (;;) {
+            try {
+                final Reference<?> tmpReference = myQueue.remove();
+                ((Registration) tmpReference).clean();
+            } catch (final InterruptedException cause) {
+                // Keep going - the thread lives as long as the JVM
+            } catch (final Throwable cause) {
+                // A failing action must not stop the cleaning of the others
+            }
+        }
+    }
+
+}
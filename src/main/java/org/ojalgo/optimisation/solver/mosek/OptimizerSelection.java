@@ -0,0 +1,354 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.ojalgo.optimisation.Optimisation;
+
+import mosek.Env;
+import mosek.Env.soltype;
+import mosek.Task;
+
+/**
+ * Chooses which MOSEK optimizer to use (and how - crossover, presolve) based on features of the task: the
+ * kind of problem (LP, QP/conic, MIP), its size and density, and whether a warm start is available. The
+ * initial choice is a fixed heuristic. Then the optimisation times are recorded, per feature class and
+ * optimizer, and the optimizer with the shortest average time is chosen. Every
+ * {@value #EXPLORATION_PERIOD}th solve in a feature class tries the candidate with the fewest recorded
+ * solves instead, so that all candidates eventually get measured. The history can be persisted to a file,
+ * and is then saved regularly.
+ * <p>
+ * Disabled by default. Enable it with {@link #setEnabled(boolean)}. Mixed integer problems are always left to
+ * MOSEK's default.
+ *
+ * @author apete
+ */
+public final class OptimizerSelection {
+
+    public static enum Optimizer {
+
+        /**
+         * Interior-point followed by a basis crossover
+         */
+        CROSSOVER(Env.optimizertype.intpnt, true, true),
+        DUAL_SIMPLEX(Env.optimizertype.dual_simplex, true, false),
+        /**
+         * MOSEK chooses
+         */
+        FREE(Env.optimizertype.free, true, false),
+        /**
+         * Interior-point without crossover (for LPs the solution is then not basic)
+         */
+        INTERIOR_POINT(Env.optimizertype.intpnt, false, false),
+        PRIMAL_SIMPLEX(Env.optimizertype.primal_simplex, true, false);
+
+        private final boolean myBasic;
+        private final boolean myCrossover;
+        private final Env.optimizertype myType;
+
+        Optimizer(final Env.optimizertype type, final boolean basic, final boolean crossover) {
+            myType = type;
+            myBasic = basic;
+            myCrossover = crossover;
+        }
+
+        /**
+         * Sets all the parameters an optimizer choice depends on, on every path - tasks are reused, and must
+         * not keep a setting from a previous choice.
+         */
+        void configure(final Task task, final boolean warm) {
+
+            task.putintparam(Env.iparam.optimizer, myType.value);
+
+            // MOSEK's default is always (to crossover) - only interior-point without crossover differs
+            final boolean tmpNoBasis = (myType == Env.optimizertype.intpnt) && !myCrossover;
+            task.putintparam(Env.iparam.intpnt_basis, tmpNoBasis ? Env.basindtype.never.value : Env.basindtype.always.value);
+
+            // Presolve would discard the basis the simplex is warm started from
+            final boolean tmpSimplex = (myType == Env.optimizertype.dual_simplex) || (myType == Env.optimizertype.primal_simplex);
+            task.putintparam(Env.iparam.presolve_use, warm && tmpSimplex ? Env.presolvemode.off.value : Env.presolvemode.free.value);
+        }
+
+        /**
+         * @return The solution type to read back, for a task that would otherwise use the given one
+         */
+        soltype getSolutionType(final soltype solutionType) {
+            return (solutionType == soltype.bas) && !myBasic ? soltype.itr : solutionType;
+        }
+
+    }
+
+    /**
+     * The feature class of a task: problem kind, warm or cold, and (roughly) the log of the number of
+     * nonzeros and of the density.
+     */
+    static final class Features {
+
+        static Features of(final Task task, final soltype solutionType, final boolean warm) {
+
+            final long tmpRows = task.getnumcon();
+            final long tmpColumns = task.getnumvar();
+            final long tmpNonzeros = task.getnumanz();
+
+            // The solution type is derived from the model - integer or quadratic (possibly reformulated as cones)
+            final String tmpKind = solutionType == soltype.itg ? "MIP" : (solutionType == soltype.itr ? "QP" : "LP");
+
+            final int tmpSize = 63 - Long.numberOfLeadingZeros(tmpNonzeros + 1L);
+            final double tmpDensity = tmpNonzeros / Math.max(1.0, (double) tmpRows * tmpColumns);
+            final int tmpDensityClass = (int) Math.floor(Math.log10(Math.max(tmpDensity, 1E-9)));
+
+            return new Features(tmpKind, warm, tmpNonzeros, tmpKind + (warm ? "-warm" : "-cold") + "-nz" + tmpSize + "-d" + tmpDensityClass);
+        }
+
+        final String key;
+        final String kind;
+        final long nonzeros;
+        final boolean warm;
+
+        Features(final String kind, final boolean warm, final long nonzeros, final String key) {
+            super();
+            this.kind = kind;
+            this.warm = warm;
+            this.nonzeros = nonzeros;
+            this.key = key;
+        }
+
+    }
+
+    static final class Statistics {
+
+        int count = 0;
+        double mean = 0.0;
+
+        void record(final double seconds) {
+            count++;
+            // A running mean that, after a while, becomes an exponential moving average - the workload may change
+            mean += (seconds - mean) / Math.min(count, MEMORY);
+        }
+
+    }
+
+    /**
+     * Try the least measured candidate once every this many solves (per feature class)
+     */
+    public static final int EXPLORATION_PERIOD = 10;
+
+    private static final Optimizer[] CANDIDATES_LP = { Optimizer.DUAL_SIMPLEX, Optimizer.PRIMAL_SIMPLEX, Optimizer.CROSSOVER, Optimizer.INTERIOR_POINT,
+            Optimizer.FREE };
+    private static final Optimizer[] CANDIDATES_WARM_LP = { Optimizer.DUAL_SIMPLEX, Optimizer.PRIMAL_SIMPLEX, Optimizer.FREE };
+    private static final int MEMORY = 50;
+    private static final int SAVE_PERIOD = 16;
+    private static final long SMALL_LP = 100_000L;
+
+    private volatile boolean myEnabled = false;
+    private File myFile = null;
+    private final Map<String, Map<Optimizer, Statistics>> myHistory = new HashMap<>();
+    private final Map<String, Integer> mySolves = new HashMap<>();
+    private int myUnsaved = 0;
+
+    OptimizerSelection() {
+        super();
+    }
+
+    /**
+     * Forget all recorded solve times.
+     */
+    public synchronized void clear() {
+        myHistory.clear();
+        mySolves.clear();
+    }
+
+    /**
+     * @return The recorded number of solves and average optimisation time (seconds), per feature class and
+     *         optimizer, as "count/mean".
+     */
+    public synchronized Map<String, Map<Optimizer, String>> getHistory() {
+        final Map<String, Map<Optimizer, String>> retVal = new TreeMap<>();
+        for (final Map.Entry<String, Map<Optimizer, Statistics>> tmpClass : myHistory.entrySet()) {
+            final Map<Optimizer, String> tmpOptimizers = new TreeMap<>();
+            for (final Map.Entry<Optimizer, Statistics> tmpEntry : tmpClass.getValue().entrySet()) {
+                tmpOptimizers.put(tmpEntry.getKey(), tmpEntry.getValue().count + "/" + tmpEntry.getValue().mean);
+            }
+            retVal.put(tmpClass.getKey(), tmpOptimizers);
+        }
+        return retVal;
+    }
+
+    public boolean isEnabled() {
+        return myEnabled;
+    }
+
+    /**
+     * Write the history to the file set with {@link #setFile(File)} (if any).
+     */
+    public synchronized void save() {
+
+        myUnsaved = 0;
+
+        if (myFile == null) {
+            return;
+        }
+
+        final Path tmpTarget = myFile.toPath();
+        final Path tmpTemporary = tmpTarget.resolveSibling(tmpTarget.getFileName() + ".tmp");
+
+        try (BufferedWriter tmpWriter = Files.newBufferedWriter(tmpTemporary, StandardCharsets.UTF_8)) {
+            for (final Map.Entry<String, Map<Optimizer, Statistics>> tmpClass : myHistory.entrySet()) {
+                for (final Map.Entry<Optimizer, Statistics> tmpEntry : tmpClass.getValue().entrySet()) {
+                    tmpWriter.write(tmpClass.getKey() + "\t" + tmpEntry.getKey().name() + "\t" + tmpEntry.getValue().count + "\t" + tmpEntry.getValue().mean);
+                    tmpWriter.newLine();
+                }
+            }
+        } catch (final IOException cause) {
+            throw new UncheckedIOException(cause);
+        }
+
+        try {
+            Files.move(tmpTemporary, tmpTarget, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException cause) {
+            throw new UncheckedIOException(cause);
+        }
+    }
+
+    public void setEnabled(final boolean enabled) {
+        myEnabled = enabled;
+    }
+
+    /**
+     * Persist the history in this file. If the file exists its history is loaded, replacing the current.
+     * null means the history is not persisted.
+     */
+    public synchronized void setFile(final File file) {
+
+        myFile = file;
+
+        if ((file == null) || !file.exists()) {
+            return;
+        }
+
+        this.clear();
+
+        try (BufferedReader tmpReader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String tmpLine;
+            while ((tmpLine = tmpReader.readLine()) != null) {
+                final String[] tmpParts = tmpLine.split("\t");
+                if (tmpParts.length != 4) {
+                    continue;
+                }
+                try {
+                    final Statistics tmpStatistics = new Statistics();
+                    tmpStatistics.count = Integer.parseInt(tmpParts[2]);
+                    tmpStatistics.mean = Double.parseDouble(tmpParts[3]);
+                    myHistory.computeIfAbsent(tmpParts[0], k -> new HashMap<>()).put(Optimizer.valueOf(tmpParts[1]), tmpStatistics);
+                } catch (final IllegalArgumentException cause) {
+                    // Skip lines from other versions
+                }
+            }
+        } catch (final IOException cause) {
+            throw new UncheckedIOException(cause);
+        }
+    }
+
+    private Optimizer[] candidates(final Features features) {
+        if ("LP".equals(features.kind)) {
+            return features.warm ? CANDIDATES_WARM_LP : CANDIDATES_LP;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Record how long the optimisation took. Failed solves are recorded with a penalty.
+     */
+    synchronized void record(final Features features, final Optimizer optimizer, final long nanos, final Optimisation.State state) {
+
+        final double tmpSeconds = (state.isFailure() ? 10.0 : 1.0) * (nanos / 1_000_000_000.0);
+
+        myHistory.computeIfAbsent(features.key, k -> new HashMap<>()).computeIfAbsent(optimizer, k -> new Statistics()).record(tmpSeconds);
+
+        if ((myFile != null) && (++myUnsaved >= SAVE_PERIOD)) {
+            try {
+                this.save();
+            } catch (final UncheckedIOException cause) {
+                // Try again later
+            }
+        }
+    }
+
+    /**
+     * @return The optimizer to use for this feature class, or null to leave it to MOSEK
+     */
+    synchronized Optimizer select(final Features features) {
+
+        final Optimizer[] tmpCandidates = this.candidates(features);
+        if (tmpCandidates == null) {
+            return null;
+        }
+
+        final int tmpSolves = mySolves.merge(features.key, 1, Integer::sum);
+        final Map<Optimizer, Statistics> tmpHistory = myHistory.getOrDefault(features.key, new HashMap<>());
+
+        if ((tmpSolves % EXPLORATION_PERIOD) == 0) {
+            Optimizer retVal = tmpCandidates[0];
+            int tmpFewest = Integer.MAX_VALUE;
+            for (final Optimizer tmpCandidate : tmpCandidates) {
+                final Statistics tmpStatistics = tmpHistory.get(tmpCandidate);
+                final int tmpCount = tmpStatistics != null ? tmpStatistics.count : 0;
+                if (tmpCount < tmpFewest) {
+                    tmpFewest = tmpCount;
+                    retVal = tmpCandidate;
+                }
+            }
+            return retVal;
+        }
+
+        Optimizer retVal = null;
+        double tmpFastest = Double.POSITIVE_INFINITY;
+        for (final Optimizer tmpCandidate : tmpCandidates) {
+            final Statistics tmpStatistics = tmpHistory.get(tmpCandidate);
+            if ((tmpStatistics != null) && (tmpStatistics.mean < tmpFastest)) {
+                tmpFastest = tmpStatistics.mean;
+                retVal = tmpCandidate;
+            }
+        }
+
+        if (retVal != null) {
+            return retVal;
+        }
+
+        // No history - warm started or small LPs are typically fastest with the dual simplex, large ones with interior-point
+        return features.warm || (features.nonzeros < SMALL_LP) ? Optimizer.DUAL_SIMPLEX : Optimizer.CROSSOVER;
+    }
+
+}
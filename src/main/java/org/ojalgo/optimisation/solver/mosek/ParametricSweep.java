@@ -0,0 +1,239 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Optimisation;
+
+import mosek.Env.boundkey;
+import mosek.Env.objsense;
+import mosek.Task;
+
+/**
+ * Solves the same model for a sequence of parameter values - typically an efficient frontier, with one of
+ * the constraint limits or the objective weights varying. The task is built once. For each point the model
+ * is updated (with the usual {@link Expression#lower(Comparable)}, {@link Expression#upper(Comparable)},
+ * {@link org.ojalgo.optimisation.Variable#weight(Comparable)}...), only the constraint bounds and objective
+ * coefficients that changed are pushed to the task, and MOSEK re-solves from the previous point. Linear
+ * problems are hot started with the dual simplex from the previous basis; for mixed integer problems the
+ * previous solution is used as a start solution. The interior-point optimizer (quadratic and conic problems)
+ * can't be warm started - then the saving is the build.
+ * <p>
+ * Only constraint limits and objective weights (linear and quadratic) are picked up. The constraints are
+ * those of the model when the sweep was created - expressions that become constraints later are ignored,
+ * and a constraint that loses its limits becomes a free row. Changes to the constraint factors, to the
+ * variable bounds, or to which variables are fixed, require a new sweep.
+ *
+ * @author apete
+ */
+public final class ParametricSweep implements AutoCloseable {
+
+    private final boundkey[] myBoundKeys;
+    private final FreeVariables myColumns;
+    private final List<Expression> myConstraints;
+    private final SolverMosek.Integration myIntegration;
+    private final double[] myLowerBounds;
+    private final ExpressionsBasedModel myModel;
+    private final double[] myObjective;
+    private final double[] myOffsets;
+    private Optimisation.Result myPrevious = null;
+    private final boolean myQuadratic;
+    private final SolverMosek mySolver;
+    private final Task myTask;
+    private final double[] myUpperBounds;
+
+    ParametricSweep(final SolverMosek.Integration integration, final ExpressionsBasedModel model, final SolverMosek solver, final Task task,
+            final FreeVariables columns, final List<Expression> constraints) {
+
+        super();
+
+        myIntegration = integration;
+        myModel = model;
+        mySolver = solver;
+        myTask = task;
+        myColumns = columns;
+        myConstraints = constraints;
+
+        final int tmpNumberOfConstraints = constraints.size();
+        final int tmpNumberOfVariables = columns.count();
+
+        // The bounds as translated, so that the first point only pushes what actually changed
+        myBoundKeys = new boundkey[tmpNumberOfConstraints];
+        myLowerBounds = new double[tmpNumberOfConstraints];
+        myUpperBounds = new double[tmpNumberOfConstraints];
+        if (tmpNumberOfConstraints > 0) {
+            task.getconboundslice(0, tmpNumberOfConstraints, myBoundKeys, myLowerBounds, myUpperBounds);
+        }
+        myObjective = new double[tmpNumberOfVariables];
+        if (tmpNumberOfVariables > 0) {
+            task.getcslice(0, tmpNumberOfVariables, myObjective);
+        }
+
+        // The contributions of the fixed variables - they don't change during the sweep
+        final TermBuffer tmpTerms = TermBuffer.local();
+        myOffsets = new double[tmpNumberOfConstraints];
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            myOffsets[i] = tmpTerms.linear(columns.reduce(constraints.get(i)), columns).linearConstant();
+        }
+
+        myQuadratic = task.getnumqobjnz() > 0L;
+
+        solver.setHotStart(true);
+    }
+
+    /**
+     * Dispose the task.
+     */
+    public void close() {
+        mySolver.dispose();
+    }
+
+    /**
+     * Solve for the model as it is now - push any changed constraint limits and objective weights to the task
+     * and re-solve from the previous point.
+     */
+    public Optimisation.Result solve() {
+
+        this.putBounds();
+        this.putObjective();
+
+        final Optimisation.Result tmpSolverState = mySolver.solve(myPrevious);
+        myPrevious = tmpSolverState;
+
+        return myIntegration.toModelState(tmpSolverState, myModel);
+    }
+
+    /**
+     * Solve for each of the parameters in turn. Nothing happens until the stream is consumed, and each point
+     * is solved only when it is requested - the stream is sequential and must be consumed before the next
+     * sweep is started.
+     *
+     * @param parameters The parameter values
+     * @param update Updates the model for a parameter value
+     * @return The results, in parameter order
+     */
+    public <T> Stream<Optimisation.Result> sweep(final Iterable<T> parameters, final Consumer<? super T> update) {
+
+        final Iterator<T> tmpParameters = parameters.iterator();
+
+        final Iterator<Optimisation.Result> tmpResults = new Iterator<Optimisation.Result>() {
+
+            public boolean hasNext() {
+                return tmpParameters.hasNext();
+            }
+
+            public Optimisation.Result next() {
+                update.accept(tmpParameters.next());
+                return ParametricSweep.this.solve();
+            }
+
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(tmpResults, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private void putBounds() {
+
+        final int tmpNumberOfConstraints = myConstraints.size();
+
+        final int[] tmpChanged = new int[tmpNumberOfConstraints];
+        final boundkey[] tmpKeys = new boundkey[tmpNumberOfConstraints];
+        final double[] tmpLower = new double[tmpNumberOfConstraints];
+        final double[] tmpUpper = new double[tmpNumberOfConstraints];
+        int tmpCount = 0;
+
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+
+            final Expression tmpReduced = myColumns.reduce(myConstraints.get(i));
+
+            final boundkey tmpKey = SolverMosek.getBoundKey(tmpReduced);
+            final double tmpLo = tmpReduced.getAdjustedLowerLimit() - myOffsets[i];
+            final double tmpUp = tmpReduced.getAdjustedUpperLimit() - myOffsets[i];
+
+            if ((tmpKey != myBoundKeys[i]) || (Double.compare(tmpLo, myLowerBounds[i]) != 0) || (Double.compare(tmpUp, myUpperBounds[i]) != 0)) {
+                myBoundKeys[i] = tmpKey;
+                myLowerBounds[i] = tmpLo;
+                myUpperBounds[i] = tmpUp;
+                tmpChanged[tmpCount] = i;
+                tmpKeys[tmpCount] = tmpKey;
+                tmpLower[tmpCount] = tmpLo;
+                tmpUpper[tmpCount] = tmpUp;
+                tmpCount++;
+            }
+        }
+
+        if (tmpCount > 0) {
+            myTask.putconboundlist(Arrays.copyOf(tmpChanged, tmpCount), Arrays.copyOf(tmpKeys, tmpCount), Arrays.copyOf(tmpLower, tmpCount),
+                    Arrays.copyOf(tmpUpper, tmpCount));
+        }
+    }
+
+    private void putObjective() {
+
+        final Expression tmpReduced = myColumns.reduce(myModel.objective());
+
+        final TermBuffer tmpTerms = TermBuffer.local().linear(tmpReduced, myColumns);
+
+        final double[] tmpObjective = new double[myObjective.length];
+        for (int t = 0, limit = tmpTerms.countLinear(); t < limit; t++) {
+            tmpObjective[tmpTerms.linearColumn(t)] += tmpTerms.linearValue(t);
+        }
+
+        final int[] tmpChanged = new int[tmpObjective.length];
+        final double[] tmpValues = new double[tmpObjective.length];
+        int tmpCount = 0;
+        for (int j = 0; j < tmpObjective.length; j++) {
+            if (Double.compare(tmpObjective[j], myObjective[j]) != 0) {
+                myObjective[j] = tmpObjective[j];
+                tmpChanged[tmpCount] = j;
+                tmpValues[tmpCount] = tmpObjective[j];
+                tmpCount++;
+            }
+        }
+        if (tmpCount > 0) {
+            myTask.putclist(Arrays.copyOf(tmpChanged, tmpCount), Arrays.copyOf(tmpValues, tmpCount));
+        }
+
+        // Quadratic weights can't be compared cheaply - if there are any they are always pushed
+        if (myQuadratic) {
+            tmpTerms.quadratic(tmpReduced, myColumns);
+            if (tmpTerms.countQuadratic() > 0) {
+                tmpTerms.putQuadraticObjective(TaskBackend.of(myTask));
+            } else {
+                myTask.putqobj(new int[0], new int[0], new double[0]);
+            }
+        }
+
+        myTask.putobjsense(myModel.isMinimisation() ? objsense.minimize : objsense.maximize);
+    }
+
+}
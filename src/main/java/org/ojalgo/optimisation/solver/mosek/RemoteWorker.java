@@ -0,0 +1,141 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import org.ojalgo.optimisation.Optimisation;
+
+import mosek.Env.variabletype;
+import mosek.Task;
+
+/**
+ * The worker side of a {@link WorkerPool}: reads requests from one stream and writes the replies to another
+ * (see {@link WorkerProtocol}). Run as a separate JVM, with {@link #main(String[])}, it talks to the pool
+ * over its standard input and output. Anything else written to standard output is redirected to standard
+ * error so that it does not corrupt the channel.
+ *
+ * @author apete
+ */
+public final class RemoteWorker {
+
+    public static void main(final String[] args) throws IOException {
+
+        final OutputStream tmpChannel = new FileOutputStream(FileDescriptor.out);
+        System.setOut(System.err);
+
+        RemoteWorker.serve(System.in, tmpChannel, RemoteWorker::solve);
+    }
+
+    /**
+     * Serve requests until {@link WorkerProtocol#SHUTDOWN} or end of stream.
+     *
+     * @param solver Solves a request - normally {@link #solve(WorkerProtocol.Request)}, but a stand-in can
+     *        be used for testing.
+     */
+    static void serve(final InputStream input, final OutputStream output, final Function<WorkerProtocol.Request, Optimisation.Result> solver)
+            throws IOException {
+
+        final DataInputStream tmpInput = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        final DataOutputStream tmpOutput = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+
+        tmpOutput.writeInt(WorkerProtocol.MAGIC);
+        tmpOutput.flush();
+
+        for (;;) {
+
+            final byte tmpType;
+            try {
+                tmpType = tmpInput.readByte();
+            } catch (final EOFException cause) {
+                return;
+            }
+
+            switch (tmpType) {
+            case WorkerProtocol.PING:
+                tmpOutput.writeByte(WorkerProtocol.PONG);
+                tmpOutput.flush();
+                break;
+            case WorkerProtocol.SOLVE:
+                final WorkerProtocol.Request tmpRequest = WorkerProtocol.readRequest(tmpInput);
+                Optimisation.Result tmpResult = null;
+                String tmpError = null;
+                try {
+                    tmpResult = solver.apply(tmpRequest);
+                } catch (final RuntimeException cause) {
+                    tmpError = String.valueOf(cause);
+                }
+                if (tmpResult != null) {
+                    WorkerProtocol.writeResult(tmpOutput, tmpResult);
+                } else {
+                    tmpOutput.writeByte(WorkerProtocol.ERROR);
+                    tmpOutput.writeUTF(tmpError != null ? tmpError : "No result");
+                    tmpOutput.flush();
+                }
+                break;
+            case WorkerProtocol.SHUTDOWN:
+                return;
+            default:
+                throw new IOException("Unknown request type " + tmpType);
+            }
+        }
+    }
+
+    /**
+     * Solve in this JVM, with {@link SolverMosek}.
+     */
+    static Optimisation.Result solve(final WorkerProtocol.Request request) {
+
+        final Task tmpTask = SolverMosek.INTEGRATION.makeTask(0, 0);
+        request.snapshot.putInto(TaskBackend.of(tmpTask));
+
+        if (request.integers.length > 0) {
+            final variabletype[] tmpTypes = new variabletype[request.integers.length];
+            Arrays.fill(tmpTypes, variabletype.type_int);
+            tmpTask.putvartypelist(request.integers, tmpTypes);
+        }
+
+        final Optimisation.Options tmpOptions = new Optimisation.Options();
+        tmpOptions.time_abort = request.timeLimit;
+
+        try (SolverMosek tmpSolver = new SolverMosek(tmpTask, tmpOptions)) {
+            tmpSolver.setSolutionType(request.integers.length > 0, request.snapshot.isQuadratic());
+            return tmpSolver.solve(null);
+        }
+    }
+
+    private RemoteWorker() {
+        super();
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.ojalgo.array.Primitive64Array;
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.structure.Access1D;
+import org.ojalgo.structure.Structure1D.IntIndex;
+import org.ojalgo.structure.Structure2D.IntRowColumn;
+
+import mosek.Env.soltype;
+import mosek.Task;
+
+/**
+ * Constraint duals, reduced costs and constraint activities of a solution - read from the task in bulk
+ * (slice calls) right after the solve, and mapped back to the model: one dual and one activity per model
+ * constraint (in the order of {@link ExpressionsBasedModel#constraints()}), and one reduced cost per model
+ * variable (NaN for fixed variables, as they are not part of the task). All values are in the model's
+ * scale, with MOSEK's sign conventions. Integer solutions have no duals (nor reduced costs) - they are NaN.
+ * <p>
+ * Switch extraction on with {@link SolverMosek.Integration#setSensitivity(boolean)}, and get the sensitivity
+ * of a solve from the solver ({@link SolverMosek#getSensitivity()}) or from the future of an asynchronous
+ * solve ({@link SolveFuture#getSensitivity()}). The duals are also returned as the multipliers of the
+ * {@link org.ojalgo.optimisation.Optimisation.Result}.
+ *
+ * @author apete
+ */
+public final class Sensitivity {
+
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Called from the solving thread when a solve has completed, before the result is returned.
+         */
+        void sensitivity(Sensitivity sensitivity);
+
+    }
+
+    /**
+     * @param columns The mapping from model variables to task columns that was used to build the task
+     * @param constraints The model's constraints - one task row each, in the same order
+     */
+    static Sensitivity extract(final Task task, final soltype solutionType, final ExpressionsBasedModel model, final FreeVariables columns,
+            final List<Expression> constraints) {
+
+        final int tmpNumberOfConstraints = constraints.size();
+        final int tmpNumberOfColumns = columns.count();
+        final boolean tmpDualsDefined = solutionType != soltype.itg;
+
+        final double[] tmpActivities = new double[tmpNumberOfConstraints];
+        final double[] tmpDuals = new double[tmpNumberOfConstraints];
+        final double[] tmpLowerDuals = new double[tmpNumberOfColumns];
+        final double[] tmpUpperDuals = new double[tmpNumberOfColumns];
+
+        if (tmpNumberOfConstraints > 0) {
+            task.getxcslice(solutionType, 0, tmpNumberOfConstraints, tmpActivities);
+            if (tmpDualsDefined) {
+                task.getyslice(solutionType, 0, tmpNumberOfConstraints, tmpDuals);
+            }
+        }
+        if (tmpDualsDefined && (tmpNumberOfColumns > 0)) {
+            task.getslxslice(solutionType, 0, tmpNumberOfColumns, tmpLowerDuals);
+            task.getsuxslice(solutionType, 0, tmpNumberOfColumns, tmpUpperDuals);
+        }
+
+        // The task's constraint rows and objective are scaled by the expressions' adjustment factors
+        final double tmpObjectiveFactor = Sensitivity.factor(model.objective());
+
+        final TermBuffer tmpTerms = TermBuffer.local();
+        for (int i = 0; i < tmpNumberOfConstraints; i++) {
+            final Expression tmpConstraint = columns.reduce(constraints.get(i));
+            final double tmpFactor = Sensitivity.factor(tmpConstraint);
+            final double tmpFixed = tmpTerms.linear(tmpConstraint, columns).linearConstant();
+            tmpActivities[i] = (tmpActivities[i] + tmpFixed) / tmpFactor;
+            tmpDuals[i] = tmpDualsDefined ? (tmpDuals[i] * tmpFactor) / tmpObjectiveFactor : Double.NaN;
+        }
+
+        final int tmpNumberOfVariables = model.getVariables().size();
+        final double[] tmpReducedCosts = new double[tmpNumberOfVariables];
+        for (int j = 0; j < tmpNumberOfVariables; j++) {
+            final int tmpColumn = columns.column(j);
+            if (tmpDualsDefined && (tmpColumn >= 0)) {
+                tmpReducedCosts[j] = (tmpLowerDuals[tmpColumn] - tmpUpperDuals[tmpColumn]) / tmpObjectiveFactor;
+            } else {
+                tmpReducedCosts[j] = Double.NaN;
+            }
+        }
+
+        return new Sensitivity(model, tmpDuals, tmpReducedCosts, tmpActivities);
+    }
+
+    static Sensitivity extract(final Task task, final soltype solutionType, final ExpressionsBasedModel model, final boolean allColumns) {
+        final FreeVariables tmpColumns = allColumns ? FreeVariables.all(model) : FreeVariables.of(model);
+        return Sensitivity.extract(task, solutionType, model, tmpColumns, model.constraints().collect(Collectors.toList()));
+    }
+
+    /**
+     * @return The ratio between the adjusted (as pushed to the task) and the unadjusted factors
+     */
+    static double factor(final Expression expression) {
+
+        for (final IntIndex tmpKey : expression.getLinearKeySet()) {
+            final double tmpUnadjusted = expression.get(tmpKey).doubleValue();
+            if (tmpUnadjusted != 0.0) {
+                return expression.getAdjustedLinearFactor(tmpKey) / tmpUnadjusted;
+            }
+        }
+
+        for (final IntRowColumn tmpKey : expression.getQuadraticKeySet()) {
+            final double tmpUnadjusted = expression.get(tmpKey).doubleValue();
+            if (tmpUnadjusted != 0.0) {
+                return expression.getAdjustedQuadraticFactor(tmpKey) / tmpUnadjusted;
+            }
+        }
+
+        return 1.0;
+    }
+
+    private final double[] myActivities;
+    private final double[] myDuals;
+    private final ExpressionsBasedModel myModel;
+    private final double[] myReducedCosts;
+
+    Sensitivity(final ExpressionsBasedModel model, final double[] duals, final double[] reducedCosts, final double[] activities) {
+
+        super();
+
+        myModel = model;
+        myDuals = duals;
+        myReducedCosts = reducedCosts;
+        myActivities = activities;
+    }
+
+    /**
+     * @param constraint Index in {@link ExpressionsBasedModel#constraints()}
+     * @return The value of the constraint expression
+     */
+    public double getActivity(final int constraint) {
+        return myActivities[constraint];
+    }
+
+    public Access1D<Double> getActivities() {
+        return Primitive64Array.wrap(myActivities);
+    }
+
+    /**
+     * @param constraint Index in {@link ExpressionsBasedModel#constraints()}
+     * @return The shadow price of the constraint
+     */
+    public double getDual(final int constraint) {
+        return myDuals[constraint];
+    }
+
+    public Access1D<Double> getDuals() {
+        return Primitive64Array.wrap(myDuals);
+    }
+
+    public ExpressionsBasedModel getModel() {
+        return myModel;
+    }
+
+    /**
+     * @param variable Model variable index
+     */
+    public double getReducedCost(final int variable) {
+        return myReducedCosts[variable];
+    }
+
+    public Access1D<Double> getReducedCosts() {
+        return Primitive64Array.wrap(myReducedCosts);
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Optimisation;
+
+/**
+ * The result of {@link SolverMosek.Integration#solveAsync(org.ojalgo.optimisation.ExpressionsBasedModel)}.
+ * In addition to the usual {@link CompletableFuture} functionality the solve can be stopped cooperatively,
+ * in which case the future still completes normally - with the best solution found so far.
+ * <p>
+ * The model is solved just as {@link ExpressionsBasedModel#minimise()}/{@link ExpressionsBasedModel#maximise()}
+ * would solve it (they are called on the executor thread) - presolved and validated by ojAlgo, with the
+ * integration ojAlgo selects, and with the solution written back to the model. The deadline and
+ * {@link #stop()} apply when that integration is {@link SolverMosek#INTEGRATION} - other solvers only have
+ * the model's own time limit.
+ *
+ * @author apete
+ */
+public final class SolveFuture extends CompletableFuture<Optimisation.Result> {
+
+    /**
+     * The future whose model the current thread is solving
+     */
+    private static final ThreadLocal<SolveFuture> LOCAL = new ThreadLocal<>();
+
+    /**
+     * Called by {@link SolverMosek.Integration#build(ExpressionsBasedModel)} - if the current thread is
+     * solving a model for a future, the (first) solver built gets the deadline and can be stopped.
+     */
+    static void configure(final SolverMosek solver) {
+        final SolveFuture tmpFuture = LOCAL.get();
+        if ((tmpFuture != null) && (tmpFuture.mySolver == null)) {
+            solver.setDeadline(tmpFuture.myDeadline);
+            tmpFuture.mySolver = solver;
+            if (tmpFuture.myStopRequested) {
+                solver.stop();
+            }
+        }
+    }
+
+    private final long myDeadline;
+    private volatile Sensitivity mySensitivity = null;
+    private volatile SolverMosek mySolver = null;
+    private volatile boolean myStopRequested = false;
+
+    SolveFuture(final long deadline) {
+        super();
+        myDeadline = deadline;
+    }
+
+    /**
+     * Cancelling also stops the solve, but the future then completes with a
+     * {@link java.util.concurrent.CancellationException} rather than a result. Use {@link #stop()} to get
+     * the best solution found so far.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        this.stop();
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    /**
+     * @return The sensitivity information of the solve, once the future has completed normally - only if
+     *         sensitivity is switched on (see {@link SolverMosek.Integration#setSensitivity(boolean)})
+     */
+    public Optional<Sensitivity> getSensitivity() {
+        return Optional.ofNullable(mySensitivity);
+    }
+
+    /**
+     * Ask the solve to stop as soon as possible, and complete with the best solution found so far.
+     */
+    public void stop() {
+        myStopRequested = true;
+        final SolverMosek tmpSolver = mySolver;
+        if (tmpSolver != null) {
+            tmpSolver.stop();
+        }
+    }
+
+    /**
+     * Solve the model on the current thread, in the direction it is currently set to, and complete.
+     */
+    void run(final ExpressionsBasedModel model) {
+
+        if (this.isDone()) {
+            return;
+        }
+
+        LOCAL.set(this);
+        try {
+
+            final Optimisation.Result tmpResult = model.isMinimisation() ? model.minimise() : model.maximise();
+
+            final SolverMosek tmpSolver = mySolver;
+            final Sensitivity tmpSensitivity = tmpSolver != null ? tmpSolver.getSensitivity().orElse(null) : null;
+            mySensitivity = tmpSensitivity;
+
+            this.complete(tmpSensitivity != null ? tmpResult.multipliers(tmpSensitivity.getDuals()) : tmpResult);
+
+        } catch (final Throwable cause) {
+            this.completeExceptionally(cause);
+        } finally {
+            LOCAL.remove();
+            final SolverMosek tmpSolver = mySolver;
+            mySolver = null;
+            if (tmpSolver != null) {
+                tmpSolver.dispose();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import org.ojalgo.optimisation.Optimisation;
+
+import mosek.Env;
+import mosek.Env.soltype;
+import mosek.Task;
+
+/**
+ * Timing of the phases of a single build-and-solve, together with some of MOSEK's own information items.
+ * Durations are in nanoseconds, MOSEK's times in seconds.
+ *
+ * @author apete
+ */
+public final class SolveMetrics {
+
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Called from the solving thread when a solve has completed.
+         */
+        void solved(SolveMetrics metrics);
+
+    }
+
+    /**
+     * Model extraction: free/fixed variables, constraints and compensation for fixed variables
+     */
+    public long extraction;
+    public int interiorPointIterations;
+    /**
+     * The number of branches performed by the mixed integer optimizer
+     */
+    public int mipNodes;
+    /**
+     * The call to {@link Task#optimize()}
+     */
+    public long optimisation;
+    /**
+     * The optimizer chosen by the {@link OptimizerSelection}, or null if there was no selection
+     */
+    public OptimizerSelection.Optimizer optimizer;
+    public double optimizerTime;
+    public double presolveTime;
+    /**
+     * Reading the solution back from the task
+     */
+    public long retrieval;
+    public int simplexIterations;
+    public soltype solutionType;
+    public Optimisation.State state;
+    /**
+     * The maximum number of bytes MOSEK had allocated for the task
+     */
+    public long taskMemory;
+    /**
+     * Creating (or reusing) the task and pushing the model to it
+     */
+    public long translation;
+
+    SolveMetrics() {
+        super();
+    }
+
+    @Override
+    public String toString() {
+        return "SolveMetrics [state=" + state + ", solutionType=" + solutionType + ", optimizer=" + optimizer + ", extraction=" + extraction + ", translation=" + translation
+                + ", optimisation=" + optimisation + ", retrieval=" + retrieval + ", simplexIterations=" + simplexIterations + ", interiorPointIterations="
+                + interiorPointIterations + ", mipNodes=" + mipNodes + ", presolveTime=" + presolveTime + ", optimizerTime=" + optimizerTime + ", taskMemory=" + taskMemory + "]";
+    }
+
+    void collect(final Task task) {
+
+        simplexIterations = task.getintinf(Env.iinfitem.sim_primal_iter) + task.getintinf(Env.iinfitem.sim_dual_iter);
+        interiorPointIterations = task.getintinf(Env.iinfitem.intpnt_iter);
+        mipNodes = task.getintinf(Env.iinfitem.mio_num_branch);
+
+        presolveTime = task.getdouinf(Env.dinfitem.presolve_time);
+        optimizerTime = task.getdouinf(Env.dinfitem.optimizer_time);
+
+        final long[] tmpInUse = new long[1];
+        final long[] tmpMaximum = new long[1];
+        task.getmemusagetask(tmpInUse, tmpMaximum);
+        taskMemory = tmpMaximum[0];
+    }
+
+}
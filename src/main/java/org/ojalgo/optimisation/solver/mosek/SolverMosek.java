@@ -21,9 +21,14 @@
  */
 package org.ojalgo.optimisation.solver.mosek;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.ojalgo.array.Primitive64Array;
@@ -34,21 +39,22 @@ import org.ojalgo.optimisation.Expression;
 import org.ojalgo.optimisation.ExpressionsBasedModel;
 import org.ojalgo.optimisation.Optimisation;
 import org.ojalgo.optimisation.Variable;
-import org.ojalgo.structure.Structure1D.IntIndex;
-import org.ojalgo.structure.Structure2D.IntRowColumn;
+import org.ojalgo.structure.Access1D;
 
 import mosek.Env;
 import mosek.Env.boundkey;
+import mosek.Env.callbackcode;
 import mosek.Env.objsense;
-import mosek.Env.rescode;
 import mosek.Env.solsta;
 import mosek.Env.soltype;
+import mosek.Env.stakey;
 import mosek.Env.streamtype;
 import mosek.Env.variabletype;
+import mosek.Progress;
 import mosek.Stream;
 import mosek.Task;
 
-public final class SolverMosek implements Optimisation.Solver {
+public final class SolverMosek implements Optimisation.Solver, AutoCloseable {
 
     @FunctionalInterface
     public static interface Configurator {
@@ -57,10 +63,70 @@ public final class SolverMosek implements Optimisation.Solver {
 
     }
 
-    static final class Integration extends ExpressionsBasedModel.Integration<SolverMosek> {
+    /**
+     * How {@link Integration#build(ExpressionsBasedModel)} transfers the model to the MOSEK task.
+     */
+    public static enum Translation {
+
+        /**
+         * The linear part of all constraints is assembled in compressed sparse row format and pushed to the
+         * task with single slice calls. Variable and constraint bounds are also set in bulk. With many
+         * constraints the row data is extracted in parallel, in partitions, on the common fork/join pool.
+         */
+        BULK,
+        /**
+         * One JNI call per variable and constraint (the original translation).
+         */
+        ROW_BY_ROW;
 
-        private final Env myEnvironment = new Env();
+    }
+
+    /**
+     * When the kick-starter passed to {@link SolverMosek#solve(Optimisation.Result)} is used to warm start
+     * MOSEK. It is supplied as an initial basic solution (with status keys derived from the variable bounds)
+     * to the simplex optimizers, and as an initial integer solution to the mixed integer optimizer. The
+     * interior-point optimizer cannot be warm started.
+     */
+    public static enum WarmStart {
+
+        /**
+         * Always use the kick-starter, if it contains a value for every variable.
+         */
+        ALWAYS,
+        /**
+         * Only use the kick-starter if its state is feasible.
+         */
+        FEASIBLE,
+        /**
+         * Ignore the kick-starter and always start from scratch.
+         */
+        NEVER;
+
+    }
+
+    public static final class Integration extends ExpressionsBasedModel.Integration<SolverMosek> {
+
+        private final BranchAndBound myBranchAndBound;
+        private volatile double myConicMinimumDensity = 0.5;
+        private volatile int myConicMinimumSize = Integer.MAX_VALUE;
+        /**
+         * Created lazily - translating into a {@link TaskBackend} stand-in must not require the native
+         * library.
+         */
+        private final AtomicReference<Env> myEnvironment = new AtomicReference<>();
+        private volatile Incumbent.Listener myIncumbentListener = null;
+        private volatile Predicate<Incumbent> myIncumbentStopCondition = null;
+        private volatile boolean myIncremental = false;
+        private final IncrementalTasks<ExpressionsBasedModel> myIncrementalTasks = new IncrementalTasks<>();
         private final PrinterBuffer myLog = new CharacterRing().asPrinter();
+        private volatile int myLogCapacity = 0;
+        private volatile TaskLog.Listener myLogListener = null;
+        private volatile SolveMetrics.Listener myMetricsListener = null;
+        private volatile boolean myNodeMode = false;
+        private final IncrementalTasks<Thread> myNodeTasks = new IncrementalTasks<>();
+        private final OptimizerSelection myOptimizerSelection = new OptimizerSelection();
+        private volatile boolean mySensitivity = false;
+        private volatile Sensitivity.Listener mySensitivityListener = null;
         private final Stream myStream = new Stream() {
 
             @Override
@@ -68,56 +134,381 @@ public final class SolverMosek implements Optimisation.Solver {
                 org.ojalgo.optimisation.solver.mosek.SolverMosek.Integration.this.printToLog(message);
             }
         };
+        private final TaskCache myTaskCache = new TaskCache();
+        private final TaskPool myTaskPool = new TaskPool();
+        private final TaskStore myTaskStore = new TaskStore();
+        private volatile Translation myTranslation = Translation.BULK;
+        private volatile WarmStart myWarmStart = WarmStart.FEASIBLE;
 
         Integration() {
 
             super();
 
-            myEnvironment.set_Stream(streamtype.log, myStream);
+            myBranchAndBound = new BranchAndBound(myNodeTasks);
+
+            // The environment (if created) is disposed (last) when this integration is no longer reachable
+            final IncrementalTasks<ExpressionsBasedModel> tmpIncrementalTasks = myIncrementalTasks;
+            final IncrementalTasks<Thread> tmpNodeTasks = myNodeTasks;
+            final TaskCache tmpTaskCache = myTaskCache;
+            final TaskPool tmpTaskPool = myTaskPool;
+            final AtomicReference<Env> tmpEnvironment = myEnvironment;
+            NativeCleaner.INSTANCE.register(this, () -> {
+                tmpIncrementalTasks.clear();
+                tmpNodeTasks.clear();
+                tmpTaskCache.clear();
+                tmpTaskPool.clear();
+                final Env tmpCreated = tmpEnvironment.getAndSet(null);
+                if (tmpCreated != null) {
+                    tmpCreated.dispose();
+                }
+            });
         }
 
         public SolverMosek build(final ExpressionsBasedModel model) {
 
-            final List<Variable> tmpFreeVariables = model.getFreeVariables();
-            final Set<IntIndex> tmpFixedVariables = model.getFixedVariables();
+            if (myNodeMode && !myIncremental) {
+                return this.buildNode(model);
+            }
+
+            final long tmpStart = System.nanoTime();
 
+            // Fixed variables are handled on the fly, as the terms are extracted - no compensated copies
+            final FreeVariables tmpColumns = FreeVariables.of(model);
             final List<Expression> tmpConstraints = model.constraints().collect(Collectors.toList());
+            final Expression tmpObjective = model.objective();
 
-            final int tmpNumberOfVariables = tmpFreeVariables.size();
+            final int tmpNumberOfVariables = tmpColumns.count();
             final int tmpNumberOfConstraints = tmpConstraints.size();
 
-            final SolverMosek retVal = INTEGRATION.makeSolver(tmpNumberOfConstraints, tmpNumberOfVariables, model.options);
-
-            for (int v = 0; v < tmpNumberOfVariables; v++) {
-                final Variable tmpVariable = tmpFreeVariables.get(v);
-                retVal.putVariable(v, tmpVariable);
+            final long tmpExtracted = System.nanoTime();
+
+            final SolverMosek retVal;
+            if (myIncremental) {
+                retVal = this.buildIncrementally(model, tmpColumns, tmpConstraints, tmpObjective);
+            } else if (myTaskCache.isEnabled()) {
+                final TaskCache.Key tmpKey = TaskCache.Key.of(tmpColumns, tmpConstraints, tmpObjective);
+                final ModelSnapshot tmpSnapshot = ModelSnapshot.of(tmpColumns, tmpConstraints, tmpObjective, model);
+                final TaskCache.Entry tmpCached = myTaskCache.take(tmpKey);
+                if (tmpCached != null) {
+                    tmpSnapshot.putDifferences(TaskBackend.of(tmpCached.task), tmpCached.snapshot);
+                    retVal = new SolverMosek(tmpCached.task, model.options, task -> myTaskCache.give(tmpKey, task, tmpSnapshot));
+                    retVal.setSolutionType(model);
+                } else {
+                    retVal = new SolverMosek(this.makeTask(tmpNumberOfConstraints, tmpNumberOfVariables), model.options,
+                            task -> myTaskCache.give(tmpKey, task, tmpSnapshot));
+                    this.translate(retVal, model, tmpColumns, tmpConstraints, tmpObjective, false);
+                }
+            } else if (myTaskStore.isEnabled() && !this.isSensitivity()) {
+                retVal = this.buildFromStore(model, tmpColumns, tmpConstraints, tmpObjective);
+            } else {
+                // Rows are appended as they are translated - some may be eliminated, unless sensitivity is requested
+                retVal = this.makeSolver(0, tmpNumberOfVariables, model.options);
+                if (myConicMinimumSize < Integer.MAX_VALUE) {
+                    retVal.setConicReformulation(ConicReformulation.of(myConicMinimumSize, myConicMinimumDensity, tmpConstraints, tmpObjective, tmpColumns,
+                            model.isMinimisation()));
+                }
+                this.translate(retVal, model, tmpColumns, tmpConstraints, tmpObjective, !this.isSensitivity());
             }
 
-            for (int c = 0; c < tmpNumberOfConstraints; c++) {
-                final Expression tmpConstraint = tmpConstraints.get(c).compensate(tmpFixedVariables);
-                retVal.putConstraint(c, tmpConstraint, model);
-            }
+            retVal.setBuildTimes(tmpExtracted - tmpStart, System.nanoTime() - tmpExtracted);
+            retVal.setModel(model);
+            retVal.setObjective(tmpObjective, tmpColumns);
+            BatchSolver.configure(retVal);
+            SolveFuture.configure(retVal);
 
-            final Expression tmpObjective = model.objective().compensate(tmpFixedVariables);
-            retVal.putObjective(tmpObjective, model);
+            return retVal;
+        }
 
-            retVal.setSolutionType(model);
+        public void flushLog(final Printer target) {
+            myLog.flush(target);
+        }
 
-            return retVal;
+        /**
+         * A cache of MOSEK tasks keyed by model structure. When enabled, models with the same structure as a
+         * previously solved (and disposed) one reuse its task, only pushing the numerical values that differ.
+         */
+        public TaskCache getTaskCache() {
+            return myTaskCache;
+        }
+
+        /**
+         * The per thread pools of cleared tasks that new tasks are taken from, and that the tasks of closed
+         * solvers are handed back to.
+         */
+        public TaskPool getTaskPool() {
+            return myTaskPool;
+        }
+
+        /**
+         * A store of fully built MOSEK tasks on disk, keyed by a content hash of the model. When enabled, a
+         * model identical to one previously built (possibly by another process) is read directly from its
+         * task file, skipping the translation.
+         */
+        public TaskStore getTaskStore() {
+            return myTaskStore;
+        }
+
+        /**
+         * Optimizer selection based on model features and recorded solve times. Disabled by default.
+         */
+        public OptimizerSelection getOptimizerSelection() {
+            return myOptimizerSelection;
+        }
+
+        public Incumbent.Listener getIncumbentListener() {
+            return myIncumbentListener;
+        }
+
+        public Predicate<Incumbent> getIncumbentStopCondition() {
+            return myIncumbentStopCondition;
+        }
+
+        public TaskLog.Listener getLogListener() {
+            return myLogListener;
+        }
+
+        public SolveMetrics.Listener getMetricsListener() {
+            return myMetricsListener;
+        }
+
+        public Sensitivity.Listener getSensitivityListener() {
+            return mySensitivityListener;
+        }
+
+        public Translation getTranslation() {
+            return myTranslation;
+        }
+
+        public WarmStart getWarmStart() {
+            return myWarmStart;
         }
 
         public boolean isCapable(final ExpressionsBasedModel model) {
-            return true; // Can handle any variation of an ExpressionsBasedModel
+            // Can handle any variation of an ExpressionsBasedModel, but in node mode integer models are left to ojAlgo's branch-and-bound
+            return !myNodeMode || !model.isAnyVariableInteger();
+        }
+
+        /**
+         * @param parallelism The maximum number of models solved at the same time (capped at the number of
+         *        available cores)
+         * @return A batch solver that must be closed when no longer needed
+         */
+        public BatchSolver newBatchSolver(final int parallelism) {
+            return new BatchSolver(this, parallelism);
         }
 
+        /**
+         * Build the model's task once, to then solve it for a sequence of parameter values. The sweep owns
+         * the task - close it when done. See {@link ParametricSweep}.
+         */
+        public ParametricSweep newParametricSweep(final ExpressionsBasedModel model) {
+
+            final long tmpStart = System.nanoTime();
+
+            final FreeVariables tmpColumns = FreeVariables.of(model);
+            final List<Expression> tmpConstraints = model.constraints().collect(Collectors.toList());
+            final Expression tmpObjective = model.objective();
+
+            final long tmpExtracted = System.nanoTime();
+
+            // No elimination and no reformulation - the task rows must correspond to the constraints
+            final Task tmpTask = this.makeTask(tmpConstraints.size(), tmpColumns.count());
+            final SolverMosek tmpSolver = new SolverMosek(tmpTask, model.options);
+            this.translate(tmpSolver, model, tmpColumns, tmpConstraints, tmpObjective, false);
+
+            tmpSolver.setBuildTimes(tmpExtracted - tmpStart, System.nanoTime() - tmpExtracted);
+            tmpSolver.setModel(model);
+
+            return new ParametricSweep(this, model, tmpSolver, tmpTask, tmpColumns, tmpConstraints);
+        }
+
+        /**
+         * Solve the model asynchronously on the common fork/join pool, with the time limit from
+         * the model's options.
+         */
+        public SolveFuture solveAsync(final ExpressionsBasedModel model) {
+            return this.solveAsync(model, model.options.time_abort, ForkJoinPool.commonPool());
+        }
+
+        /**
+         * Solve the model asynchronously, just as {@link ExpressionsBasedModel#minimise()} or
+         * {@link ExpressionsBasedModel#maximise()} would (in the direction the model is currently set to) -
+         * including ojAlgo's presolve, validation and writing the solution back to the model. When MOSEK
+         * solves it, the deadline (timeout measured from now) applies to all optimizers - simplex,
+         * interior-point and mixed integer. When the deadline passes, or {@link SolveFuture#stop()} is called,
+         * the future completes with the best solution found so far.
+         *
+         * @param timeout Milliseconds from now
+         */
+        public SolveFuture solveAsync(final ExpressionsBasedModel model, final long timeout, final Executor executor) {
+
+            final long tmpDeadline = timeout < (NO_DEADLINE / 2_000_000L) ? System.nanoTime() + (timeout * 1_000_000L) : NO_DEADLINE;
+
+            final SolveFuture retVal = new SolveFuture(tmpDeadline);
+
+            executor.execute(() -> retVal.run(model));
+
+            return retVal;
+        }
+
+        /**
+         * Also keeps the multipliers (constraint duals) - they are already in model order.
+         */
         @Override
-        protected final void finalize() throws Throwable {
+        public Optimisation.Result toModelState(final Optimisation.Result solverState, final ExpressionsBasedModel model) {
+            final Optimisation.Result retVal = super.toModelState(solverState, model);
+            final Optional<Access1D<?>> tmpMultipliers = solverState.getMultipliers();
+            return tmpMultipliers.isPresent() ? retVal.multipliers(tmpMultipliers.get()) : retVal;
+        }
+
+        public boolean isIncremental() {
+            return myIncremental;
+        }
+
+        public boolean isNodeMode() {
+            return myNodeMode;
+        }
 
-            if (myEnvironment != null) {
-                myEnvironment.dispose();
+        /**
+         * @return true if sensitivity information is extracted after every solve - it was switched on with
+         *         {@link #setSensitivity(boolean)}, or there is a listener
+         */
+        public boolean isSensitivity() {
+            return mySensitivity || (mySensitivityListener != null);
+        }
+
+        /**
+         * Dispose the task retained for this model in incremental mode (if any).
+         */
+        public void release(final ExpressionsBasedModel model) {
+            myIncrementalTasks.release(model);
+        }
+
+        /**
+         * Follow the progress of mixed integer solves. Every new integer solution is passed to the listener,
+         * and the stop condition is tested for each new solution and whenever the objective bound improves.
+         * When it is met, the solve stops and returns the current (feasible) solution. See
+         * {@link Incumbent#gap(double, double)} for a gap based stop condition.
+         *
+         * @param listener May be null
+         * @param stopCondition May be null
+         */
+        public void setIncumbentListener(final Incumbent.Listener listener, final Predicate<Incumbent> stopCondition) {
+            myIncumbentListener = listener;
+            myIncumbentStopCondition = stopCondition;
+        }
+
+        /**
+         * In incremental mode the task of each solved model is retained. When the same model is solved again,
+         * with unchanged structure, only the variable/constraint bounds, objective weights and constraint
+         * factors that actually changed are pushed to the retained task, and MOSEK warm starts from the
+         * previous solution. Switching incremental mode off disposes all retained tasks.
+         */
+        public void setIncremental(final boolean incremental) {
+            myIncremental = incremental;
+            if (!incremental) {
+                myIncrementalTasks.clear();
             }
+        }
+
+        /**
+         * Opt-in: dense convex quadratic terms (in the objective or in one-sided constraints) are factored once
+         * and passed to MOSEK as rotated quadratic cones, rather than as a dense Q matrix. It's all or nothing -
+         * if any quadratic term of a model does not qualify, none are reformulated (see
+         * {@link ConicReformulation}). This only applies when neither the task cache, the task store nor
+         * incremental mode is used.
+         *
+         * @param minimumSize The minimum number of variables involved in a quadratic term for it to be
+         *        reformulated, for example 50. {@link Integer#MAX_VALUE}, the default, disables the
+         *        reformulation.
+         * @param minimumDensity The minimum fraction of nonzeros in the (triangular) quadratic term, for example
+         *        0.5.
+         */
+        public void setConicReformulation(final int minimumSize, final double minimumDensity) {
+            myConicMinimumSize = Math.max(1, minimumSize);
+            myConicMinimumDensity = minimumDensity;
+        }
+
+        /**
+         * With a listener set, every solve gets its own {@link TaskLog} instead of writing to the shared log
+         * (the one flushed by {@link #flushLog(Printer)}). MOSEK's iteration lines are parsed and passed to the
+         * listener as they arrive. Setting the listener to null (the default) restores the shared log.
+         *
+         * @param capacity The number of text lines each task log keeps for {@link TaskLog#poll()}. 0 means
+         *        text lines are parsed but not kept.
+         */
+        public void setLogListener(final TaskLog.Listener listener, final int capacity) {
+            myLogCapacity = Math.max(0, capacity);
+            myLogListener = listener;
+        }
+
+        /**
+         * With a listener set, phase timings (extraction, translation, optimisation and retrieval) and some
+         * of MOSEK's information items (iterations, presolve/optimizer time, MIP nodes) are reported after
+         * every solve. Use a {@link MetricsCollector} to aggregate them and expose them via JMX.
+         */
+        public void setMetricsListener(final SolveMetrics.Listener listener) {
+            myMetricsListener = listener;
+        }
+
+        /**
+         * In node mode MOSEK is used as the LP engine of ojAlgo's own branch-and-bound: models with integer
+         * variables are declined (so that ojAlgo's integer solver takes them), and MOSEK solves the relaxed
+         * node models. These are solved in a way suited for branch-and-bound, where consecutive models
+         * have the same structure and differ mainly in variable bounds. Each thread keeps one task for as long
+         * as the structure does not change. Building a node model only pushes the bounds (and any other
+         * values) that changed since the previous node solved on that thread, and the solve is a dual simplex
+         * hot started from the basis left in the task. Variables fixed by branching stay in the task (with
+         * fixed bounds), so the structure is the same for all nodes. Incremental mode, if also on, takes
+         * precedence.
+         * <p>
+         * Switching node mode on registers (as a preferred solver) an integration that runs ojAlgo's
+         * branch-and-bound and disposes the retained tasks when it has finished. Switching node mode off
+         * deregisters it and disposes all retained tasks.
+         */
+        public void setNodeMode(final boolean nodeMode) {
+            if (nodeMode && !myNodeMode) {
+                ExpressionsBasedModel.addPreferredSolver(myBranchAndBound);
+            } else if (!nodeMode) {
+                ExpressionsBasedModel.removeIntegration(myBranchAndBound);
+                myNodeTasks.clear();
+            }
+            myNodeMode = nodeMode;
+        }
+
+        /**
+         * When switched on, constraint duals, reduced costs and constraint activities are read from the task
+         * after every solve and mapped back to the model. They are kept with the solver that did the solve
+         * ({@link SolverMosek#getSensitivity()}) and the future of an asynchronous solve
+         * ({@link SolveFuture#getSensitivity()}), and the duals are also returned as the result's
+         * multipliers. To keep the task rows in one-to-one correspondence with the model constraints, no rows
+         * are eliminated while switched on (and the task store is not used).
+         */
+        public void setSensitivity(final boolean sensitivity) {
+            mySensitivity = sensitivity;
+        }
 
-            super.finalize();
+        /**
+         * Setting a listener also switches on sensitivity extraction (see {@link #setSensitivity(boolean)}).
+         * Every solve, by any solver, passes its {@link Sensitivity} to the listener - use
+         * {@link Sensitivity#getModel()} to tell them apart, or get it from the solver or future instead.
+         */
+        public void setSensitivityListener(final Sensitivity.Listener listener) {
+            mySensitivityListener = listener;
+        }
+
+        /**
+         * Select how models are transferred to MOSEK. The default is {@link Translation#BULK}.
+         */
+        public void setTranslation(final Translation translation) {
+            myTranslation = translation != null ? translation : Translation.BULK;
+        }
+
+        /**
+         * Select when the kick-starter is used to warm start MOSEK. The default is {@link WarmStart#FEASIBLE}.
+         */
+        public void setWarmStart(final WarmStart warmStart) {
+            myWarmStart = warmStart != null ? warmStart : WarmStart.FEASIBLE;
         }
 
         @Override
@@ -125,39 +516,219 @@ public final class SolverMosek implements Optimisation.Solver {
             return true;
         }
 
-        void flushLog(final Printer target) {
-            myLog.flush(target);
+        SolverMosek buildIncrementally(final ExpressionsBasedModel model, final FreeVariables columns, final List<Expression> constraints,
+                final Expression objective) {
+
+            final TaskCache.Key tmpKey = TaskCache.Key.of(columns, constraints, objective);
+            final ModelSnapshot tmpSnapshot = ModelSnapshot.of(columns, constraints, objective, model);
+
+            final IncrementalTasks.Entry tmpExisting = myIncrementalTasks.checkOut(model, tmpKey);
+
+            if (tmpExisting != null) {
+
+                tmpSnapshot.putDifferences(TaskBackend.of(tmpExisting.task), tmpExisting.snapshot);
+                tmpExisting.snapshot = tmpSnapshot;
+
+                final SolverMosek retVal = new SolverMosek(tmpExisting.task, model.options, task -> myIncrementalTasks.checkIn(tmpExisting));
+                retVal.setSolutionType(model);
+                return retVal;
+            }
+
+            final Task tmpTask = this.makeTask(tmpKey.numberOfConstraints, tmpKey.numberOfVariables);
+            final IncrementalTasks.Entry tmpRetained = myIncrementalTasks.retain(model, tmpTask, tmpKey, tmpSnapshot);
+
+            final SolverMosek retVal;
+            if (tmpRetained != null) {
+                retVal = new SolverMosek(tmpTask, model.options, task -> myIncrementalTasks.checkIn(tmpRetained));
+            } else {
+                retVal = new SolverMosek(tmpTask, model.options);
+            }
+
+            this.translate(retVal, model, columns, constraints, objective, false);
+
+            return retVal;
+        }
+
+        SolverMosek buildFromStore(final ExpressionsBasedModel model, final FreeVariables columns, final List<Expression> constraints,
+                final Expression objective) {
+
+            final String tmpKey = TaskStore.key(columns.getVariables(), ModelSnapshot.of(columns, constraints, objective, model));
+
+            final Task tmpStored = myTaskStore.load(this.getEnvironment(), tmpKey);
+
+            if (tmpStored != null) {
+                tmpStored.set_Stream(streamtype.log, myStream);
+                final SolverMosek retVal = new SolverMosek(tmpStored, model.options);
+                retVal.setSolutionType(model);
+                retVal.setEliminated(true);
+                return retVal;
+            }
+
+            final SolverMosek retVal = this.makeSolver(0, columns.count(), model.options);
+            this.translate(retVal, model, columns, constraints, objective, true);
+            myTaskStore.store(retVal.myTask, tmpKey);
+            return retVal;
+        }
+
+        /**
+         * Node mode: all model variables (also the fixed ones) and the uncompensated constraints and
+         * objective are pushed to a task retained per thread.
+         */
+        SolverMosek buildNode(final ExpressionsBasedModel model) {
+
+            final long tmpStart = System.nanoTime();
+
+            final FreeVariables tmpAll = FreeVariables.all(model);
+            final List<Variable> tmpFreeVariables = model.getFreeVariables();
+            final List<Expression> tmpConstraints = model.constraints().collect(Collectors.toList());
+            final Expression tmpObjective = model.objective();
+
+            final int[] tmpColumns = new int[tmpFreeVariables.size()];
+            for (int j = 0; j < tmpColumns.length; j++) {
+                tmpColumns[j] = model.indexOf(tmpFreeVariables.get(j));
+            }
+
+            final TaskCache.Key tmpKey = TaskCache.Key.of(tmpAll, tmpConstraints, tmpObjective);
+            final ModelSnapshot tmpSnapshot = ModelSnapshot.of(tmpAll, tmpConstraints, tmpObjective, model);
+
+            final long tmpExtracted = System.nanoTime();
+
+            final Thread tmpThread = Thread.currentThread();
+            final IncrementalTasks.Entry tmpExisting = myNodeTasks.checkOut(tmpThread, tmpKey);
+
+            final SolverMosek retVal;
+            if (tmpExisting != null) {
+
+                tmpSnapshot.putDifferences(TaskBackend.of(tmpExisting.task), tmpExisting.snapshot);
+                tmpExisting.snapshot = tmpSnapshot;
+
+                retVal = new SolverMosek(tmpExisting.task, model.options, task -> myNodeTasks.checkIn(tmpExisting));
+                retVal.setSolutionType(model);
+
+            } else {
+
+                final Task tmpTask = this.makeTask(tmpKey.numberOfConstraints, tmpKey.numberOfVariables);
+                final IncrementalTasks.Entry tmpRetained = myNodeTasks.retain(tmpThread, tmpTask, tmpKey, tmpSnapshot);
+
+                if (tmpRetained != null) {
+                    retVal = new SolverMosek(tmpTask, model.options, task -> myNodeTasks.checkIn(tmpRetained));
+                } else {
+                    retVal = new SolverMosek(tmpTask, model.options);
+                }
+
+                this.translate(retVal, model, tmpAll, tmpConstraints, tmpObjective, false);
+            }
+
+            retVal.setColumns(tmpColumns);
+            retVal.setHotStart(true);
+            retVal.setBuildTimes(tmpExtracted - tmpStart, System.nanoTime() - tmpExtracted);
+            retVal.setModel(model);
+            retVal.setObjective(tmpObjective, tmpAll);
+            BatchSolver.configure(retVal);
+            SolveFuture.configure(retVal);
+
+            return retVal;
         }
 
         Env getEnvironment() {
-            return myEnvironment;
+            Env retVal = myEnvironment.get();
+            if (retVal == null) {
+                synchronized (myEnvironment) {
+                    retVal = myEnvironment.get();
+                    if (retVal == null) {
+                        retVal = new Env();
+                        retVal.set_Stream(streamtype.log, myStream);
+                        myEnvironment.set(retVal);
+                    }
+                }
+            }
+            return retVal;
+        }
+
+        Stream getStream() {
+            return myStream;
+        }
+
+        int getLogCapacity() {
+            return myLogCapacity;
         }
 
         SolverMosek makeSolver(final int numberOfConstraints, final int numberOfVariables, final Optimisation.Options options) {
+            return new SolverMosek(this.makeTask(numberOfConstraints, numberOfVariables), options);
+        }
 
-            final Task tmpTask = new Task(myEnvironment, numberOfConstraints, numberOfVariables);
+        Task makeTask(final int numberOfConstraints, final int numberOfVariables) {
 
-            tmpTask.appendcons(numberOfConstraints);
-            tmpTask.appendvars(numberOfVariables);
+            final Task retVal = myTaskPool.take(this.getEnvironment(), numberOfConstraints, numberOfVariables);
 
-            tmpTask.set_Stream(streamtype.log, myStream);
+            retVal.set_Stream(streamtype.log, myStream);
 
-            return new SolverMosek(tmpTask, options);
+            return retVal;
         }
 
         void printToLog(final Object message) {
             myLog.print(message);
         }
 
+        /**
+         * @param eliminate Allow rows to be eliminated (see
+         *        {@link SolverMosek#putConstraints(List, FreeVariables, boolean)}). Only for tasks that will not
+         *        be updated with values from another model.
+         */
+        void translate(final SolverMosek solver, final ExpressionsBasedModel model, final FreeVariables columns, final List<Expression> constraints,
+                final Expression objective, final boolean eliminate) {
+
+            final List<Variable> tmpVariables = columns.getVariables();
+
+            if (myTranslation == Translation.BULK) {
+
+                solver.putVariables(tmpVariables);
+                solver.putConstraints(constraints, columns, eliminate);
+
+            } else {
+
+                for (int v = 0; v < tmpVariables.size(); v++) {
+                    solver.putVariable(v, tmpVariables.get(v));
+                }
+
+                final int tmpMissing = constraints.size() - solver.myBackend.getnumcon();
+                if (tmpMissing > 0) {
+                    solver.myBackend.appendcons(tmpMissing);
+                }
+                for (int c = 0; c < constraints.size(); c++) {
+                    solver.putConstraint(c, constraints.get(c), columns);
+                }
+            }
+
+            solver.putObjective(objective, columns, model);
+            solver.setObjective(objective, columns);
+
+            solver.setSolutionType(model);
+            solver.setEliminated(eliminate);
+        }
+
     }
 
     public static final SolverMosek.Integration INTEGRATION = new Integration();
 
+    private static final double BOUND_TOLERANCE = 1E-9;
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
     static final Configurator DEFAULT = new Configurator() {
 
         public void configure(final Env environment, final Task task, final Options options) {
 
-            task.putdouparam(Env.dparam.mio_max_time, options.time_abort);
+            // Tasks are reused (cached, retained or pooled) - restore whatever a previous solve may have changed
+            task.putintparam(Env.iparam.optimizer, Env.optimizertype.free.value);
+            task.putintparam(Env.iparam.presolve_use, Env.presolvemode.free.value);
+            task.putintparam(Env.iparam.intpnt_basis, Env.basindtype.always.value);
+            task.putintparam(Env.iparam.sim_hotstart, Env.simhotstart.free.value);
+            task.putintparam(Env.iparam.num_threads, 0);
+
+            // ojAlgo's time limit is in milliseconds, MOSEK's in seconds
+            final double tmpMaxTime = options.time_abort / 1000.0;
+            task.putdouparam(Env.dparam.optimizer_max_time, tmpMaxTime);
+            task.putdouparam(Env.dparam.mio_max_time, tmpMaxTime);
 
             final Class<? extends Solver> loggerSolver = options.logger_solver;
 
@@ -169,59 +740,270 @@ public final class SolverMosek implements Optimisation.Solver {
         }
     };
 
+    static stakey getStatusKey(final boundkey boundType, final double lowerBound, final double upperBound, final double value) {
+
+        switch (boundType) {
+        case fx:
+            return stakey.fix;
+        case fr:
+            return stakey.bas;
+        default:
+            break;
+        }
+
+        final boolean tmpLower = (boundType != boundkey.up) && (Math.abs(value - lowerBound) <= (BOUND_TOLERANCE * (1.0 + Math.abs(lowerBound))));
+        final boolean tmpUpper = (boundType != boundkey.lo) && (Math.abs(value - upperBound) <= (BOUND_TOLERANCE * (1.0 + Math.abs(upperBound))));
+
+        if (tmpLower) {
+            return stakey.low;
+        } else if (tmpUpper) {
+            return stakey.upp;
+        } else {
+            return stakey.bas;
+        }
+    }
+
+    /**
+     * What the model is translated into - normally {@link #myTask}, but it may be a stand-in.
+     */
+    private final TaskBackend myBackend;
+    private final NativeCleaner.Cleanable myCleanable;
+    private ConicReformulation myConicReformulation = null;
+    private volatile long myDeadline = NO_DEADLINE;
+    private long myExtractionTime = 0L;
+    /**
+     * Constraint rows may have been eliminated - then the task rows don't correspond to the model
+     * constraints.
+     */
+    private boolean myEliminated = false;
+    private boolean myHotStart = false;
+    private Stream myLogStream = null;
+    private ExpressionsBasedModel myModel = null;
+    private int myNumberOfThreads = 0;
+    /**
+     * The number of (free) model variables. The task may have more variables than that, if the model was
+     * reformulated or if fixed variables are kept in the task.
+     */
+    private int myNumberOfVariables;
+    /**
+     * The constant contributed by fixed variables (not columns), in model units.
+     */
+    private double myObjectiveConstant = 0.0;
+    /**
+     * The task's objective coefficients are the model's multiplied by this (the objective's adjustment).
+     */
+    private double myObjectiveScale = 1.0;
+    /**
+     * The task columns of the (free) model variables, or null if they are the first
+     * {@link #myNumberOfVariables} columns.
+     */
+    private int[] myColumns = null;
     private final Optimisation.Options myOptions;
+    private final Progress myProgress = new Progress() {
 
+        @Override
+        public int progress(final callbackcode caller) {
+            return SolverMosek.this.isStopRequested() ? 1 : 0;
+        }
+    };
+    private Sensitivity mySensitivity = null;
     private soltype mySolutionType = soltype.bas;
-
+    private volatile boolean myStopRequested = false;
     private final Task myTask;
+    private long myTranslationTime = 0L;
 
     SolverMosek(final Task task, final Optimisation.Options options) {
+        this(task, options, INTEGRATION.getTaskPool()::give);
+    }
+
+    /**
+     * Translation only - the model is written to the backend, but there is no task and the solver can't
+     * solve.
+     */
+    SolverMosek(final TaskBackend backend, final Optimisation.Options options) {
+
+        super();
+
+        myTask = null;
+        myBackend = backend;
+        myOptions = options;
+        myNumberOfVariables = backend.getnumvar();
+
+        myCleanable = null;
+    }
+
+    /**
+     * @param releaser What to do with the task when this solver is closed/disposed - by default it is handed
+     *        back to the task pool, but it may be handed to a cache instead. If the solver is never closed,
+     *        this is done once it is no longer reachable.
+     */
+    SolverMosek(final Task task, final Optimisation.Options options, final Consumer<Task> releaser) {
 
         super();
 
         myTask = task;
+        myBackend = TaskBackend.of(task);
         myOptions = options;
+        myNumberOfVariables = task.getnumvar();
+
+        // Must not reference this solver
+        myCleanable = NativeCleaner.INSTANCE.register(this, () -> releaser.accept(task));
     }
 
+    /**
+     * Same as {@link #dispose()}
+     */
+    public void close() {
+        this.dispose();
+    }
+
+    /**
+     * Release the task (at most once). Also done, as a safety net, when the solver is no longer reachable -
+     * but don't rely on that.
+     */
     public void dispose() {
 
         Solver.super.dispose();
 
-        if (myTask != null) {
-            myTask.dispose();
+        if (myCleanable != null) {
+            myCleanable.clean();
         }
     }
 
+    /**
+     * @return The constraint duals, reduced costs and constraint activities of the most recent solve - only
+     *         if sensitivity is switched on (see {@link Integration#setSensitivity(boolean)}), the solve found
+     *         a solution and the task rows correspond to the model constraints
+     */
+    public Optional<Sensitivity> getSensitivity() {
+        return Optional.ofNullable(mySensitivity);
+    }
+
     public Result solve(final Result kickStarter) {
 
+        if (myTask == null) {
+            throw new IllegalStateException("Translation only - there is no task to solve!");
+        }
+
+        mySensitivity = null;
+
         final int tmpNumberOfVariables = myTask.getnumvar();
 
         Optimisation.State tmpSate = Optimisation.State.FAILED;
         double tmpValue = Double.NaN;
         final double[] tmpSolution = new double[tmpNumberOfVariables];
 
+        long tmpOptimised = 0L;
+        long tmpOptimisation = 0L;
+
+        soltype tmpSolutionType = mySolutionType;
+        Sensitivity tmpSensitivity = null;
+        OptimizerSelection.Features tmpFeatures = null;
+        OptimizerSelection.Optimizer tmpOptimizer = null;
+
         try {
 
             final Env tmpEnvironment = INTEGRATION.getEnvironment();
 
             DEFAULT.configure(tmpEnvironment, myTask, myOptions);
+            if (myNumberOfThreads > 0) {
+                myTask.putintparam(Env.iparam.num_threads, myNumberOfThreads);
+            }
+            final boolean tmpHotStart = myHotStart && (mySolutionType == soltype.bas) && this.isBasisDefined();
+            if (tmpHotStart) {
+                myTask.putintparam(Env.iparam.optimizer, Env.optimizertype.dual_simplex.value);
+                myTask.putintparam(Env.iparam.sim_hotstart, Env.simhotstart.status_keys.value);
+            }
+            // A basis left in the task by a previous solve is a better starting point than one derived from the kick-starter
+            final boolean tmpWarmStart = !tmpHotStart && this.isWarmStartable(kickStarter, INTEGRATION.getWarmStart());
+            final OptimizerSelection tmpSelection = INTEGRATION.getOptimizerSelection();
+            if (!tmpHotStart && tmpSelection.isEnabled()) {
+                tmpFeatures = OptimizerSelection.Features.of(myTask, mySolutionType, tmpWarmStart);
+                tmpOptimizer = tmpSelection.select(tmpFeatures);
+                if (tmpOptimizer != null) {
+                    tmpOptimizer.configure(myTask, tmpWarmStart);
+                    tmpSolutionType = tmpOptimizer.getSolutionType(mySolutionType);
+                }
+            }
             final Optional<Configurator> optional = myOptions.getConfigurator(Configurator.class);
             if (optional.isPresent()) {
                 optional.get().configure(tmpEnvironment, myTask, myOptions);
             }
 
-            if (myTask.optimize() == rescode.ok) {
+            if (tmpWarmStart) {
+                this.putInitialSolution(kickStarter);
+            }
+
+            if (myDeadline != NO_DEADLINE) {
+                final double tmpRemaining = Math.max(0.0, (myDeadline - System.nanoTime()) / 1_000_000_000.0);
+                final double tmpMaxTime = Math.min(tmpRemaining, myOptions.time_abort / 1000.0);
+                myTask.putdouparam(Env.dparam.optimizer_max_time, tmpMaxTime);
+                myTask.putdouparam(Env.dparam.mio_max_time, tmpMaxTime);
+            }
+
+            final Incumbent.Listener tmpIncumbentListener = INTEGRATION.getIncumbentListener();
+            final Predicate<Incumbent> tmpStopCondition = INTEGRATION.getIncumbentStopCondition();
+            final IncumbentTracker tmpTracker;
+            if ((tmpSolutionType == soltype.itg) && ((tmpIncumbentListener != null) || (tmpStopCondition != null))) {
+                tmpTracker = new IncumbentTracker(this, myTask, tmpIncumbentListener, tmpStopCondition, this::toIncumbentResult);
+                tmpTracker.attach(myTask);
+            } else {
+                tmpTracker = null;
+                myTask.set_Progress(myProgress);
+            }
+
+            final TaskLog.Listener tmpLogListener = INTEGRATION.getLogListener();
+            final TaskLog tmpLog = tmpLogListener != null ? new TaskLog(INTEGRATION.getLogCapacity(), tmpLogListener) : null;
+            if (tmpLog != null) {
+                myTask.set_Stream(streamtype.log, tmpLog.asStream());
+                myTask.putintparam(Env.iparam.log, 1);
+            }
+
+            final long tmpStart = System.nanoTime();
+            try {
+                // Any termination code (time limit, stopped from the progress callback...) may still have left a solution
+                myTask.optimize();
+            } finally {
+                tmpOptimised = System.nanoTime();
+                tmpOptimisation = tmpOptimised - tmpStart;
+                // The callbacks reference this solver - left in the task they would keep it reachable
+                if (tmpTracker != null) {
+                    myTask.set_ItgSolutionCallback(null);
+                    myTask.set_InfoCallback(null);
+                } else {
+                    myTask.set_Progress(null);
+                }
+                if (tmpLog != null) {
+                    myTask.set_Stream(streamtype.log, myLogStream != null ? myLogStream : INTEGRATION.getStream());
+                    tmpLog.flush();
+                    tmpLogListener.completed(tmpLog);
+                }
+            }
+
+            final boolean[] tmpDefined = new boolean[1];
+            myTask.solutiondef(tmpSolutionType, tmpDefined);
+
+            if (tmpDefined[0]) {
 
                 final solsta[] tmpSolverState = new solsta[1];
-                myTask.getsolsta(mySolutionType, tmpSolverState);
+                myTask.getsolsta(tmpSolutionType, tmpSolverState);
 
-                myTask.getxx(mySolutionType, tmpSolution);
+                myTask.getxx(tmpSolutionType, tmpSolution);
 
                 switch (tmpSolverState[0]) {
                 case optimal:
                 case near_optimal:
+                case integer_optimal:
+                case near_integer_optimal:
                     tmpSate = Optimisation.State.OPTIMAL;
-                    tmpValue = myTask.getprimalobj(mySolutionType);
+                    tmpValue = this.toModelObjective(myTask.getprimalobj(tmpSolutionType));
+                    break;
+                case prim_feas:
+                case near_prim_feas:
+                case prim_and_dual_feas:
+                case near_prim_and_dual_feas:
+                    tmpSate = Optimisation.State.FEASIBLE;
+                    tmpValue = this.toModelObjective(myTask.getprimalobj(tmpSolutionType));
                     break;
                 case dual_infeas_cer:
                 case prim_infeas_cer:
@@ -233,24 +1015,59 @@ public final class SolverMosek implements Optimisation.Solver {
                     tmpSate = Optimisation.State.FAILED;
                     break;
                 }
+
+                if (INTEGRATION.isSensitivity() && !myEliminated && (myModel != null)) {
+                    tmpSensitivity = Sensitivity.extract(myTask, tmpSolutionType, myModel, myColumns != null);
+                }
             }
 
         } catch (final Exception xcptn) {
             throw xcptn;
         }
 
-        return new Optimisation.Result(tmpSate, tmpValue, Primitive64Array.wrap(tmpSolution));
-    }
+        if (tmpOptimizer != null) {
+            INTEGRATION.getOptimizerSelection().record(tmpFeatures, tmpOptimizer, tmpOptimisation, tmpSate);
+        }
 
-    @Override
-    protected void finalize() throws Throwable {
+        final SolveMetrics.Listener tmpMetricsListener = INTEGRATION.getMetricsListener();
+        if (tmpMetricsListener != null) {
+            final SolveMetrics tmpMetrics = new SolveMetrics();
+            tmpMetrics.extraction = myExtractionTime;
+            tmpMetrics.translation = myTranslationTime;
+            tmpMetrics.optimisation = tmpOptimisation;
+            tmpMetrics.retrieval = System.nanoTime() - tmpOptimised;
+            tmpMetrics.optimizer = tmpOptimizer;
+            tmpMetrics.solutionType = tmpSolutionType;
+            tmpMetrics.state = tmpSate;
+            tmpMetrics.collect(myTask);
+            tmpMetricsListener.solved(tmpMetrics);
+        }
 
-        this.dispose();
+        final double[] tmpModelSolution = this.toModelSolution(tmpSolution);
+        final Optimisation.Result retVal = new Optimisation.Result(tmpSate, tmpValue, Primitive64Array.wrap(tmpModelSolution));
 
-        super.finalize();
+        mySensitivity = tmpSensitivity;
+        if (tmpSensitivity != null) {
+            final Sensitivity.Listener tmpSensitivityListener = INTEGRATION.getSensitivityListener();
+            if (tmpSensitivityListener != null) {
+                tmpSensitivityListener.sensitivity(tmpSensitivity);
+            }
+            return retVal.multipliers(tmpSensitivity.getDuals());
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Ask an ongoing solve to stop as soon as possible. The solve then returns the best solution found so far
+     * (if any). Safe to call from any thread. The request is permanent - any subsequent solve with this
+     * instance also stops immediately.
+     */
+    public void stop() {
+        myStopRequested = true;
     }
 
-    boundkey getBoundKey(final Optimisation.Constraint modelEntity) {
+    static boundkey getBoundKey(final Optimisation.Constraint modelEntity) {
 
         if (modelEntity.getLowerLimit() != null) {
             if (modelEntity.getUpperLimit() != null) {
@@ -271,141 +1088,402 @@ public final class SolverMosek implements Optimisation.Solver {
         }
     }
 
-    void putConstraint(final int index, final Expression constraint, final ExpressionsBasedModel model) {
+    /**
+     * @return true if 0.0 is within the bounds (with some tolerance)
+     */
+    static boolean isSatisfied(final boundkey boundType, final double lowerBound, final double upperBound) {
+        final boolean tmpLower = (boundType == boundkey.up) || (boundType == boundkey.fr) || (lowerBound <= BOUND_TOLERANCE);
+        final boolean tmpUpper = (boundType == boundkey.lo) || (boundType == boundkey.fr) || (upperBound >= -BOUND_TOLERANCE);
+        return tmpLower && tmpUpper;
+    }
 
-        final Set<IntIndex> tmpLinearFactorKeys = constraint.getLinearKeySet();
-        final int tmpLinearSize = tmpLinearFactorKeys.size();
-        if (tmpLinearSize > 0) {
+    boolean isBasisDefined() {
+        final boolean[] retVal = new boolean[1];
+        myTask.solutiondef(soltype.bas, retVal);
+        return retVal[0];
+    }
 
-            final int[] tmpCols = new int[tmpLinearSize];
-            final double[] tmpVals = new double[tmpLinearSize];
+    boolean isStopRequested() {
+        return myStopRequested || ((myDeadline != NO_DEADLINE) && ((System.nanoTime() - myDeadline) > 0L));
+    }
 
-            int i = 0;
-            for (final IntIndex tmpKey : tmpLinearFactorKeys) {
-                final int tmpRow = tmpKey.index;
-                if (tmpRow >= 0) {
-                    tmpCols[i] = tmpRow;
-                    tmpVals[i] = constraint.getAdjustedLinearFactor(tmpKey);
-                } else {
-                    tmpCols[i] = 0;
-                    tmpVals[i] = 0.0;
-                }
-                i++;
-            }
-            myTask.putarow(index, tmpCols, tmpVals);
+    boolean isWarmStartable(final Result kickStarter, final WarmStart policy) {
+
+        if ((kickStarter == null) || (policy == WarmStart.NEVER) || (mySolutionType == soltype.itr)) {
+            return false;
         }
 
-        final Set<IntRowColumn> tmpQuadraticFactorKeys = constraint.getQuadraticKeySet();
-        final int tmpQuadraticSize = tmpQuadraticFactorKeys.size();
-        if (tmpQuadraticSize > 0) {
+        if (kickStarter.count() != myNumberOfVariables) {
+            return false;
+        }
 
-            final int[] tmpRows = new int[tmpQuadraticSize];
-            final int[] tmpCols = new int[tmpQuadraticSize];
-            final double[] tmpVals = new double[tmpQuadraticSize];
+        return (policy == WarmStart.ALWAYS) || kickStarter.getState().isFeasible();
+    }
 
-            int i = 0;
-            for (final IntRowColumn tmpKey : tmpQuadraticFactorKeys) {
-                final int tmpRow = tmpKey.row;
-                final int tmpCol = tmpKey.column;
-                if ((tmpRow >= 0) && (tmpCol >= 0)) {
-                    if (tmpRow == tmpCol) {
-                        tmpRows[i] = tmpRow;
-                        tmpCols[i] = tmpCol;
-                        tmpVals[i] = 2.0 * constraint.getAdjustedQuadraticFactor(tmpKey);
-                    } else {
-                        tmpRows[i] = Math.max(tmpRow, tmpCol);
-                        tmpCols[i] = Math.min(tmpRow, tmpCol);
-                        tmpVals[i] = constraint.getAdjustedQuadraticFactor(tmpKey);
-                    }
-                } else {
-                    tmpRows[i] = 0;
-                    tmpCols[i] = 0;
-                    tmpVals[i] = 0.0;
+    /**
+     * Feed the kick-starter to the task as an initial solution. For the basic solution the variable status
+     * keys are derived from where the values are relative to the bounds. The constraint status keys are left
+     * basic - MOSEK will repair the basis if necessary. For integer solutions MOSEK is instructed to
+     * construct a start solution from the values of the integer variables.
+     */
+    void putInitialSolution(final Access1D<?> solution) {
+
+        final int tmpNumberOfVariables = myTask.getnumvar();
+
+        final boundkey[] tmpBoundTypes = new boundkey[tmpNumberOfVariables];
+        final double[] tmpLowerBounds = new double[tmpNumberOfVariables];
+        final double[] tmpUpperBounds = new double[tmpNumberOfVariables];
+        myTask.getvarboundslice(0, tmpNumberOfVariables, tmpBoundTypes, tmpLowerBounds, tmpUpperBounds);
+
+        // Any variables added by a reformulation are left at 0.0, fixed variables kept in the task at their value
+        final double[] tmpValues = new double[tmpNumberOfVariables];
+        if (myColumns != null) {
+            for (int j = 0; j < tmpNumberOfVariables; j++) {
+                if (tmpBoundTypes[j] == boundkey.fx) {
+                    tmpValues[j] = tmpLowerBounds[j];
                 }
-                i++;
             }
-            myTask.putqconk(index, tmpRows, tmpCols, tmpVals);
+            for (int j = 0; j < myNumberOfVariables; j++) {
+                tmpValues[myColumns[j]] = solution.doubleValue(j);
+            }
+        } else {
+            for (int j = 0; j < myNumberOfVariables; j++) {
+                tmpValues[j] = solution.doubleValue(j);
+            }
         }
 
-        final boundkey tmpBoundType = this.getBoundKey(constraint);
-        final double tmpLowerBound = constraint.getAdjustedLowerLimit();
-        final double tmpUpperBound = constraint.getAdjustedUpperLimit();
+        if (mySolutionType == soltype.itg) {
+
+            myTask.putxx(soltype.itg, tmpValues);
+            myTask.putintparam(Env.iparam.mio_construct_sol, Env.onoffkey.on.value);
+
+        } else {
+
+            final stakey[] tmpVariableKeys = new stakey[tmpNumberOfVariables];
+            for (int j = 0; j < tmpNumberOfVariables; j++) {
+                tmpVariableKeys[j] = SolverMosek.getStatusKey(tmpBoundTypes[j], tmpLowerBounds[j], tmpUpperBounds[j], tmpValues[j]);
+            }
 
-        myTask.putconbound(index, tmpBoundType, tmpLowerBound, tmpUpperBound);
+            final stakey[] tmpConstraintKeys = new stakey[myTask.getnumcon()];
+            Arrays.fill(tmpConstraintKeys, stakey.bas);
+
+            myTask.putskx(soltype.bas, tmpVariableKeys);
+            myTask.putskc(soltype.bas, tmpConstraintKeys);
+            myTask.putxx(soltype.bas, tmpValues);
+        }
     }
 
-    void putObjective(final Expression objective, final ExpressionsBasedModel model) {
+    void putConstraint(final int index, final Expression constraint, final FreeVariables columns) {
 
-        final Set<IntIndex> tmpLinearFactorKeys = objective.getLinearKeySet();
-        final int tmpLinearSize = tmpLinearFactorKeys.size();
-        if (tmpLinearSize > 0) {
+        final Expression tmpReduced = columns.reduce(constraint);
 
-            final int[] tmpRows = new int[tmpLinearSize];
-            final double[] tmpVals = new double[tmpLinearSize];
+        final TermBuffer tmpTerms = TermBuffer.local().linear(tmpReduced, columns);
+        final double tmpFixed = tmpTerms.linearConstant();
 
-            int i = 0;
-            for (final IntIndex tmpKey : tmpLinearFactorKeys) {
-                final int tmpRow = tmpKey.index;
-                if (tmpRow >= 0) {
-                    tmpRows[i] = tmpRow;
-                    tmpVals[i] = objective.getAdjustedLinearFactor(tmpKey);
-                } else {
-                    tmpRows[i] = 0;
-                    tmpVals[i] = 0.0;
+        tmpTerms.putLinearRow(myBackend, index);
+        this.putQuadraticConstraint(index, tmpReduced, columns);
+
+        final boundkey tmpBoundType = SolverMosek.getBoundKey(tmpReduced);
+        final double tmpLowerBound = tmpReduced.getAdjustedLowerLimit() - tmpFixed;
+        final double tmpUpperBound = tmpReduced.getAdjustedUpperLimit() - tmpFixed;
+
+        myBackend.putconbound(index, tmpBoundType, tmpLowerBound, tmpUpperBound);
+    }
+
+    /**
+     * Bulk alternative to calling {@link #putConstraint(int, Expression, FreeVariables)} for each constraint.
+     * The linear parts and the bounds are pushed to the task with one slice call each. Any quadratic parts are
+     * still set per constraint. Rows are appended to the task if it does not already have enough. The row
+     * data is extracted in parallel if there are many constraints (see {@link ConstraintBlock}).
+     * <p>
+     * With elimination, linear rows that have no free variables left (and are satisfied by the fixed ones) are
+     * dropped, and linear rows with a single free variable are turned into bounds on that variable. Then the
+     * task rows no longer correspond one-to-one to the constraints. Must be called after the variable bounds
+     * are set.
+     */
+    void putConstraints(final List<Expression> constraints, final FreeVariables columns, final boolean eliminate) {
+
+        final ConstraintBlock[] tmpBlocks = ConstraintBlock.extract(constraints, columns, eliminate);
+        final CompressedRows tmpRows = ConstraintBlock.stitch(tmpBlocks);
+
+        final int tmpMissing = tmpRows.countRows() - myBackend.getnumcon();
+        if (tmpMissing > 0) {
+            myBackend.appendcons(tmpMissing);
+        }
+
+        tmpRows.putInto(myBackend, 0);
+
+        int tmpFirstRow = 0;
+        for (final ConstraintBlock tmpBlock : tmpBlocks) {
+            tmpBlock.putSingletons(this);
+            for (int i = 0, limit = tmpBlock.rows.countRows(); i < limit; i++) {
+                if (tmpBlock.quadratic[i] != null) {
+                    this.putQuadraticConstraint(tmpFirstRow + i, tmpBlock.quadratic[i], columns);
                 }
-                i++;
             }
-            myTask.putclist(tmpRows, tmpVals);
+            tmpFirstRow += tmpBlock.rows.countRows();
         }
+    }
 
-        final Set<IntRowColumn> tmpQuadraticFactorKeys = objective.getQuadraticKeySet();
-        final int tmpQuadraticSize = tmpQuadraticFactorKeys.size();
-        if (tmpQuadraticSize > 0) {
+    void putObjective(final Expression objective, final FreeVariables columns, final ExpressionsBasedModel model) {
 
-            final int[] tmpRows = new int[tmpQuadraticSize];
-            final int[] tmpCols = new int[tmpQuadraticSize];
-            final double[] tmpVals = new double[tmpQuadraticSize];
+        final Expression tmpReduced = columns.reduce(objective);
 
-            int i = 0;
-            for (final IntRowColumn tmpKey : tmpQuadraticFactorKeys) {
-                final int tmpRow = tmpKey.row;
-                final int tmpCol = tmpKey.column;
-                if ((tmpRow >= 0) && (tmpCol >= 0)) {
-                    if (tmpRow == tmpCol) {
-                        tmpRows[i] = tmpRow;
-                        tmpCols[i] = tmpCol;
-                        tmpVals[i] = 2.0 * objective.getAdjustedQuadraticFactor(tmpKey);
-                    } else {
-                        tmpRows[i] = Math.max(tmpRow, tmpCol);
-                        tmpCols[i] = Math.min(tmpRow, tmpCol);
-                        tmpVals[i] = objective.getAdjustedQuadraticFactor(tmpKey);
-                    }
-                } else {
-                    tmpRows[i] = 0;
-                    tmpCols[i] = 0;
-                    tmpVals[i] = 0.0;
-                }
-                i++;
-            }
-            myTask.putqobj(tmpRows, tmpCols, tmpVals);
+        final TermBuffer tmpTerms = TermBuffer.local();
+
+        // The constant contributed by fixed variables does not affect the solution
+        tmpTerms.linear(tmpReduced, columns).putLinearObjective(myBackend);
+        tmpTerms.quadratic(tmpReduced, columns);
+
+        if ((myConicReformulation != null) && (tmpTerms.countQuadratic() > 0)) {
+            myConicReformulation.reformulate(myBackend, tmpTerms, -1);
+        } else {
+            tmpTerms.putQuadraticObjective(myBackend);
+        }
+
+        myBackend.putobjsense(model.isMinimisation() ? objsense.minimize : objsense.maximize);
+    }
+
+    void putQuadraticConstraint(final int index, final Expression constraint, final FreeVariables columns) {
+
+        final TermBuffer tmpTerms = TermBuffer.local().quadratic(constraint, columns);
+
+        if (tmpTerms.countQuadratic() == 0) {
+            return;
         }
 
-        myTask.putobjsense(model.isMinimisation() ? objsense.minimize : objsense.maximize);
+        if (myConicReformulation != null) {
+            myConicReformulation.reformulate(myBackend, tmpTerms, index);
+        } else {
+            tmpTerms.putQuadraticConstraint(myBackend, index);
+        }
     }
 
     void putVariable(final int index, final Variable variable) {
 
-        final boundkey boundType = this.getBoundKey(variable);
+        final boundkey boundType = SolverMosek.getBoundKey(variable);
         final double lowerBound = variable.getUnadjustedLowerLimit();
         final double upperBound = variable.getUnadjustedUpperLimit();
         final variabletype variableType = variable.isInteger() ? variabletype.type_int : variabletype.type_cont;
 
-        myTask.putvarbound(index, boundType, lowerBound, upperBound);
-        myTask.putvartype(index, variableType);
+        myBackend.putvarbound(index, boundType, lowerBound, upperBound);
+        myBackend.putvartype(index, variableType);
+    }
+
+    /**
+     * Bulk alternative to calling {@link #putVariable(int, Variable)} for each variable.
+     */
+    void putVariables(final List<Variable> variables) {
+
+        final int tmpNumberOfVariables = variables.size();
+
+        if (tmpNumberOfVariables == 0) {
+            return;
+        }
+
+        final boundkey[] tmpBoundTypes = new boundkey[tmpNumberOfVariables];
+        final double[] tmpLowerBounds = new double[tmpNumberOfVariables];
+        final double[] tmpUpperBounds = new double[tmpNumberOfVariables];
+
+        int tmpNumberOfIntegers = 0;
+        for (int v = 0; v < tmpNumberOfVariables; v++) {
+            final Variable tmpVariable = variables.get(v);
+            tmpBoundTypes[v] = SolverMosek.getBoundKey(tmpVariable);
+            tmpLowerBounds[v] = tmpVariable.getUnadjustedLowerLimit();
+            tmpUpperBounds[v] = tmpVariable.getUnadjustedUpperLimit();
+            if (tmpVariable.isInteger()) {
+                tmpNumberOfIntegers++;
+            }
+        }
+
+        myBackend.putvarboundslice(0, tmpNumberOfVariables, tmpBoundTypes, tmpLowerBounds, tmpUpperBounds);
+
+        if (tmpNumberOfIntegers > 0) {
+            // Variables are continuous by default - only the integer ones need to be set
+            final int[] tmpIndices = new int[tmpNumberOfIntegers];
+            final variabletype[] tmpTypes = new variabletype[tmpNumberOfIntegers];
+            int i = 0;
+            for (int v = 0; v < tmpNumberOfVariables; v++) {
+                if (variables.get(v).isInteger()) {
+                    tmpIndices[i] = v;
+                    tmpTypes[i] = variabletype.type_int;
+                    i++;
+                }
+            }
+            myBackend.putvartypelist(tmpIndices, tmpTypes);
+        }
+    }
+
+    /**
+     * @param columns The task columns of the (free) model variables, in model order
+     */
+    void setColumns(final int[] columns) {
+        myColumns = columns;
+        myNumberOfVariables = columns.length;
+    }
+
+    /**
+     * All quadratic terms added after this is set are reformulated as quadratic cones, using the factors
+     * prepared by the reformulation (null means no reformulation). Only for newly created tasks - a
+     * reformulated task cannot be reused for another model.
+     */
+    void setConicReformulation(final ConicReformulation reformulation) {
+        myConicReformulation = reformulation;
+    }
+
+    void setBuildTimes(final long extraction, final long translation) {
+        myExtractionTime = extraction;
+        myTranslationTime = translation;
+    }
+
+    /**
+     * Set a wall-clock deadline, in terms of {@link System#nanoTime()}, for subsequent solves. It is enforced
+     * both by MOSEK's own time limits and by the progress callback. {@link Long#MAX_VALUE} means no deadline.
+     */
+    void setDeadline(final long nanoTime) {
+        myDeadline = nanoTime;
+    }
+
+    void setEliminated(final boolean eliminated) {
+        myEliminated = eliminated;
+    }
+
+    /**
+     * Re-solve with the dual simplex from the basis left in the task by the previous solve (if there is one)
+     * - typically after only some bounds changed.
+     */
+    void setHotStart(final boolean hotStart) {
+        myHotStart = hotStart;
+    }
+
+    /**
+     * Redirect this task's log output.
+     */
+    void setLog(final Stream stream) {
+        myLogStream = stream;
+        myTask.set_Stream(streamtype.log, stream);
+    }
+
+    /**
+     * The model this solver was built from (if any) - integer solutions reported while solving are mapped to
+     * it.
+     */
+    void setModel(final ExpressionsBasedModel model) {
+        myModel = model;
+    }
+
+    /**
+     * Limit the number of threads MOSEK may use for this task. 0 means no limit (MOSEK's default).
+     */
+    void setNumberOfThreads(final int numberOfThreads) {
+        myNumberOfThreads = Math.max(0, numberOfThreads);
+    }
+
+    /**
+     * For tasks that are populated after the solver is created - the first numberOfVariables task columns
+     * are the model variables.
+     */
+    void setNumberOfVariables(final int numberOfVariables) {
+        myColumns = null;
+        myNumberOfVariables = numberOfVariables;
+    }
+
+    /**
+     * Set how task objective function values map back to model units - the objective was translated with
+     * these columns.
+     */
+    void setObjective(final Expression objective, final FreeVariables columns) {
+        myObjectiveScale = Sensitivity.factor(columns.reduce(objective));
+        myObjectiveConstant = columns.constant(objective);
+    }
+
+    void setSolutionType(final boolean integer, final boolean quadratic) {
+        mySolutionType = integer ? soltype.itg : (quadratic ? soltype.itr : soltype.bas);
     }
 
     void setSolutionType(final ExpressionsBasedModel model) {
-        mySolutionType = model.isAnyVariableInteger() ? soltype.itg : (model.isAnyExpressionQuadratic() ? soltype.itr : soltype.bas);
+        this.setSolutionType(model.isAnyVariableInteger(), model.isAnyExpressionQuadratic());
+    }
+
+    /**
+     * @param taskObjective An objective function value (or bound) as reported by the task
+     * @return The same value in model units - including the constant contributed by fixed variables
+     */
+    double toModelObjective(final double taskObjective) {
+        return (taskObjective / myObjectiveScale) + myObjectiveConstant;
+    }
+
+    /**
+     * @param taskSolution Values for all task columns
+     * @return Values for the (free) model variables
+     */
+    double[] toModelSolution(final double[] taskSolution) {
+        if (myColumns != null) {
+            final double[] retVal = new double[myNumberOfVariables];
+            for (int j = 0; j < myNumberOfVariables; j++) {
+                retVal[j] = taskSolution[myColumns[j]];
+            }
+            return retVal;
+        } else if (taskSolution.length != myNumberOfVariables) {
+            return Arrays.copyOf(taskSolution, myNumberOfVariables);
+        } else {
+            return taskSolution;
+        }
+    }
+
+    /**
+     * Intersect the bounds of a variable (column) with those implied by a singleton row:
+     * lowerBound &lt;= factor * x &lt;= upperBound.
+     */
+    void tightenBounds(final int column, final double factor, final boundkey boundType, final double lowerBound, final double upperBound) {
+
+        final boolean tmpRowLower = (boundType == boundkey.lo) || (boundType == boundkey.ra) || (boundType == boundkey.fx);
+        final boolean tmpRowUpper = (boundType == boundkey.up) || (boundType == boundkey.ra) || (boundType == boundkey.fx);
+
+        // Dividing by a negative factor swaps the bounds
+        final boolean tmpHasLower = factor > 0.0 ? tmpRowLower : tmpRowUpper;
+        final boolean tmpHasUpper = factor > 0.0 ? tmpRowUpper : tmpRowLower;
+        final double tmpImpliedLower = (factor > 0.0 ? lowerBound : upperBound) / factor;
+        final double tmpImpliedUpper = (factor > 0.0 ? upperBound : lowerBound) / factor;
+
+        final boundkey[] tmpKey = new boundkey[1];
+        final double[] tmpLower = new double[1];
+        final double[] tmpUpper = new double[1];
+        myBackend.getvarbound(column, tmpKey, tmpLower, tmpUpper);
+
+        boolean tmpLowerSet = (tmpKey[0] == boundkey.lo) || (tmpKey[0] == boundkey.ra) || (tmpKey[0] == boundkey.fx);
+        boolean tmpUpperSet = (tmpKey[0] == boundkey.up) || (tmpKey[0] == boundkey.ra) || (tmpKey[0] == boundkey.fx);
+        double tmpLo = tmpLowerSet ? tmpLower[0] : Double.NEGATIVE_INFINITY;
+        double tmpUp = tmpUpperSet ? tmpUpper[0] : Double.POSITIVE_INFINITY;
+
+        if (tmpHasLower && (tmpImpliedLower > tmpLo)) {
+            tmpLo = tmpImpliedLower;
+            tmpLowerSet = true;
+        }
+        if (tmpHasUpper && (tmpImpliedUpper < tmpUp)) {
+            tmpUp = tmpImpliedUpper;
+            tmpUpperSet = true;
+        }
+
+        final boundkey tmpType;
+        if (tmpLowerSet && tmpUpperSet) {
+            tmpType = tmpLo == tmpUp ? boundkey.fx : boundkey.ra;
+        } else if (tmpLowerSet) {
+            tmpType = boundkey.lo;
+        } else if (tmpUpperSet) {
+            tmpType = boundkey.up;
+        } else {
+            tmpType = boundkey.fr;
+        }
+
+        // Conflicting bounds (lower > upper) are passed on as is - MOSEK reports the model infeasible
+        myBackend.putvarbound(column, tmpType, tmpLo, tmpUp);
+    }
+
+    private Optimisation.Result toIncumbentResult(final double[] taskSolution) {
+        final Optimisation.Result retVal = new Optimisation.Result(Optimisation.State.FEASIBLE, Double.NaN,
+                Primitive64Array.wrap(this.toModelSolution(taskSolution.clone())));
+        return myModel != null ? INTEGRATION.toModelState(retVal, myModel) : retVal;
     }
 
 }
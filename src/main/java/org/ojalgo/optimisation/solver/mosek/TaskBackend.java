@@ -0,0 +1,191 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import mosek.Env.boundkey;
+import mosek.Env.conetype;
+import mosek.Env.objsense;
+import mosek.Env.variabletype;
+import mosek.Task;
+
+/**
+ * The (subset of the) {@link Task} API that translating a model uses. The methods have the same names and
+ * signatures as the corresponding {@link Task} methods. {@link SolverMosek}, {@link CompressedRows},
+ * {@link TermBuffer}, {@link ConicReformulation} and {@link ModelSnapshot} write to a backend rather than
+ * directly to a task, and that makes it possible to translate, test and profile the translation with an
+ * in-memory stand-in - no native library or license required. Solving always requires a real {@link Task}.
+ *
+ * @author apete
+ */
+interface TaskBackend {
+
+    /**
+     * Delegates every call to a real {@link Task}.
+     */
+    static final class MosekBackend implements TaskBackend {
+
+        private final Task myTask;
+
+        MosekBackend(final Task task) {
+            super();
+            myTask = task;
+        }
+
+        public void appendcone(final conetype type, final double parameter, final int[] members) {
+            myTask.appendcone(type, parameter, members);
+        }
+
+        public void appendcons(final int number) {
+            myTask.appendcons(number);
+        }
+
+        public void appendvars(final int number) {
+            myTask.appendvars(number);
+        }
+
+        public int getnumcon() {
+            return myTask.getnumcon();
+        }
+
+        public int getnumvar() {
+            return myTask.getnumvar();
+        }
+
+        public void getvarbound(final int index, final boundkey[] key, final double[] lower, final double[] upper) {
+            myTask.getvarbound(index, key, lower, upper);
+        }
+
+        public void putacolslice(final int first, final int last, final long[] begin, final long[] end, final int[] subscripts, final double[] values) {
+            myTask.putacolslice(first, last, begin, end, subscripts, values);
+        }
+
+        public void putaij(final int row, final int column, final double value) {
+            myTask.putaij(row, column, value);
+        }
+
+        public void putarow(final int row, final int[] columns, final double[] values) {
+            myTask.putarow(row, columns, values);
+        }
+
+        public void putarowslice(final int first, final int last, final long[] begin, final long[] end, final int[] subscripts, final double[] values) {
+            myTask.putarowslice(first, last, begin, end, subscripts, values);
+        }
+
+        public void putcj(final int column, final double value) {
+            myTask.putcj(column, value);
+        }
+
+        public void putclist(final int[] columns, final double[] values) {
+            myTask.putclist(columns, values);
+        }
+
+        public void putconbound(final int row, final boundkey key, final double lower, final double upper) {
+            myTask.putconbound(row, key, lower, upper);
+        }
+
+        public void putconboundslice(final int first, final int last, final boundkey[] keys, final double[] lower, final double[] upper) {
+            myTask.putconboundslice(first, last, keys, lower, upper);
+        }
+
+        public void putcslice(final int first, final int last, final double[] values) {
+            myTask.putcslice(first, last, values);
+        }
+
+        public void putobjsense(final objsense sense) {
+            myTask.putobjsense(sense);
+        }
+
+        public void putqconk(final int row, final int[] rows, final int[] columns, final double[] values) {
+            myTask.putqconk(row, rows, columns, values);
+        }
+
+        public void putqobj(final int[] rows, final int[] columns, final double[] values) {
+            myTask.putqobj(rows, columns, values);
+        }
+
+        public void putvarbound(final int column, final boundkey key, final double lower, final double upper) {
+            myTask.putvarbound(column, key, lower, upper);
+        }
+
+        public void putvarboundslice(final int first, final int last, final boundkey[] keys, final double[] lower, final double[] upper) {
+            myTask.putvarboundslice(first, last, keys, lower, upper);
+        }
+
+        public void putvartype(final int column, final variabletype type) {
+            myTask.putvartype(column, type);
+        }
+
+        public void putvartypelist(final int[] columns, final variabletype[] types) {
+            myTask.putvartypelist(columns, types);
+        }
+
+    }
+
+    static TaskBackend of(final Task task) {
+        return new MosekBackend(task);
+    }
+
+    void appendcone(conetype type, double parameter, int[] members);
+
+    void appendcons(int number);
+
+    void appendvars(int number);
+
+    int getnumcon();
+
+    int getnumvar();
+
+    void getvarbound(int index, boundkey[] key, double[] lower, double[] upper);
+
+    void putacolslice(int first, int last, long[] begin, long[] end, int[] subscripts, double[] values);
+
+    void putaij(int row, int column, double value);
+
+    void putarow(int row, int[] columns, double[] values);
+
+    void putarowslice(int first, int last, long[] begin, long[] end, int[] subscripts, double[] values);
+
+    void putcj(int column, double value);
+
+    void putclist(int[] columns, double[] values);
+
+    void putconbound(int row, boundkey key, double lower, double upper);
+
+    void putconboundslice(int first, int last, boundkey[] keys, double[] lower, double[] upper);
+
+    void putcslice(int first, int last, double[] values);
+
+    void putobjsense(objsense sense);
+
+    void putqconk(int row, int[] rows, int[] columns, double[] values);
+
+    void putqobj(int[] rows, int[] columns, double[] values);
+
+    void putvarbound(int column, boundkey key, double lower, double upper);
+
+    void putvarboundslice(int first, int last, boundkey[] keys, double[] lower, double[] upper);
+
+    void putvartype(int column, variabletype type);
+
+    void putvartypelist(int[] columns, variabletype[] types);
+
+}
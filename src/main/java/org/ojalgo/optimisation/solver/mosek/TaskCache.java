@@ -0,0 +1,280 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.optimisation.Variable;
+import org.ojalgo.structure.Structure1D.IntIndex;
+import org.ojalgo.structure.Structure2D.IntRowColumn;
+
+import mosek.Task;
+
+/**
+ * A size bounded, least recently used, cache of MOSEK tasks keyed by model structure. Tasks are checked out
+ * with {@link #take(Key)} and handed back with {@link #give(Key, Task, ModelSnapshot)} when the solver is
+ * disposed. Each task is kept with a snapshot of its values, so that reusing it only pushes the values that
+ * differ. While checked out a task is not in the cache, so the same task is never used by two solvers at the
+ * same time. Tasks evicted from the cache are disposed.
+ * <p>
+ * The cache is disabled (capacity 0) by default. Enable it with {@link #setCapacity(int)}.
+ *
+ * @author apete
+ */
+public final class TaskCache {
+
+    /**
+     * A checked out task, and a snapshot of the values that were last pushed to it.
+     */
+    static final class Entry {
+
+        final ModelSnapshot snapshot;
+        final Task task;
+
+        Entry(final Task task, final ModelSnapshot snapshot) {
+            super();
+            this.task = task;
+            this.snapshot = snapshot;
+        }
+
+    }
+
+    /**
+     * The structure of a translated model: the number of variables and constraints, the sparsity patterns
+     * of the constraints and the objective, and which variables are integer. The patterns are stored in
+     * full (sorted per row) and compared exactly, so two models with equal keys produce tasks that differ
+     * only in numerical values - a hash collision can never hand out a task with a different structure.
+     */
+    static final class Key {
+
+        static Key of(final FreeVariables columns, final List<Expression> constraints, final Expression objective) {
+
+            final List<Variable> tmpVariables = columns.getVariables();
+
+            final BitSet tmpIntegers = new BitSet(tmpVariables.size());
+            for (int j = 0; j < tmpVariables.size(); j++) {
+                if (tmpVariables.get(j).isInteger()) {
+                    tmpIntegers.set(j);
+                }
+            }
+
+            // Row 0 is the objective, row i + 1 is constraint i
+            final int[] tmpLinearEnds = new int[constraints.size() + 1];
+            final int[] tmpQuadraticEnds = new int[constraints.size() + 1];
+            int[] tmpLinear = new int[16];
+            long[] tmpQuadratic = new long[16];
+            int tmpLinearCount = 0;
+            int tmpQuadraticCount = 0;
+
+            for (int i = -1; i < constraints.size(); i++) {
+
+                final Expression tmpExpression = columns.reduce(i >= 0 ? constraints.get(i) : objective);
+
+                final int tmpLinearBegin = tmpLinearCount;
+                for (final IntIndex tmpKey : tmpExpression.getLinearKeySet()) {
+                    final int tmpColumn = columns.column(tmpKey.index);
+                    if (tmpColumn >= 0) {
+                        if (tmpLinearCount == tmpLinear.length) {
+                            tmpLinear = Arrays.copyOf(tmpLinear, 2 * tmpLinearCount);
+                        }
+                        tmpLinear[tmpLinearCount++] = tmpColumn;
+                    }
+                }
+                // Sorted so that the pattern does not depend on key set iteration order
+                Arrays.sort(tmpLinear, tmpLinearBegin, tmpLinearCount);
+                tmpLinearEnds[i + 1] = tmpLinearCount;
+
+                final int tmpQuadraticBegin = tmpQuadraticCount;
+                for (final IntRowColumn tmpKey : tmpExpression.getQuadraticKeySet()) {
+                    final int tmpFirst = columns.column(tmpKey.row);
+                    final int tmpSecond = columns.column(tmpKey.column);
+                    if ((tmpFirst < 0) || (tmpSecond < 0)) {
+                        continue;
+                    }
+                    if (tmpQuadraticCount == tmpQuadratic.length) {
+                        tmpQuadratic = Arrays.copyOf(tmpQuadratic, 2 * tmpQuadraticCount);
+                    }
+                    // Lower triangular, just as the terms are pushed to MOSEK
+                    tmpQuadratic[tmpQuadraticCount++] = ((long) Math.max(tmpFirst, tmpSecond) << 32) | Math.min(tmpFirst, tmpSecond);
+                }
+                Arrays.sort(tmpQuadratic, tmpQuadraticBegin, tmpQuadraticCount);
+                tmpQuadraticEnds[i + 1] = tmpQuadraticCount;
+            }
+
+            return new Key(tmpVariables.size(), constraints.size(), tmpIntegers, tmpLinearEnds, Arrays.copyOf(tmpLinear, tmpLinearCount), tmpQuadraticEnds,
+                    Arrays.copyOf(tmpQuadratic, tmpQuadraticCount));
+        }
+
+        private final int myHashCode;
+        private final BitSet myIntegers;
+        private final int[] myLinear;
+        private final int[] myLinearEnds;
+        private final long[] myQuadratic;
+        private final int[] myQuadraticEnds;
+        final int numberOfConstraints;
+        final int numberOfVariables;
+
+        Key(final int nbVariables, final int nbConstraints, final BitSet integers, final int[] linearEnds, final int[] linear, final int[] quadraticEnds,
+                final long[] quadratic) {
+
+            super();
+
+            numberOfVariables = nbVariables;
+            numberOfConstraints = nbConstraints;
+            myIntegers = integers;
+            myLinearEnds = linearEnds;
+            myLinear = linear;
+            myQuadraticEnds = quadraticEnds;
+            myQuadratic = quadratic;
+
+            int tmpHashCode = (31 * nbVariables) + nbConstraints;
+            tmpHashCode = (31 * tmpHashCode) + integers.hashCode();
+            tmpHashCode = (31 * tmpHashCode) + Arrays.hashCode(linearEnds);
+            tmpHashCode = (31 * tmpHashCode) + Arrays.hashCode(linear);
+            tmpHashCode = (31 * tmpHashCode) + Arrays.hashCode(quadraticEnds);
+            myHashCode = (31 * tmpHashCode) + Arrays.hashCode(quadratic);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return (myHashCode == other.myHashCode) && (numberOfVariables == other.numberOfVariables) && (numberOfConstraints == other.numberOfConstraints)
+                    && myIntegers.equals(other.myIntegers) && Arrays.equals(myLinearEnds, other.myLinearEnds) && Arrays.equals(myLinear, other.myLinear)
+                    && Arrays.equals(myQuadraticEnds, other.myQuadraticEnds) && Arrays.equals(myQuadratic, other.myQuadratic);
+        }
+
+        @Override
+        public int hashCode() {
+            return myHashCode;
+        }
+
+    }
+
+    private int myCapacity = 0;
+    private long myEvictions = 0L;
+    private long myHits = 0L;
+    private long myMisses = 0L;
+    private final LinkedHashMap<Key, Entry> myTasks = new LinkedHashMap<>(16, 0.75F, true);
+
+    TaskCache() {
+        super();
+    }
+
+    /**
+     * Dispose all cached tasks.
+     */
+    public synchronized void clear() {
+        for (final Entry tmpEntry : myTasks.values()) {
+            TaskPool.dispose(tmpEntry.task);
+        }
+        myEvictions += myTasks.size();
+        myTasks.clear();
+    }
+
+    public synchronized long countEvictions() {
+        return myEvictions;
+    }
+
+    public synchronized long countHits() {
+        return myHits;
+    }
+
+    public synchronized long countMisses() {
+        return myMisses;
+    }
+
+    public synchronized int getCapacity() {
+        return myCapacity;
+    }
+
+    public synchronized boolean isEnabled() {
+        return myCapacity > 0;
+    }
+
+    /**
+     * Set the maximum number of cached tasks. 0 disables the cache (and disposes any cached tasks).
+     */
+    public synchronized void setCapacity(final int capacity) {
+        myCapacity = Math.max(0, capacity);
+        this.evict();
+    }
+
+    public synchronized int size() {
+        return myTasks.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TaskCache [size=" + myTasks.size() + ", capacity=" + myCapacity + ", hits=" + myHits + ", misses=" + myMisses + ", evictions=" + myEvictions
+                + "]";
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<Key, Entry>> tmpIterator = myTasks.entrySet().iterator();
+        while ((myTasks.size() > myCapacity) && tmpIterator.hasNext()) {
+            final Entry tmpEldest = tmpIterator.next().getValue();
+            tmpIterator.remove();
+            TaskPool.dispose(tmpEldest.task);
+            myEvictions++;
+        }
+    }
+
+    /**
+     * Hand a task back to the cache, together with a snapshot of the values that were pushed to it. If there
+     * already is a task with that key, or the cache is disabled, the task is disposed instead.
+     */
+    synchronized void give(final Key key, final Task task, final ModelSnapshot snapshot) {
+        if ((myCapacity > 0) && !myTasks.containsKey(key)) {
+            myTasks.put(key, new Entry(task, snapshot));
+            this.evict();
+        } else {
+            TaskPool.dispose(task);
+        }
+    }
+
+    /**
+     * Check out a task with matching structure, or null if there is none. Push the differences from the
+     * entry's snapshot to the task before using it.
+     */
+    synchronized Entry take(final Key key) {
+        final Entry retVal = myTasks.remove(key);
+        if (retVal != null) {
+            myHits++;
+        } else {
+            myMisses++;
+        }
+        return retVal;
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import mosek.Stream;
+
+/**
+ * The log of a single MOSEK task/solve. Log lines are kept in a bounded, lock-free, single-producer
+ * single-consumer ring - when the ring is full new lines are dropped (and counted) rather than blocking
+ * the optimizer. Iteration lines (of the interior-point and simplex optimizers) are parsed into
+ * {@link Iteration} records and passed to the {@link Listener} as they arrive.
+ *
+ * @author apete
+ */
+public final class TaskLog {
+
+    /**
+     * One line of MOSEK's iteration log. Values not present in the log of the particular optimizer are NaN.
+     */
+    public static final class Iteration {
+
+        public final double dfeas;
+        public final double dobj;
+        public final int iteration;
+        public final double pfeas;
+        public final double pobj;
+        public final double time;
+
+        Iteration(final int iteration, final double pfeas, final double dfeas, final double pobj, final double dobj, final double time) {
+            super();
+            this.iteration = iteration;
+            this.pfeas = pfeas;
+            this.dfeas = dfeas;
+            this.pobj = pobj;
+            this.dobj = dobj;
+            this.time = time;
+        }
+
+        @Override
+        public String toString() {
+            return "Iteration [iteration=" + iteration + ", pfeas=" + pfeas + ", dfeas=" + dfeas + ", pobj=" + pobj + ", dobj=" + dobj + ", time=" + time
+                    + "]";
+        }
+
+    }
+
+    public interface Listener {
+
+        /**
+         * Called after each solve, from the solving thread. This is where the remaining log lines can be
+         * drained with {@link TaskLog#poll()}.
+         */
+        default void completed(final TaskLog log) {
+        }
+
+        /**
+         * Called for each parsed iteration line, from the solving thread, while the optimizer is running.
+         * Should return quickly.
+         */
+        void iteration(Iteration iteration);
+
+    }
+
+    private static final int NOT_PRESENT = -1;
+
+    private static double parse(final String[] tokens, final int column) {
+        if ((column == NOT_PRESENT) || (column >= tokens.length)) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(tokens[column]);
+        } catch (final NumberFormatException cause) {
+            return Double.NaN;
+        }
+    }
+
+    private int myColumnDFEAS = NOT_PRESENT;
+    private int myColumnDOBJ = NOT_PRESENT;
+    private int myColumnPFEAS = NOT_PRESENT;
+    private int myColumnPOBJ = NOT_PRESENT;
+    private int myColumnTIME = NOT_PRESENT;
+    private int myColumns = 0;
+    private final AtomicLong myDropped = new AtomicLong();
+    private Iteration myLastIteration = null;
+    private final Listener myListener;
+    private final int myMask;
+    private final StringBuilder myPartial = new StringBuilder();
+    private final AtomicLong myRead = new AtomicLong();
+    private final AtomicReferenceArray<String> myRing;
+    private final Stream myStream = new Stream() {
+
+        @Override
+        public void stream(final String message) {
+            TaskLog.this.append(message);
+        }
+    };
+    private final AtomicLong myWritten = new AtomicLong();
+
+    /**
+     * @param capacity Number of lines kept (rounded up to a power of 2). 0 means lines are only parsed, never
+     *        stored.
+     */
+    TaskLog(final int capacity, final Listener listener) {
+
+        super();
+
+        int tmpCapacity = 1;
+        while (tmpCapacity < capacity) {
+            tmpCapacity <<= 1;
+        }
+
+        myRing = new AtomicReferenceArray<>(capacity > 0 ? tmpCapacity : 0);
+        myMask = tmpCapacity - 1;
+        myListener = listener;
+    }
+
+    /**
+     * The number of lines that were dropped because the ring was full.
+     */
+    public long countDropped() {
+        return myDropped.get();
+    }
+
+    public Iteration getLastIteration() {
+        return myLastIteration;
+    }
+
+    /**
+     * @return The oldest not yet consumed line, or null if there is none. Must only be called from one
+     *         (consumer) thread at a time.
+     */
+    public String poll() {
+
+        final long tmpRead = myRead.get();
+        if (tmpRead == myWritten.get()) {
+            return null;
+        }
+
+        final int tmpSlot = (int) (tmpRead & myMask);
+        final String retVal = myRing.get(tmpSlot);
+        myRing.lazySet(tmpSlot, null);
+        myRead.lazySet(tmpRead + 1L);
+        return retVal;
+    }
+
+    private void append(final String message) {
+
+        for (int i = 0, limit = message.length(); i < limit; i++) {
+            final char tmpChar = message.charAt(i);
+            if (tmpChar == '\n') {
+                this.line(myPartial.toString());
+                myPartial.setLength(0);
+            } else if (tmpChar != '\r') {
+                myPartial.append(tmpChar);
+            }
+        }
+    }
+
+    private void header(final String[] tokens) {
+
+        myColumns = tokens.length;
+        myColumnPFEAS = NOT_PRESENT;
+        myColumnDFEAS = NOT_PRESENT;
+        myColumnPOBJ = NOT_PRESENT;
+        myColumnDOBJ = NOT_PRESENT;
+        myColumnTIME = NOT_PRESENT;
+
+        for (int t = 0; t < tokens.length; t++) {
+            switch (tokens[t]) {
+            case "PFEAS":
+                myColumnPFEAS = t;
+                break;
+            case "DFEAS":
+                myColumnDFEAS = t;
+                break;
+            case "POBJ":
+                myColumnPOBJ = t;
+                break;
+            case "DOBJ":
+                myColumnDOBJ = t;
+                break;
+            case "TIME":
+                myColumnTIME = t;
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private void line(final String line) {
+
+        this.offer(line);
+
+        if (myListener == null) {
+            return;
+        }
+
+        final String tmpTrimmed = line.trim();
+        if (tmpTrimmed.isEmpty()) {
+            return;
+        }
+
+        final String[] tmpTokens = tmpTrimmed.split("\\s+");
+
+        if ("ITE".equals(tmpTokens[0]) || "ITER".equals(tmpTokens[0])) {
+            this.header(tmpTokens);
+        } else if ((myColumns > 0) && (tmpTokens.length == myColumns) && Character.isDigit(tmpTokens[0].charAt(0))) {
+            try {
+                final int tmpIteration = Integer.parseInt(tmpTokens[0]);
+                myLastIteration = new Iteration(tmpIteration, TaskLog.parse(tmpTokens, myColumnPFEAS), TaskLog.parse(tmpTokens, myColumnDFEAS),
+                        TaskLog.parse(tmpTokens, myColumnPOBJ), TaskLog.parse(tmpTokens, myColumnDOBJ), TaskLog.parse(tmpTokens, myColumnTIME));
+                myListener.iteration(myLastIteration);
+            } catch (final NumberFormatException cause) {
+                // Not an iteration line after all
+            }
+        } else {
+            // Anything else ends the iteration table
+            myColumns = 0;
+        }
+    }
+
+    private void offer(final String line) {
+
+        if (myRing.length() == 0) {
+            return;
+        }
+
+        final long tmpWritten = myWritten.get();
+        if ((tmpWritten - myRead.get()) > myMask) {
+            myDropped.incrementAndGet();
+            return;
+        }
+
+        myRing.lazySet((int) (tmpWritten & myMask), line);
+        myWritten.lazySet(tmpWritten + 1L);
+    }
+
+    Stream asStream() {
+        return myStream;
+    }
+
+    /**
+     * Process any incomplete last line.
+     */
+    void flush() {
+        if (myPartial.length() > 0) {
+            this.line(myPartial.toString());
+            myPartial.setLength(0);
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mosek.Env;
+import mosek.Env.objsense;
+import mosek.Env.soltype;
+import mosek.Task;
+
+/**
+ * A size bounded pool, per thread, of cleared MOSEK tasks - so that building and solving many models does
+ * not allocate (and later free) a native task each time. When a solver is closed its task is cleared (all
+ * variables, constraints, cones and solutions removed, parameters reset to their defaults) and kept for the
+ * next build on the same thread. Tasks that do not fit in the pool are disposed immediately. The tasks
+ * pooled by a thread are disposed when that thread terminates.
+ * <p>
+ * All native tasks created by this package are counted, so {@link #countLiveTasks()} shows how many exist
+ * right now - in the pools, in caches and in use. Every task is eventually disposed without relying on
+ * finalization: solvers (closed, or collected) hand their tasks back here, tasks retained in incremental mode
+ * are disposed when released or when their model is collected, and node mode tasks when the branch-and-bound
+ * has finished.
+ *
+ * @author apete
+ */
+public final class TaskPool {
+
+    /**
+     * Owned by its thread (via a thread local). When the thread terminates the shelf becomes unreachable and
+     * the tasks are disposed by the {@link NativeCleaner}.
+     */
+    private static final class Shelf {
+
+        final ArrayDeque<Task> tasks = new ArrayDeque<>();
+
+    }
+
+    private static final AtomicLong CREATED = new AtomicLong();
+    private static final AtomicLong DISPOSED = new AtomicLong();
+
+    /**
+     * @return The number of native tasks currently allocated (created but not yet disposed)
+     */
+    public static long countLiveTasks() {
+        return CREATED.get() - DISPOSED.get();
+    }
+
+    private static void drain(final ArrayDeque<Task> tasks) {
+        synchronized (tasks) {
+            while (!tasks.isEmpty()) {
+                TaskPool.dispose(tasks.pop());
+            }
+        }
+    }
+
+    private static int[] range(final int count) {
+        final int[] retVal = new int[count];
+        for (int i = 0; i < count; i++) {
+            retVal[i] = i;
+        }
+        return retVal;
+    }
+
+    static Task create(final Env environment, final int numberOfConstraints, final int numberOfVariables) {
+        final Task retVal = new Task(environment, numberOfConstraints, numberOfVariables);
+        CREATED.incrementAndGet();
+        return retVal;
+    }
+
+    static void dispose(final Task task) {
+        task.dispose();
+        DISPOSED.incrementAndGet();
+    }
+
+    /**
+     * @return true if the task was cleared, false if that failed (and the task should be disposed)
+     */
+    static boolean reset(final Task task) {
+        try {
+
+            final int tmpNumberOfCones = task.getnumcone();
+            if (tmpNumberOfCones > 0) {
+                task.removecones(TaskPool.range(tmpNumberOfCones));
+            }
+            final int tmpNumberOfConstraints = task.getnumcon();
+            if (tmpNumberOfConstraints > 0) {
+                task.removecons(TaskPool.range(tmpNumberOfConstraints));
+            }
+            final int tmpNumberOfVariables = task.getnumvar();
+            if (tmpNumberOfVariables > 0) {
+                task.removevars(TaskPool.range(tmpNumberOfVariables));
+            }
+
+            for (final soltype tmpType : soltype.values()) {
+                task.deletesolution(tmpType);
+            }
+
+            task.putcfix(0.0);
+            task.putobjsense(objsense.minimize);
+            task.setdefaults();
+
+            task.set_Progress(null);
+            task.set_InfoCallback(null);
+            task.set_ItgSolutionCallback(null);
+
+            return true;
+
+        } catch (final RuntimeException cause) {
+            return false;
+        }
+    }
+
+    private volatile int myCapacity = 4;
+    private final AtomicLong myReturns = new AtomicLong();
+    private final AtomicLong myReuses = new AtomicLong();
+    private final ThreadLocal<Shelf> myShelf = ThreadLocal.withInitial(this::newShelf);
+    /**
+     * All shelves' task queues, for {@link #clear()} and {@link #size()}.
+     */
+    private final Set<ArrayDeque<Task>> myShelves = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicLong myTakes = new AtomicLong();
+
+    TaskPool() {
+        super();
+    }
+
+    /**
+     * Dispose all pooled tasks, of all threads.
+     */
+    public void clear() {
+        for (final ArrayDeque<Task> tmpTasks : myShelves) {
+            TaskPool.drain(tmpTasks);
+        }
+    }
+
+    /**
+     * @return The number of tasks handed back to the pool (and kept)
+     */
+    public long countReturns() {
+        return myReturns.get();
+    }
+
+    /**
+     * @return The number of requests for a task that were served from the pool
+     */
+    public long countReuses() {
+        return myReuses.get();
+    }
+
+    /**
+     * @return The number of requests for a task
+     */
+    public long countTakes() {
+        return myTakes.get();
+    }
+
+    /**
+     * @return The maximum number of tasks pooled per thread
+     */
+    public int getCapacity() {
+        return myCapacity;
+    }
+
+    /**
+     * @return The fraction of requests for a task that were served from the pool
+     */
+    public double getUtilisation() {
+        final long tmpTakes = myTakes.get();
+        return tmpTakes > 0L ? (double) myReuses.get() / tmpTakes : 0.0;
+    }
+
+    /**
+     * Set the maximum number of tasks pooled per thread. 0 disables pooling. The default is 4. Pools that
+     * are larger than a new capacity shrink as tasks are taken.
+     */
+    public void setCapacity(final int capacity) {
+        myCapacity = Math.max(0, capacity);
+        if (myCapacity == 0) {
+            this.clear();
+        }
+    }
+
+    /**
+     * @return The number of pooled tasks, of all threads
+     */
+    public int size() {
+        int retVal = 0;
+        for (final ArrayDeque<Task> tmpTasks : myShelves) {
+            synchronized (tmpTasks) {
+                retVal += tmpTasks.size();
+            }
+        }
+        return retVal;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskPool [size=" + this.size() + ", capacity=" + myCapacity + ", takes=" + myTakes + ", reuses=" + myReuses + ", live="
+                + TaskPool.countLiveTasks() + "]";
+    }
+
+    /**
+     * Hand a task back to the pool of the current thread. It is cleared and kept if there is room, otherwise
+     * disposed. Tasks released by the cleaner thread (solvers that were never closed) are always disposed -
+     * nothing ever takes from that thread's pool.
+     */
+    void give(final Task task) {
+
+        if (NativeCleaner.INSTANCE.isCleanerThread()) {
+            TaskPool.dispose(task);
+            return;
+        }
+
+        final ArrayDeque<Task> tmpTasks = myShelf.get().tasks;
+
+        synchronized (tmpTasks) {
+            if ((tmpTasks.size() < myCapacity) && TaskPool.reset(task)) {
+                tmpTasks.push(task);
+                myReturns.incrementAndGet();
+                return;
+            }
+        }
+
+        TaskPool.dispose(task);
+    }
+
+    /**
+     * A task from the pool of the current thread, or a new one if the pool is empty. Either way it has (at
+     * least) the requested number of constraints and variables appended.
+     */
+    Task take(final Env environment, final int numberOfConstraints, final int numberOfVariables) {
+
+        myTakes.incrementAndGet();
+
+        final ArrayDeque<Task> tmpTasks = myShelf.get().tasks;
+
+        Task retVal;
+        synchronized (tmpTasks) {
+            retVal = tmpTasks.poll();
+            while (tmpTasks.size() > myCapacity) {
+                TaskPool.dispose(tmpTasks.removeLast());
+            }
+        }
+
+        if (retVal != null) {
+            myReuses.incrementAndGet();
+        } else {
+            retVal = TaskPool.create(environment, numberOfConstraints, numberOfVariables);
+        }
+
+        retVal.appendcons(numberOfConstraints);
+        retVal.appendvars(numberOfVariables);
+
+        return retVal;
+    }
+
+    private Shelf newShelf() {
+
+        final Shelf retVal = new Shelf();
+
+        final ArrayDeque<Task> tmpTasks = retVal.tasks;
+        myShelves.add(tmpTasks);
+        NativeCleaner.INSTANCE.register(retVal, () -> {
+            myShelves.remove(tmpTasks);
+            TaskPool.drain(tmpTasks);
+        });
+
+        return retVal;
+    }
+
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.ojalgo.optimisation.Variable;
+
+import mosek.Env;
+import mosek.Task;
+
+/**
+ * A size bounded, least recently used, store of fully built MOSEK tasks in a local directory, using MOSEK's
+ * binary task format (writedata/readdata). Tasks are keyed by a content hash of everything that is pushed to
+ * the task - the structure as well as all numerical values - so a hit is an exact copy of what translating
+ * the model would produce, and the translation can be skipped. The directory may be shared by several
+ * processes; files are written to a temporary name and then atomically moved in place.
+ * <p>
+ * The store is disabled by default. Enable it with {@link #setDirectory(File, long)}.
+ *
+ * @author apete
+ */
+public final class TaskStore {
+
+    private static final String EXTENSION = ".task";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String TEMPORARY = ".tmp";
+    /**
+     * Change this whenever the translation changes in a way that makes previously stored tasks invalid.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The content hash (hex encoded SHA-256) of a translated model.
+     */
+    static String key(final List<Variable> variables, final ModelSnapshot snapshot) {
+
+        final MessageDigest tmpDigest;
+        try {
+            tmpDigest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException cause) {
+            throw new IllegalStateException(cause);
+        }
+
+        tmpDigest.update((byte) VERSION);
+
+        final byte[] tmpIntegers = new byte[variables.size()];
+        for (int j = 0; j < tmpIntegers.length; j++) {
+            tmpIntegers[j] = (byte) (variables.get(j).isInteger() ? 1 : 0);
+        }
+        tmpDigest.update(tmpIntegers);
+
+        snapshot.digest(tmpDigest);
+
+        final byte[] tmpHash = tmpDigest.digest();
+        final char[] retVal = new char[2 * tmpHash.length];
+        for (int b = 0; b < tmpHash.length; b++) {
+            retVal[2 * b] = HEX[(tmpHash[b] >> 4) & 0xF];
+            retVal[(2 * b) + 1] = HEX[tmpHash[b] & 0xF];
+        }
+        return new String(retVal);
+    }
+
+    private long myCapacity = 0L;
+    private Path myDirectory = null;
+    private long myEvictions = 0L;
+    private long myFailures = 0L;
+    private long myHits = 0L;
+    private long myMisses = 0L;
+    private long myWrites = 0L;
+
+    TaskStore() {
+        super();
+    }
+
+    /**
+     * Delete all stored tasks.
+     */
+    public synchronized void clear() {
+        if (myDirectory != null) {
+            for (final Path tmpFile : this.list()) {
+                if (this.delete(tmpFile)) {
+                    myEvictions++;
+                }
+            }
+        }
+    }
+
+    public synchronized long countEvictions() {
+        return myEvictions;
+    }
+
+    /**
+     * The number of tasks that could not be read or written. Failures are never propagated - the model is
+     * simply translated as if the store was disabled.
+     */
+    public synchronized long countFailures() {
+        return myFailures;
+    }
+
+    public synchronized long countHits() {
+        return myHits;
+    }
+
+    public synchronized long countMisses() {
+        return myMisses;
+    }
+
+    public synchronized long countWrites() {
+        return myWrites;
+    }
+
+    public synchronized long getCapacity() {
+        return myCapacity;
+    }
+
+    public synchronized File getDirectory() {
+        return myDirectory != null ? myDirectory.toFile() : null;
+    }
+
+    public synchronized boolean isEnabled() {
+        return (myDirectory != null) && (myCapacity > 0L);
+    }
+
+    /**
+     * @param directory Where to store the task files (created if necessary). null disables the store.
+     * @param capacity The maximum total size, in bytes, of the stored task files. The least recently used
+     *        files are deleted when exceeded. 0 disables the store.
+     */
+    public synchronized void setDirectory(final File directory, final long capacity) {
+
+        myCapacity = Math.max(0L, capacity);
+
+        if (directory != null) {
+            try {
+                myDirectory = Files.createDirectories(directory.toPath());
+            } catch (final IOException cause) {
+                throw new IllegalArgumentException("Cannot use directory: " + directory, cause);
+            }
+            this.evict();
+        } else {
+            myDirectory = null;
+        }
+    }
+
+    /**
+     * @return The total size, in bytes, of the stored task files
+     */
+    public synchronized long size() {
+        long retVal = 0L;
+        if (myDirectory != null) {
+            for (final Path tmpFile : this.list()) {
+                retVal += this.size(tmpFile);
+            }
+        }
+        return retVal;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TaskStore [directory=" + myDirectory + ", capacity=" + myCapacity + ", hits=" + myHits + ", misses=" + myMisses + ", writes=" + myWrites
+                + ", evictions=" + myEvictions + ", failures=" + myFailures + "]";
+    }
+
+    private boolean delete(final Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (final IOException cause) {
+            return false;
+        }
+    }
+
+    private synchronized Path directory() {
+        return myDirectory;
+    }
+
+    private void evict() {
+
+        final List<Path> tmpFiles = this.list();
+
+        long tmpTotal = 0L;
+        for (final Path tmpFile : tmpFiles) {
+            tmpTotal += this.size(tmpFile);
+        }
+
+        tmpFiles.sort(Comparator.comparingLong(this::lastModified));
+
+        for (int f = 0; (tmpTotal > myCapacity) && (f < tmpFiles.size()); f++) {
+            final Path tmpEldest = tmpFiles.get(f);
+            final long tmpSize = this.size(tmpEldest);
+            if (this.delete(tmpEldest)) {
+                tmpTotal -= tmpSize;
+                myEvictions++;
+            }
+        }
+    }
+
+    private synchronized void hit() {
+        myHits++;
+    }
+
+    private boolean isStored(final Path file) {
+        final String tmpName = file.getFileName().toString();
+        return tmpName.endsWith(EXTENSION) && !tmpName.endsWith(TEMPORARY + EXTENSION);
+    }
+
+    private long lastModified(final Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (final IOException cause) {
+            return 0L;
+        }
+    }
+
+    private List<Path> list() {
+        try (Stream<Path> tmpFiles = Files.list(myDirectory)) {
+            return tmpFiles.filter(f -> this.isStored(f)).collect(Collectors.toCollection(ArrayList::new));
+        } catch (final IOException cause) {
+            return new ArrayList<>();
+        }
+    }
+
+    private synchronized void miss(final boolean failed) {
+        myMisses++;
+        if (failed) {
+            myFailures++;
+        }
+    }
+
+    private long size(final Path file) {
+        try {
+            return Files.size(file);
+        } catch (final IOException cause) {
+            return 0L;
+        }
+    }
+
+    private synchronized void stored(final Path directory, final boolean written) {
+        if (written) {
+            myWrites++;
+        } else {
+            myFailures++;
+        }
+        if (directory.equals(myDirectory)) {
+            this.evict();
+        }
+    }
+
+    /**
+     * Read the stored task with that key into a new task, or return null if there is none (or it could not
+     * be read). The file is read without holding the store's lock - only the counters are synchronised.
+     */
+    Task load(final Env environment, final String key) {
+
+        final Path tmpDirectory = this.directory();
+        if (tmpDirectory == null) {
+            this.miss(false);
+            return null;
+        }
+
+        final Path tmpFile = tmpDirectory.resolve(key + EXTENSION);
+
+        if (!Files.isRegularFile(tmpFile)) {
+            this.miss(false);
+            return null;
+        }
+
+        final Task retVal = TaskPool.create(environment, 0, 0);
+        try {
+            retVal.readdata(tmpFile.toString());
+            Files.setLastModifiedTime(tmpFile, FileTime.fromMillis(System.currentTimeMillis()));
+            this.hit();
+            return retVal;
+        } catch (final RuntimeException | IOException cause) {
+            TaskPool.dispose(retVal);
+            this.delete(tmpFile);
+            this.miss(true);
+            return null;
+        }
+    }
+
+    /**
+     * Write the (fully built, not yet optimized) task to the store, and then evict the least recently used
+     * files if the capacity is exceeded. The file is written (to a temporary name, then atomically moved in
+     * place) without holding the store's lock - only the eviction and the counters are synchronised.
+     */
+    void store(final Task task, final String key) {
+
+        final Path tmpDirectory = this.directory();
+        if (tmpDirectory == null) {
+            return;
+        }
+
+        final Path tmpTarget = tmpDirectory.resolve(key + EXTENSION);
+        // MOSEK picks the file format from the extension, so it has to be the last part of the name
+        final Path tmpTemporary = tmpDirectory.resolve(key + "-" + Thread.currentThread().getId() + "-" + System.nanoTime() + TEMPORARY + EXTENSION);
+
+        boolean tmpWritten;
+        try {
+            task.writedata(tmpTemporary.toString());
+            Files.move(tmpTemporary, tmpTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmpWritten = true;
+        } catch (final RuntimeException | IOException cause) {
+            this.delete(tmpTemporary);
+            tmpWritten = false;
+        }
+
+        this.stored(tmpDirectory, tmpWritten);
+    }
+
+}
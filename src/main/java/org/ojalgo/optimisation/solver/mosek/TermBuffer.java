@@ -0,0 +1,262 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Arrays;
+
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.structure.Structure1D.IntIndex;
+import org.ojalgo.structure.Structure2D.IntRowColumn;
+
+/**
+ * Reusable, grow-only, primitive scratch buffers for extracting the linear and quadratic terms of an
+ * {@link Expression}. There is one instance per thread, so in steady state extraction does not allocate
+ * anything. (MOSEK's Java API derives the number of elements from the array lengths, so exact length copies
+ * are still made when the terms are pushed to a task.)
+ * <p>
+ * Quadratic terms are canonicalised, in a single pass, into the lower triangular form MOSEK expects: (i,j)
+ * and (j,i) are aggregated into one element and diagonal elements are doubled (MOSEK's quadratic terms are
+ * 0.5 x<sup>T</sup>Qx, ojAlgo's are x<sup>T</sup>Qx).
+ *
+ * @author apete
+ */
+final class TermBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final ThreadLocal<TermBuffer> LOCAL = ThreadLocal.withInitial(TermBuffer::new);
+
+    static TermBuffer local() {
+        return LOCAL.get();
+    }
+
+    private static long key(final int row, final int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private int myGeneration = 0;
+    private int[] myLinearColumns = new int[INITIAL_CAPACITY];
+    private double myLinearConstant = 0.0;
+    private int myLinearCount = 0;
+    private double[] myLinearValues = new double[INITIAL_CAPACITY];
+    private int[] myQuadraticColumns = new int[INITIAL_CAPACITY];
+    private int myQuadraticCount = 0;
+    private int[] myQuadraticRows = new int[INITIAL_CAPACITY];
+    private double[] myQuadraticValues = new double[INITIAL_CAPACITY];
+    /**
+     * Open addressing hash table from (row,column) to element index. A slot is only occupied if its stamp
+     * equals the current generation, so the table never has to be cleared.
+     */
+    private int[] mySlotIndices = new int[2 * INITIAL_CAPACITY];
+    private long[] mySlotKeys = new long[2 * INITIAL_CAPACITY];
+    private int[] mySlotStamps = new int[2 * INITIAL_CAPACITY];
+
+    TermBuffer() {
+        super();
+    }
+
+    int[] copyQuadraticColumns() {
+        return Arrays.copyOf(myQuadraticColumns, myQuadraticCount);
+    }
+
+    int[] copyQuadraticRows() {
+        return Arrays.copyOf(myQuadraticRows, myQuadraticCount);
+    }
+
+    double[] copyQuadraticValues() {
+        return Arrays.copyOf(myQuadraticValues, myQuadraticCount);
+    }
+
+    int countLinear() {
+        return myLinearCount;
+    }
+
+    int countQuadratic() {
+        return myQuadraticCount;
+    }
+
+    /**
+     * Extract the linear terms of the expression (replacing any previously extracted). Terms of fixed
+     * variables are not extracted but summed up to {@link #linearConstant()}.
+     */
+    TermBuffer linear(final Expression expression, final FreeVariables columns) {
+
+        myLinearCount = 0;
+        myLinearConstant = 0.0;
+
+        for (final IntIndex tmpKey : expression.getLinearKeySet()) {
+            if (tmpKey.index >= 0) {
+                final int tmpColumn = columns.column(tmpKey.index);
+                if (tmpColumn >= 0) {
+                    if (myLinearCount == myLinearColumns.length) {
+                        myLinearColumns = Arrays.copyOf(myLinearColumns, 2 * myLinearCount);
+                        myLinearValues = Arrays.copyOf(myLinearValues, 2 * myLinearCount);
+                    }
+                    myLinearColumns[myLinearCount] = tmpColumn;
+                    myLinearValues[myLinearCount] = expression.getAdjustedLinearFactor(tmpKey);
+                    myLinearCount++;
+                } else {
+                    myLinearConstant += expression.getAdjustedLinearFactor(tmpKey) * columns.value(tmpKey.index);
+                }
+            }
+        }
+
+        return this;
+    }
+
+    int linearColumn(final int term) {
+        return myLinearColumns[term];
+    }
+
+    /**
+     * @return The sum of the (linear) terms of fixed variables
+     */
+    double linearConstant() {
+        return myLinearConstant;
+    }
+
+    double linearValue(final int term) {
+        return myLinearValues[term];
+    }
+
+    void putLinearObjective(final TaskBackend task) {
+        if (myLinearCount > 0) {
+            task.putclist(Arrays.copyOf(myLinearColumns, myLinearCount), Arrays.copyOf(myLinearValues, myLinearCount));
+        }
+    }
+
+    void putLinearRow(final TaskBackend task, final int row) {
+        if (myLinearCount > 0) {
+            task.putarow(row, Arrays.copyOf(myLinearColumns, myLinearCount), Arrays.copyOf(myLinearValues, myLinearCount));
+        }
+    }
+
+    void putQuadraticConstraint(final TaskBackend task, final int row) {
+        if (myQuadraticCount > 0) {
+            task.putqconk(row, this.copyQuadraticRows(), this.copyQuadraticColumns(), this.copyQuadraticValues());
+        }
+    }
+
+    void putQuadraticObjective(final TaskBackend task) {
+        if (myQuadraticCount > 0) {
+            task.putqobj(this.copyQuadraticRows(), this.copyQuadraticColumns(), this.copyQuadraticValues());
+        }
+    }
+
+    /**
+     * Extract and canonicalise the quadratic terms of the expression (replacing any previously extracted).
+     * Terms involving fixed variables are ignored - the expression should already be
+     * {@link FreeVariables#reduce(Expression) reduced}.
+     */
+    TermBuffer quadratic(final Expression expression, final FreeVariables columns) {
+
+        myQuadraticCount = 0;
+        if (++myGeneration == 0) {
+            Arrays.fill(mySlotStamps, 0);
+            myGeneration = 1;
+        }
+
+        for (final IntRowColumn tmpKey : expression.getQuadraticKeySet()) {
+
+            final int tmpFirst = columns.column(tmpKey.row);
+            final int tmpSecond = columns.column(tmpKey.column);
+            if ((tmpFirst < 0) || (tmpSecond < 0)) {
+                continue;
+            }
+
+            final int tmpRow = Math.max(tmpFirst, tmpSecond);
+            final int tmpCol = Math.min(tmpFirst, tmpSecond);
+            final double tmpValue = (tmpRow == tmpCol ? 2.0 : 1.0) * expression.getAdjustedQuadraticFactor(tmpKey);
+
+            final int tmpSlot = this.slot(TermBuffer.key(tmpRow, tmpCol));
+            if (mySlotStamps[tmpSlot] == myGeneration) {
+                myQuadraticValues[mySlotIndices[tmpSlot]] += tmpValue;
+            } else {
+                if (myQuadraticCount == myQuadraticRows.length) {
+                    myQuadraticRows = Arrays.copyOf(myQuadraticRows, 2 * myQuadraticCount);
+                    myQuadraticColumns = Arrays.copyOf(myQuadraticColumns, 2 * myQuadraticCount);
+                    myQuadraticValues = Arrays.copyOf(myQuadraticValues, 2 * myQuadraticCount);
+                }
+                myQuadraticRows[myQuadraticCount] = tmpRow;
+                myQuadraticColumns[myQuadraticCount] = tmpCol;
+                myQuadraticValues[myQuadraticCount] = tmpValue;
+
+                mySlotStamps[tmpSlot] = myGeneration;
+                mySlotKeys[tmpSlot] = TermBuffer.key(tmpRow, tmpCol);
+                mySlotIndices[tmpSlot] = myQuadraticCount;
+
+                myQuadraticCount++;
+
+                if ((2 * myQuadraticCount) > mySlotKeys.length) {
+                    this.rehash();
+                }
+            }
+        }
+
+        return this;
+    }
+
+    int quadraticColumn(final int term) {
+        return myQuadraticColumns[term];
+    }
+
+    int quadraticRow(final int term) {
+        return myQuadraticRows[term];
+    }
+
+    double quadraticValue(final int term) {
+        return myQuadraticValues[term];
+    }
+
+    private void rehash() {
+
+        final int tmpCapacity = 2 * mySlotKeys.length;
+        mySlotKeys = new long[tmpCapacity];
+        mySlotIndices = new int[tmpCapacity];
+        mySlotStamps = new int[tmpCapacity];
+
+        for (int i = 0; i < myQuadraticCount; i++) {
+            final long tmpKey = TermBuffer.key(myQuadraticRows[i], myQuadraticColumns[i]);
+            final int tmpSlot = this.slot(tmpKey);
+            mySlotStamps[tmpSlot] = myGeneration;
+            mySlotKeys[tmpSlot] = tmpKey;
+            mySlotIndices[tmpSlot] = i;
+        }
+    }
+
+    /**
+     * @return The slot holding the key, or the empty slot where it should be inserted
+     */
+    private int slot(final long key) {
+
+        final int tmpMask = mySlotKeys.length - 1;
+
+        final long tmpHash = key * 0x9E3779B97F4A7C15L;
+        int retVal = (int) (tmpHash ^ (tmpHash >>> 32)) & tmpMask;
+
+        while ((mySlotStamps[retVal] == myGeneration) && (mySlotKeys[retVal] != key)) {
+            retVal = (retVal + 1) & tmpMask;
+        }
+
+        return retVal;
+    }
+
+}
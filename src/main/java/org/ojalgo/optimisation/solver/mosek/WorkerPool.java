@@ -0,0 +1,542 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.ojalgo.array.Primitive64Array;
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Optimisation;
+import org.ojalgo.optimisation.Variable;
+
+/**
+ * Solves models out-of-process, on a fixed size pool of worker JVMs each running a {@link RemoteWorker}, so
+ * that a native crash or a runaway solve can't take down this JVM. Models are extracted here (no MOSEK
+ * calls), sent to a worker in a compact columnar binary format, translated and solved there.
+ * <ul>
+ * <li>Health checks: idle workers are pinged periodically, and replaced if they don't answer in time.</li>
+ * <li>Restart on crash: a worker whose channel fails, or that exceeds the time limit of the solve (plus a
+ * grace period), is destroyed and replaced. That solve then fails.</li>
+ * <li>Back-pressure: at most {@link #getSize()} solves run at the same time, and a limited number may wait
+ * (for a limited time) for a worker to become available. Beyond that solves are rejected with a
+ * {@link RejectedExecutionException}.</li>
+ * </ul>
+ * Use {@link #getIntegration()} as the solver integration - it is not necessary to have MOSEK's native
+ * libraries available in this JVM. For testing, {@link #local(int)} creates a pool of stand-in workers
+ * running on threads in this JVM, connected with pipes, exercising the same protocol.
+ *
+ * @author apete
+ */
+public final class WorkerPool implements AutoCloseable {
+
+    public static final class Integration extends ExpressionsBasedModel.Integration<RemoteSolver> {
+
+        private final WorkerPool myPool;
+
+        Integration(final WorkerPool pool) {
+            super();
+            myPool = pool;
+        }
+
+        public RemoteSolver build(final ExpressionsBasedModel model) {
+
+            final FreeVariables tmpColumns = FreeVariables.of(model);
+            final List<Expression> tmpConstraints = model.constraints().collect(Collectors.toList());
+
+            final ModelSnapshot tmpSnapshot = ModelSnapshot.of(tmpColumns, tmpConstraints, model.objective(), model);
+
+            final List<Variable> tmpVariables = tmpColumns.getVariables();
+            final int[] tmpIntegers = new int[tmpVariables.size()];
+            int tmpNumberOfIntegers = 0;
+            for (int j = 0; j < tmpVariables.size(); j++) {
+                if (tmpVariables.get(j).isInteger()) {
+                    tmpIntegers[tmpNumberOfIntegers++] = j;
+                }
+            }
+
+            final WorkerProtocol.Request tmpRequest = new WorkerProtocol.Request(tmpSnapshot, Arrays.copyOf(tmpIntegers, tmpNumberOfIntegers),
+                    model.options.time_abort);
+
+            return new RemoteSolver(myPool, tmpRequest);
+        }
+
+        public boolean isCapable(final ExpressionsBasedModel model) {
+            return SolverMosek.INTEGRATION.isCapable(model);
+        }
+
+        @Override
+        protected boolean isSolutionMapped() {
+            return true;
+        }
+
+    }
+
+    public static final class RemoteSolver implements Optimisation.Solver {
+
+        private final WorkerPool myPool;
+        private final WorkerProtocol.Request myRequest;
+
+        RemoteSolver(final WorkerPool pool, final WorkerProtocol.Request request) {
+            super();
+            myPool = pool;
+            myRequest = request;
+        }
+
+        /**
+         * The kick-starter is not used.
+         */
+        public Optimisation.Result solve(final Optimisation.Result kickStarter) {
+            return myPool.solve(myRequest);
+        }
+
+    }
+
+    /**
+     * A connection to one worker.
+     */
+    private static abstract class Worker {
+
+        final DataInputStream input;
+        final DataOutputStream output;
+
+        Worker(final InputStream input, final OutputStream output) {
+            super();
+            this.input = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+            this.output = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        }
+
+        abstract void destroy();
+
+        abstract boolean isAlive();
+
+        /**
+         * Wait for the worker to announce itself.
+         */
+        void handshake() throws IOException {
+            if (input.readInt() != WorkerProtocol.MAGIC) {
+                throw new IOException("Not a worker");
+            }
+        }
+
+    }
+
+    private static final class LocalWorker extends Worker {
+
+        private final PipedInputStream myRequests;
+        private final PipedOutputStream myReplies;
+        private final Thread myThread;
+
+        LocalWorker(final PipedInputStream replies, final PipedOutputStream requests, final PipedInputStream requestsEnd,
+                final PipedOutputStream repliesEnd, final Function<WorkerProtocol.Request, Optimisation.Result> solver) {
+
+            super(replies, requests);
+
+            myRequests = requestsEnd;
+            myReplies = repliesEnd;
+
+            myThread = new Thread(() -> {
+                try {
+                    RemoteWorker.serve(requestsEnd, repliesEnd, solver);
+                } catch (final IOException cause) {
+                    // The channel was closed
+                }
+            }, "MOSEK-local-worker");
+            myThread.setDaemon(true);
+            myThread.start();
+        }
+
+        @Override
+        void destroy() {
+            myThread.interrupt();
+            try {
+                myRequests.close();
+                myReplies.close();
+            } catch (final IOException cause) {
+                // Nothing more to do
+            }
+        }
+
+        @Override
+        boolean isAlive() {
+            return myThread.isAlive();
+        }
+
+    }
+
+    private static final class ProcessWorker extends Worker {
+
+        private final Process myProcess;
+
+        ProcessWorker(final Process process) {
+            super(process.getInputStream(), process.getOutputStream());
+            myProcess = process;
+        }
+
+        @Override
+        void destroy() {
+            myProcess.destroyForcibly();
+        }
+
+        @Override
+        boolean isAlive() {
+            return myProcess.isAlive();
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface WorkerFactory {
+
+        Worker newWorker() throws IOException;
+
+    }
+
+    /**
+     * How long a worker may take beyond the time limit of the solve, before it's considered a runaway.
+     */
+    private static final long GRACE_PERIOD = 10_000L;
+    private static final long HEALTH_CHECK_INTERVAL = 10_000L;
+    private static final long PING_TIMEOUT = 5_000L;
+    private static final long STARTUP_TIMEOUT = 60_000L;
+
+    /**
+     * Stand-in workers, running {@link RemoteWorker} on threads in this JVM, solving with {@link SolverMosek}.
+     */
+    public static WorkerPool local(final int size) {
+        return WorkerPool.local(size, RemoteWorker::solve);
+    }
+
+    /**
+     * Worker JVMs started with the same java executable and class path as this JVM.
+     *
+     * @param jvmArguments Additional arguments for the worker JVMs, e.g. "-Xmx2g" or
+     *        "-Djava.library.path=..."
+     */
+    public static WorkerPool processes(final int size, final List<String> jvmArguments) {
+
+        final List<String> tmpCommand = new ArrayList<>();
+        tmpCommand.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        tmpCommand.addAll(jvmArguments);
+        tmpCommand.add("-cp");
+        tmpCommand.add(System.getProperty("java.class.path"));
+        tmpCommand.add(RemoteWorker.class.getName());
+
+        final ProcessBuilder tmpBuilder = new ProcessBuilder(tmpCommand).redirectError(ProcessBuilder.Redirect.INHERIT);
+
+        return new WorkerPool(size, () -> new ProcessWorker(tmpBuilder.start()));
+    }
+
+    /**
+     * Stand-in workers with a custom solver - for testing without MOSEK.
+     */
+    static WorkerPool local(final int size, final Function<WorkerProtocol.Request, Optimisation.Result> solver) {
+        return new WorkerPool(size, () -> {
+            final PipedOutputStream tmpRequests = new PipedOutputStream();
+            final PipedInputStream tmpRequestsEnd = new PipedInputStream(tmpRequests, 1 << 16);
+            final PipedOutputStream tmpRepliesEnd = new PipedOutputStream();
+            final PipedInputStream tmpReplies = new PipedInputStream(tmpRepliesEnd, 1 << 16);
+            return new LocalWorker(tmpReplies, tmpRequests, tmpRequestsEnd, tmpRepliesEnd, solver);
+        });
+    }
+
+    private final ExecutorService myExchanges;
+    private final WorkerFactory myFactory;
+    private final ScheduledExecutorService myHealthCheck;
+    private final BlockingQueue<Worker> myIdle = new LinkedBlockingQueue<>();
+    private final Integration myIntegration;
+    private volatile int myMaxWaiting;
+    private final AtomicInteger myMissing = new AtomicInteger();
+    private final Semaphore myPermits;
+    private final AtomicLong myRejections = new AtomicLong();
+    private final AtomicLong myRestarts = new AtomicLong();
+    private final int mySize;
+    private final AtomicLong mySolves = new AtomicLong();
+    private volatile long myWaitTimeout = 60_000L;
+
+    WorkerPool(final int size, final WorkerFactory factory) {
+
+        super();
+
+        mySize = Math.max(1, size);
+        myMaxWaiting = 4 * mySize;
+        myFactory = factory;
+        myPermits = new Semaphore(mySize + myMaxWaiting);
+        myIntegration = new Integration(this);
+
+        final AtomicInteger tmpCounter = new AtomicInteger();
+        myExchanges = Executors.newCachedThreadPool(runnable -> {
+            final Thread retVal = new Thread(runnable, "MOSEK-worker-exchange-" + tmpCounter.incrementAndGet());
+            retVal.setDaemon(true);
+            return retVal;
+        });
+        myHealthCheck = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread retVal = new Thread(runnable, "MOSEK-worker-health");
+            retVal.setDaemon(true);
+            return retVal;
+        });
+
+        myMissing.set(mySize);
+        this.startMissing();
+
+        myHealthCheck.scheduleWithFixedDelay(this::checkHealth, HEALTH_CHECK_INTERVAL, HEALTH_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ping every idle worker, replace those that don't answer, and start any workers that are missing (that
+     * could not be started before).
+     *
+     * @return The number of workers replaced
+     */
+    public int checkHealth() {
+
+        final List<Worker> tmpIdle = new ArrayList<>();
+        myIdle.drainTo(tmpIdle);
+
+        int retVal = 0;
+        for (final Worker tmpWorker : tmpIdle) {
+            if (this.ping(tmpWorker)) {
+                myIdle.offer(tmpWorker);
+            } else {
+                this.replace(tmpWorker);
+                retVal++;
+            }
+        }
+
+        this.startMissing();
+
+        return retVal;
+    }
+
+    /**
+     * Shut down all idle workers. Workers busy solving are destroyed when they're done.
+     */
+    public void close() {
+
+        myHealthCheck.shutdownNow();
+
+        final List<Worker> tmpIdle = new ArrayList<>();
+        myIdle.drainTo(tmpIdle);
+        for (final Worker tmpWorker : tmpIdle) {
+            try {
+                tmpWorker.output.writeByte(WorkerProtocol.SHUTDOWN);
+                tmpWorker.output.flush();
+            } catch (final IOException cause) {
+                // Destroyed anyway
+            }
+            tmpWorker.destroy();
+        }
+
+        myExchanges.shutdown();
+    }
+
+    public long countRejections() {
+        return myRejections.get();
+    }
+
+    public long countRestarts() {
+        return myRestarts.get();
+    }
+
+    public long countSolves() {
+        return mySolves.get();
+    }
+
+    public Integration getIntegration() {
+        return myIntegration;
+    }
+
+    public int getSize() {
+        return mySize;
+    }
+
+    /**
+     * @param maxWaiting The maximum number of solves waiting for a worker - when that many are waiting,
+     *        further solves are rejected immediately. The default is 4 times the size.
+     * @param waitTimeout The maximum time (milliseconds) a solve waits for a worker before it's rejected.
+     *        The default is 60s.
+     */
+    public void setQueueLimits(final int maxWaiting, final long waitTimeout) {
+
+        final int tmpMaxWaiting = Math.max(0, maxWaiting);
+        final int tmpChange = tmpMaxWaiting - myMaxWaiting;
+        myMaxWaiting = tmpMaxWaiting;
+        if (tmpChange > 0) {
+            myPermits.release(tmpChange);
+        } else if (tmpChange < 0) {
+            myPermits.acquireUninterruptibly(-tmpChange);
+        }
+
+        myWaitTimeout = Math.max(0L, waitTimeout);
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerPool [size=" + mySize + ", idle=" + myIdle.size() + ", solves=" + mySolves + ", restarts=" + myRestarts + ", rejections="
+                + myRejections + "]";
+    }
+
+    Optimisation.Result solve(final WorkerProtocol.Request request) {
+
+        if (!myPermits.tryAcquire()) {
+            myRejections.incrementAndGet();
+            throw new RejectedExecutionException("Too many solves waiting for a worker");
+        }
+
+        try {
+
+            final Worker tmpWorker;
+            try {
+                tmpWorker = myIdle.poll(myWaitTimeout, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException cause) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(cause);
+            }
+            if (tmpWorker == null) {
+                myRejections.incrementAndGet();
+                throw new RejectedExecutionException("No worker available within " + myWaitTimeout + "ms");
+            }
+
+            mySolves.incrementAndGet();
+
+            final Future<Optimisation.Result> tmpExchange = myExchanges.submit(() -> WorkerPool.exchange(tmpWorker, request));
+            try {
+
+                final long tmpTimeout = Math.min(request.timeLimit, Long.MAX_VALUE - GRACE_PERIOD) + GRACE_PERIOD;
+                final Optimisation.Result retVal = tmpExchange.get(tmpTimeout, TimeUnit.MILLISECONDS);
+                myIdle.offer(tmpWorker);
+                return retVal;
+
+            } catch (final InterruptedException cause) {
+                Thread.currentThread().interrupt();
+                this.replace(tmpWorker);
+            } catch (final ExecutionException | TimeoutException cause) {
+                // Crashed, or a runaway
+                this.replace(tmpWorker);
+            }
+
+            return new Optimisation.Result(Optimisation.State.FAILED, Double.NaN, Primitive64Array.make(request.snapshot.countVariables()));
+
+        } finally {
+            myPermits.release();
+        }
+    }
+
+    private static Optimisation.Result exchange(final Worker worker, final WorkerProtocol.Request request) throws IOException {
+
+        WorkerProtocol.writeRequest(worker.output, request);
+
+        final byte tmpType = worker.input.readByte();
+        if (tmpType == WorkerProtocol.RESULT) {
+            return WorkerProtocol.readResult(worker.input);
+        } else if (tmpType == WorkerProtocol.ERROR) {
+            // The worker itself is fine - the message is of no further use here
+            worker.input.readUTF();
+            return new Optimisation.Result(Optimisation.State.FAILED, Double.NaN, Primitive64Array.make(request.snapshot.countVariables()));
+        } else {
+            throw new IOException("Unexpected reply " + tmpType);
+        }
+    }
+
+    private boolean ping(final Worker worker) {
+
+        if (!worker.isAlive()) {
+            return false;
+        }
+
+        final Future<Boolean> tmpPing = myExchanges.submit(() -> {
+            worker.output.writeByte(WorkerProtocol.PING);
+            worker.output.flush();
+            return worker.input.readByte() == WorkerProtocol.PONG;
+        });
+
+        try {
+            return tmpPing.get(PING_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (final ExecutionException | TimeoutException cause) {
+            return false;
+        }
+    }
+
+    private void replace(final Worker worker) {
+        worker.destroy();
+        myRestarts.incrementAndGet();
+        myMissing.incrementAndGet();
+        this.startMissing();
+    }
+
+    private void startMissing() {
+        while (myMissing.getAndDecrement() > 0) {
+            Worker tmpWorker = null;
+            try {
+                tmpWorker = myFactory.newWorker();
+                final Worker tmpStarted = tmpWorker;
+                myExchanges.submit(() -> {
+                    tmpStarted.handshake();
+                    return null;
+                }).get(STARTUP_TIMEOUT, TimeUnit.MILLISECONDS);
+                myIdle.offer(tmpWorker);
+            } catch (final IOException | ExecutionException | TimeoutException | InterruptedException cause) {
+                if (tmpWorker != null) {
+                    tmpWorker.destroy();
+                }
+                if (cause instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                // Try again at the next health check
+                myMissing.incrementAndGet();
+                return;
+            }
+        }
+        myMissing.incrementAndGet();
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.ojalgo.array.Primitive64Array;
+import org.ojalgo.optimisation.Optimisation;
+
+/**
+ * The messages exchanged between a {@link WorkerPool} and its {@link RemoteWorker}s. The worker starts by
+ * writing {@link #MAGIC}. Then each request is a type byte, possibly followed by a body, and gets exactly
+ * one reply: {@link #PING} is answered with {@link #PONG}, {@link #SOLVE} with {@link #RESULT} or
+ * {@link #ERROR}. {@link #SHUTDOWN} (or end of stream) terminates the worker. The model is sent as a
+ * {@link ModelSnapshot} in its columnar binary format, followed by the integer columns.
+ *
+ * @author apete
+ */
+final class WorkerProtocol {
+
+    static final class Request {
+
+        final int[] integers;
+        final ModelSnapshot snapshot;
+        /**
+         * Milliseconds
+         */
+        final long timeLimit;
+
+        Request(final ModelSnapshot snapshot, final int[] integers, final long timeLimit) {
+            super();
+            this.snapshot = snapshot;
+            this.integers = integers;
+            this.timeLimit = timeLimit;
+        }
+
+    }
+
+    static final byte ERROR = 13;
+    static final int MAGIC = 0x4D4F534B;
+    static final byte PING = 1;
+    static final byte PONG = 11;
+    static final byte RESULT = 12;
+    static final byte SHUTDOWN = 3;
+    static final byte SOLVE = 2;
+
+    static Request readRequest(final DataInputStream input) throws IOException {
+
+        final long tmpTimeLimit = input.readLong();
+
+        final int[] tmpIntegers = new int[input.readInt()];
+        for (int i = 0; i < tmpIntegers.length; i++) {
+            tmpIntegers[i] = input.readInt();
+        }
+
+        final ModelSnapshot tmpSnapshot = ModelSnapshot.read(input);
+
+        return new Request(tmpSnapshot, tmpIntegers, tmpTimeLimit);
+    }
+
+    static Optimisation.Result readResult(final DataInputStream input) throws IOException {
+
+        final Optimisation.State tmpState = Optimisation.State.valueOf(input.readUTF());
+        final double tmpValue = input.readDouble();
+
+        final double[] tmpSolution = new double[input.readInt()];
+        for (int j = 0; j < tmpSolution.length; j++) {
+            tmpSolution[j] = input.readDouble();
+        }
+
+        return new Optimisation.Result(tmpState, tmpValue, Primitive64Array.wrap(tmpSolution));
+    }
+
+    static void writeRequest(final DataOutputStream output, final Request request) throws IOException {
+
+        output.writeByte(SOLVE);
+        output.writeLong(request.timeLimit);
+
+        output.writeInt(request.integers.length);
+        for (int i = 0; i < request.integers.length; i++) {
+            output.writeInt(request.integers[i]);
+        }
+
+        request.snapshot.write(output);
+
+        output.flush();
+    }
+
+    static void writeResult(final DataOutputStream output, final Optimisation.Result result) throws IOException {
+
+        output.writeByte(RESULT);
+        output.writeUTF(result.getState().name());
+        output.writeDouble(result.getValue());
+
+        final int tmpCount = (int) result.count();
+        output.writeInt(tmpCount);
+        for (int j = 0; j < tmpCount; j++) {
+            output.writeDouble(result.doubleValue(j));
+        }
+
+        output.flush();
+    }
+
+    private WorkerProtocol() {
+        super();
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ojalgo.netio.BasicLogger;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+
+/**
+ * Measures how the throughput of {@link BatchSolver} scales with the parallelism, from 1 to the number of
+ * available cores. Requires MOSEK to be installed, just as {@link ExampleMosek} does.
+ *
+ * @author apete
+ */
+public class BatchThroughput {
+
+    static final int NUMBER_OF_MODELS = 200;
+
+    public static void main(final String[] args) {
+
+        ExpressionsBasedModel.addPreferredSolver(SolverMosek.INTEGRATION);
+
+        final List<ExpressionsBasedModel> tmpModels = new ArrayList<>(NUMBER_OF_MODELS);
+        for (int m = 0; m < NUMBER_OF_MODELS; m++) {
+            tmpModels.add(GeneratedModels.sparseLP(2_000, 1_000, 0.01, m));
+        }
+
+        final int tmpCores = Runtime.getRuntime().availableProcessors();
+
+        // Warm up
+        try (BatchSolver tmpBatch = SolverMosek.INTEGRATION.newBatchSolver(tmpCores)) {
+            tmpBatch.minimiseAll(tmpModels);
+        }
+
+        for (int p = 1; p <= tmpCores; p *= 2) {
+            try (BatchSolver tmpBatch = SolverMosek.INTEGRATION.newBatchSolver(p)) {
+
+                final long tmpStart = System.nanoTime();
+                tmpBatch.minimiseAll(tmpModels);
+                final double tmpSeconds = (System.nanoTime() - tmpStart) / 1_000_000_000.0;
+
+                BasicLogger.debug("Parallelism {} ({} threads per task): {} models/s", tmpBatch.getParallelism(), tmpBatch.getThreadsPerTask(),
+                        NUMBER_OF_MODELS / tmpSeconds);
+            }
+        }
+    }
+
+    BatchThroughput() {
+        super();
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks, reporting allocation rates (the equivalent of -prof gc). Without arguments all
+ * benchmarks are run. Pass "stand-in" to only run translation without native calls - that works without a
+ * MOSEK installation. Any other argument is used as a benchmark name regexp.
+ *
+ * @author apete
+ */
+public class Benchmarks {
+
+    public static void main(final String[] args) throws RunnerException {
+
+        final OptionsBuilder tmpBuilder = new OptionsBuilder();
+        tmpBuilder.addProfiler(GCProfiler.class);
+
+        if (args.length == 0) {
+            tmpBuilder.include(TranslationBenchmark.class.getSimpleName());
+            tmpBuilder.include(SolveBenchmark.class.getSimpleName());
+        } else if ("stand-in".equals(args[0])) {
+            tmpBuilder.include(TranslationBenchmark.class.getSimpleName());
+            tmpBuilder.param("target", TranslationBenchmark.Target.STAND_IN.name());
+        } else {
+            for (final String tmpPattern : args) {
+                tmpBuilder.include(tmpPattern);
+            }
+        }
+
+        final Options tmpOptions = tmpBuilder.build();
+
+        new Runner(tmpOptions).run();
+    }
+
+    Benchmarks() {
+        super();
+    }
+
+}
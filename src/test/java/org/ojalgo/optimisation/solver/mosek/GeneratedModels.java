@@ -0,0 +1,164 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Random;
+
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Variable;
+
+/**
+ * Randomly generated, always feasible, models of configurable size. Used for timing and benchmarking the
+ * translation to MOSEK.
+ *
+ * @author apete
+ */
+abstract class GeneratedModels {
+
+    /**
+     * A long-only, fully invested, minimum variance portfolio with a dense (positive definite) covariance
+     * matrix.
+     */
+    static ExpressionsBasedModel denseQP(final int numberOfAssets, final long seed) {
+
+        final Random tmpRandom = new Random(seed);
+
+        final int tmpNumberOfFactors = Math.max(1, numberOfAssets / 10);
+        final double[][] tmpExposures = new double[numberOfAssets][tmpNumberOfFactors];
+        for (int i = 0; i < numberOfAssets; i++) {
+            for (int k = 0; k < tmpNumberOfFactors; k++) {
+                tmpExposures[i][k] = tmpRandom.nextGaussian() / tmpNumberOfFactors;
+            }
+        }
+
+        final ExpressionsBasedModel retVal = new ExpressionsBasedModel();
+
+        final Variable[] tmpVariables = new Variable[numberOfAssets];
+        for (int i = 0; i < numberOfAssets; i++) {
+            tmpVariables[i] = retVal.addVariable("W" + i).lower(0).upper(1);
+        }
+
+        final Expression tmpBudget = retVal.addExpression("Budget").level(1);
+        for (int i = 0; i < numberOfAssets; i++) {
+            tmpBudget.set(tmpVariables[i], 1);
+        }
+
+        final Expression tmpRisk = retVal.addExpression("Risk").weight(1);
+        for (int i = 0; i < numberOfAssets; i++) {
+            for (int j = 0; j < numberOfAssets; j++) {
+                double tmpCovariance = i == j ? 0.01 : 0.0;
+                for (int k = 0; k < tmpNumberOfFactors; k++) {
+                    tmpCovariance += tmpExposures[i][k] * tmpExposures[j][k];
+                }
+                tmpRisk.set(tmpVariables[i], tmpVariables[j], tmpCovariance);
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * A market split problem (as the MIPLIB markshare models): 10 * (numberOfConstraints - 1) binary
+     * variables, and each constraint is to be met exactly, with the deviation minimised. Notoriously hard for
+     * branch-and-bound already with 5 or 6 constraints - for tests that need a solve that does not finish by
+     * itself.
+     */
+    static ExpressionsBasedModel markshare(final int numberOfConstraints, final long seed) {
+
+        final Random tmpRandom = new Random(seed);
+
+        final ExpressionsBasedModel retVal = new ExpressionsBasedModel();
+
+        final int tmpNumberOfVariables = 10 * (numberOfConstraints - 1);
+        final Variable[] tmpVariables = new Variable[tmpNumberOfVariables];
+        for (int j = 0; j < tmpNumberOfVariables; j++) {
+            tmpVariables[j] = retVal.addVariable("X" + j).binary();
+        }
+
+        for (int i = 0; i < numberOfConstraints; i++) {
+            final Variable tmpOver = retVal.addVariable("O" + i).lower(0).weight(1);
+            final Variable tmpUnder = retVal.addVariable("U" + i).lower(0).weight(1);
+            final Expression tmpConstraint = retVal.addExpression("C" + i);
+            int tmpSum = 0;
+            for (int j = 0; j < tmpNumberOfVariables; j++) {
+                final int tmpFactor = tmpRandom.nextInt(100);
+                tmpConstraint.set(tmpVariables[j], tmpFactor);
+                tmpSum += tmpFactor;
+            }
+            tmpConstraint.set(tmpOver, -1);
+            tmpConstraint.set(tmpUnder, 1);
+            tmpConstraint.level(tmpSum / 2);
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Same as {@link #sparseLP(int, int, double, long)} but with every other variable integer.
+     */
+    static ExpressionsBasedModel sparseMIP(final int numberOfConstraints, final int numberOfVariables, final double density, final long seed) {
+
+        final ExpressionsBasedModel retVal = GeneratedModels.sparseLP(numberOfConstraints, numberOfVariables, density, seed);
+
+        for (int j = 0; j < numberOfVariables; j += 2) {
+            retVal.getVariable(j).integer(true);
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Each constraint row gets (on average) density * numberOfVariables nonzeros, and every row is satisfied
+     * by the all-ones vector.
+     */
+    static ExpressionsBasedModel sparseLP(final int numberOfConstraints, final int numberOfVariables, final double density, final long seed) {
+
+        final Random tmpRandom = new Random(seed);
+
+        final ExpressionsBasedModel retVal = new ExpressionsBasedModel();
+
+        final Variable[] tmpVariables = new Variable[numberOfVariables];
+        for (int j = 0; j < numberOfVariables; j++) {
+            tmpVariables[j] = retVal.addVariable("X" + j).lower(0).upper(10).weight(tmpRandom.nextDouble() - 0.5);
+        }
+
+        final int tmpNonzerosPerRow = Math.max(1, (int) Math.round(density * numberOfVariables));
+
+        for (int i = 0; i < numberOfConstraints; i++) {
+            final Expression tmpConstraint = retVal.addExpression("C" + i);
+            double tmpActivity = 0.0;
+            for (int k = 0; k < tmpNonzerosPerRow; k++) {
+                final Variable tmpVariable = tmpVariables[tmpRandom.nextInt(numberOfVariables)];
+                if (tmpConstraint.get(tmpVariable).signum() == 0) {
+                    final double tmpFactor = 1.0 + tmpRandom.nextInt(9);
+                    tmpConstraint.set(tmpVariable, tmpFactor);
+                    tmpActivity += tmpFactor;
+                }
+            }
+            tmpConstraint.upper(tmpActivity + tmpNonzerosPerRow);
+        }
+
+        return retVal;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Optimisation;
+
+/**
+ * Tasks retained per owner must be disposed when the owner is garbage collected without having been
+ * released - counted with {@link TaskPool#countLiveTasks()}.
+ *
+ * @author apete
+ */
+public class IncrementalTasksTest {
+
+    /**
+     * Run the garbage collector until the number of live tasks is as expected, or give up after a while. The
+     * cleaner thread disposes tasks asynchronously.
+     */
+    static void assertLiveTasks(final long expected) throws InterruptedException {
+        for (int i = 0; (i < 200) && (TaskPool.countLiveTasks() != expected); i++) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        Assertions.assertEquals(expected, TaskPool.countLiveTasks());
+    }
+
+    @AfterEach
+    public void restore() {
+        SolverMosek.INTEGRATION.setIncremental(false);
+        SolverMosek.INTEGRATION.setNodeMode(false);
+        ExpressionsBasedModel.removeIntegration(SolverMosek.INTEGRATION);
+        SolverMosek.INTEGRATION.getTaskPool().setCapacity(4);
+    }
+
+    @BeforeEach
+    public void setup() {
+        MosekTests.assumeInstalled();
+        SolverMosek.INTEGRATION.getTaskPool().setCapacity(0);
+    }
+
+    @Test
+    public void testCollectedOwners() throws InterruptedException {
+
+        final long tmpBaseline = TaskPool.countLiveTasks();
+
+        SolverMosek.INTEGRATION.setIncremental(true);
+
+        for (int m = 0; m < 10; m++) {
+
+            final ExpressionsBasedModel tmpModel = GeneratedModels.sparseLP(20, 30, 0.2, m);
+
+            final SolverMosek tmpSolver = SolverMosek.INTEGRATION.build(tmpModel);
+            try {
+                Assertions.assertTrue(tmpSolver.solve(null).getState().isOptimal());
+            } finally {
+                tmpSolver.dispose();
+            }
+        }
+
+        // Retained, one per model, none released
+        Assertions.assertEquals(tmpBaseline + 10L, TaskPool.countLiveTasks());
+
+        IncrementalTasksTest.assertLiveTasks(tmpBaseline);
+    }
+
+    /**
+     * Node mode tasks are retained per thread, but disposed when the branch-and-bound has finished - without
+     * waiting for the threads to die.
+     */
+    @Test
+    public void testNodeTasksAfterBranchAndBound() {
+
+        final long tmpBaseline = TaskPool.countLiveTasks();
+
+        SolverMosek.INTEGRATION.setNodeMode(true);
+        ExpressionsBasedModel.addPreferredSolver(SolverMosek.INTEGRATION);
+
+        final ExpressionsBasedModel tmpModel = GeneratedModels.sparseMIP(20, 30, 0.2, 0L);
+        Assertions.assertTrue(tmpModel.minimise().getState().isFeasible());
+
+        Assertions.assertEquals(tmpBaseline, TaskPool.countLiveTasks());
+    }
+
+    @Test
+    public void testReleasedOwner() throws InterruptedException {
+
+        final long tmpBaseline = TaskPool.countLiveTasks();
+
+        SolverMosek.INTEGRATION.setIncremental(true);
+
+        final ExpressionsBasedModel tmpModel = GeneratedModels.sparseLP(20, 30, 0.2, 0L);
+
+        for (int r = 0; r < 3; r++) {
+            final SolverMosek tmpSolver = SolverMosek.INTEGRATION.build(tmpModel);
+            try {
+                final Optimisation.Result tmpResult = tmpSolver.solve(null);
+                Assertions.assertTrue(tmpResult.getState().isOptimal());
+            } finally {
+                tmpSolver.dispose();
+            }
+            // The same task every time
+            Assertions.assertEquals(tmpBaseline + 1L, TaskPool.countLiveTasks());
+        }
+
+        SolverMosek.INTEGRATION.release(tmpModel);
+
+        Assertions.assertEquals(tmpBaseline, TaskPool.countLiveTasks());
+    }
+
+}
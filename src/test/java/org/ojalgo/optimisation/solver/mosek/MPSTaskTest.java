@@ -0,0 +1,101 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ojalgo.optimisation.Optimisation;
+
+/**
+ * @author apete
+ */
+public class MPSTaskTest {
+
+    /**
+     * min -x - y s.t. x + 2y &le; 4, 3x + y &le; 6, 0 &le; z &le; 1 with optimum x = 1.6, y = 1.2, z = 0
+     */
+    static final String[] TINY = { "NAME          TINY", "ROWS", " N  COST", " L  LIM1", " L  LIM2", "COLUMNS", "    X         COST      -1.0   LIM1      1.0",
+            "    X         LIM2      3.0", "    Y         COST      -1.0   LIM1      2.0", "    Y         LIM2      1.0", "    Z         COST      1.0", "RHS",
+            "    RHS       LIM1      4.0   LIM2      6.0", "BOUNDS", " UP BND       Z         1.0", "ENDATA" };
+
+    static File write(final List<String> lines) throws IOException {
+        final File retVal = File.createTempFile("tiny", ".mps");
+        retVal.deleteOnExit();
+        Files.write(retVal.toPath(), lines, StandardCharsets.ISO_8859_1);
+        return retVal;
+    }
+
+    @BeforeEach
+    public void assumeMosek() {
+        MosekTests.assumeInstalled();
+    }
+
+    @Test
+    public void testSolutionLengthAndValues() throws IOException {
+
+        final File tmpFile = MPSTaskTest.write(Arrays.asList(TINY));
+
+        try (MPSTask tmpTask = MPSTask.load(tmpFile, new Optimisation.Options())) {
+
+            Assertions.assertEquals(3, tmpTask.countVariables());
+            Assertions.assertEquals(2, tmpTask.countConstraints());
+
+            final Optimisation.Result tmpResult = tmpTask.solve();
+
+            Assertions.assertTrue(tmpResult.getState().isOptimal());
+            Assertions.assertEquals(3L, tmpResult.count());
+            Assertions.assertEquals(-2.8, tmpResult.getValue(), 1E-6);
+
+            final Map<String, Double> tmpSolution = tmpTask.toNamedSolution(tmpResult);
+            Assertions.assertEquals(1.6, tmpSolution.get("X"), 1E-6);
+            Assertions.assertEquals(1.2, tmpSolution.get("Y"), 1E-6);
+            Assertions.assertEquals(0.0, tmpSolution.get("Z"), 1E-6);
+            Assertions.assertEquals(1.2, tmpResult.doubleValue(tmpTask.indexOfVariable("Y")), 1E-6);
+        }
+    }
+
+    /**
+     * A section the loader does not handle (here SOS) must fail the load, rather than be ignored.
+     */
+    @Test
+    public void testUnsupportedSection() throws IOException {
+
+        final List<String> tmpLines = new ArrayList<>(Arrays.asList(TINY));
+        tmpLines.addAll(tmpLines.size() - 1, Arrays.asList("SOS", " S1 SOS       SET1", "    SET1      X         1.0", "    SET1      Y         2.0"));
+        final File tmpFile = MPSTaskTest.write(tmpLines);
+
+        final UncheckedIOException tmpThrown = Assertions.assertThrows(UncheckedIOException.class, () -> MPSTask.load(tmpFile, new Optimisation.Options()));
+        Assertions.assertEquals("Unsupported MPS section: SOS", tmpThrown.getCause().getMessage());
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+
+/**
+ * The kinds of generated models used by the benchmarks. The size parameter is the number of variables.
+ *
+ * @author apete
+ */
+enum ModelKind {
+
+    DENSE_QP {
+
+        @Override
+        ExpressionsBasedModel make(final int size) {
+            return GeneratedModels.denseQP(size, 1L);
+        }
+
+    },
+    SPARSE_LP {
+
+        @Override
+        ExpressionsBasedModel make(final int size) {
+            return GeneratedModels.sparseLP(2 * size, size, Math.min(1.0, 10.0 / size), 1L);
+        }
+
+    },
+    SPARSE_MIP {
+
+        @Override
+        ExpressionsBasedModel make(final int size) {
+            return GeneratedModels.sparseMIP(size, size, Math.min(1.0, 10.0 / size), 1L);
+        }
+
+    };
+
+    abstract ExpressionsBasedModel make(int size);
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import org.junit.jupiter.api.Assumptions;
+
+/**
+ * Tests that need a MOSEK installation (native library and licence) call {@link #assumeInstalled()} first -
+ * they are skipped, rather than failed, on machines without one.
+ *
+ * @author apete
+ */
+final class MosekTests {
+
+    static void assumeInstalled() {
+        boolean tmpInstalled;
+        try {
+            SolverMosek.INTEGRATION.getEnvironment();
+            tmpInstalled = true;
+        } catch (final LinkageError | RuntimeException cause) {
+            tmpInstalled = false;
+        }
+        Assumptions.assumeTrue(tmpInstalled, "MOSEK is not installed");
+    }
+
+    private MosekTests() {
+        super();
+    }
+
+}
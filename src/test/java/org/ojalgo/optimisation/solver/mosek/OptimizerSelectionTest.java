@@ -0,0 +1,166 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ojalgo.optimisation.Optimisation;
+import org.ojalgo.optimisation.solver.mosek.OptimizerSelection.Features;
+import org.ojalgo.optimisation.solver.mosek.OptimizerSelection.Optimizer;
+
+/**
+ * Selection over a seeded history, with {@link Features} made up rather than derived from a task - no
+ * native library required.
+ *
+ * @author apete
+ */
+public class OptimizerSelectionTest {
+
+    static final Features COLD = new Features("LP", false, 1_000L, "LP-cold-nz9-d-2");
+    static final Features LARGE = new Features("LP", false, 1_000_000L, "LP-cold-nz19-d-4");
+    static final Features WARM = new Features("LP", true, 1_000L, "LP-warm-nz9-d-2");
+
+    static void record(final OptimizerSelection selection, final Features features, final Optimizer optimizer, final double seconds) {
+        selection.record(features, optimizer, (long) (seconds * 1_000_000_000.0), Optimisation.State.OPTIMAL);
+    }
+
+    /**
+     * Cold: crossover fastest. Warm: crossover is fastest again, but not a candidate.
+     */
+    static OptimizerSelection seeded() {
+
+        final OptimizerSelection retVal = new OptimizerSelection();
+
+        OptimizerSelectionTest.record(retVal, COLD, Optimizer.DUAL_SIMPLEX, 2.0);
+        OptimizerSelectionTest.record(retVal, COLD, Optimizer.PRIMAL_SIMPLEX, 1.0);
+        OptimizerSelectionTest.record(retVal, COLD, Optimizer.CROSSOVER, 0.5);
+
+        OptimizerSelectionTest.record(retVal, WARM, Optimizer.DUAL_SIMPLEX, 2.0);
+        OptimizerSelectionTest.record(retVal, WARM, Optimizer.PRIMAL_SIMPLEX, 1.0);
+        OptimizerSelectionTest.record(retVal, WARM, Optimizer.CROSSOVER, 0.5);
+
+        return retVal;
+    }
+
+    @Test
+    public void testExploration() {
+
+        final OptimizerSelection tmpSelection = OptimizerSelectionTest.seeded();
+
+        for (int s = 1; s < OptimizerSelection.EXPLORATION_PERIOD; s++) {
+            Assertions.assertEquals(Optimizer.CROSSOVER, tmpSelection.select(COLD));
+        }
+
+        // The first candidate with no recorded solves
+        Assertions.assertEquals(Optimizer.INTERIOR_POINT, tmpSelection.select(COLD));
+        OptimizerSelectionTest.record(tmpSelection, COLD, Optimizer.INTERIOR_POINT, 0.25);
+
+        Assertions.assertEquals(Optimizer.INTERIOR_POINT, tmpSelection.select(COLD));
+
+        for (int s = 2; s < OptimizerSelection.EXPLORATION_PERIOD; s++) {
+            tmpSelection.select(COLD);
+        }
+        Assertions.assertEquals(Optimizer.FREE, tmpSelection.select(COLD));
+    }
+
+    @Test
+    public void testFailurePenalty() {
+
+        final OptimizerSelection tmpSelection = new OptimizerSelection();
+
+        OptimizerSelectionTest.record(tmpSelection, COLD, Optimizer.DUAL_SIMPLEX, 2.0);
+        tmpSelection.record(COLD, Optimizer.PRIMAL_SIMPLEX, 1_000_000_000L, Optimisation.State.FAILED);
+
+        Assertions.assertEquals(Optimizer.DUAL_SIMPLEX, tmpSelection.select(COLD));
+        Assertions.assertEquals("1/10.0", tmpSelection.getHistory().get(COLD.key).get(Optimizer.PRIMAL_SIMPLEX));
+    }
+
+    @Test
+    public void testFastestMean() {
+
+        final OptimizerSelection tmpSelection = OptimizerSelectionTest.seeded();
+
+        Assertions.assertEquals(Optimizer.CROSSOVER, tmpSelection.select(COLD));
+
+        // The mean, not the latest time
+        OptimizerSelectionTest.record(tmpSelection, COLD, Optimizer.CROSSOVER, 3.0);
+        Assertions.assertEquals(Optimizer.PRIMAL_SIMPLEX, tmpSelection.select(COLD));
+        OptimizerSelectionTest.record(tmpSelection, COLD, Optimizer.CROSSOVER, 0.05);
+        OptimizerSelectionTest.record(tmpSelection, COLD, Optimizer.CROSSOVER, 0.05);
+        Assertions.assertEquals(Optimizer.CROSSOVER, tmpSelection.select(COLD));
+        Assertions.assertEquals("4/0.9", tmpSelection.getHistory().get(COLD.key).get(Optimizer.CROSSOVER));
+    }
+
+    @Test
+    public void testNoHistory() {
+
+        final OptimizerSelection tmpSelection = new OptimizerSelection();
+
+        Assertions.assertEquals(Optimizer.DUAL_SIMPLEX, tmpSelection.select(COLD));
+        Assertions.assertEquals(Optimizer.DUAL_SIMPLEX, tmpSelection.select(WARM));
+        Assertions.assertEquals(Optimizer.CROSSOVER, tmpSelection.select(LARGE));
+
+        // Left to MOSEK
+        Assertions.assertNull(tmpSelection.select(new Features("MIP", false, 1_000L, "MIP-cold-nz9-d-2")));
+        Assertions.assertNull(tmpSelection.select(new Features("QP", false, 1_000L, "QP-cold-nz9-d-2")));
+    }
+
+    @Test
+    public void testSaveAndLoad(@TempDir final Path directory) {
+
+        final File tmpFile = directory.resolve("history.tsv").toFile();
+
+        final OptimizerSelection tmpSaved = OptimizerSelectionTest.seeded();
+        tmpSaved.setFile(tmpFile);
+        Assertions.assertFalse(tmpFile.exists());
+        tmpSaved.save();
+        Assertions.assertTrue(tmpFile.exists());
+
+        final OptimizerSelection tmpLoaded = new OptimizerSelection();
+        OptimizerSelectionTest.record(tmpLoaded, LARGE, Optimizer.FREE, 1.0);
+        tmpLoaded.setFile(tmpFile);
+
+        // Replaced, not merged
+        Assertions.assertEquals(tmpSaved.getHistory(), tmpLoaded.getHistory());
+
+        Assertions.assertEquals(Optimizer.CROSSOVER, tmpLoaded.select(COLD));
+        Assertions.assertEquals(Optimizer.PRIMAL_SIMPLEX, tmpLoaded.select(WARM));
+    }
+
+    @Test
+    public void testWarmCandidates() {
+
+        final OptimizerSelection tmpSelection = OptimizerSelectionTest.seeded();
+
+        for (int s = 1; s < OptimizerSelection.EXPLORATION_PERIOD; s++) {
+            Assertions.assertEquals(Optimizer.PRIMAL_SIMPLEX, tmpSelection.select(WARM));
+        }
+
+        // Interior-point is never a candidate when warm started
+        Assertions.assertEquals(Optimizer.FREE, tmpSelection.select(WARM));
+    }
+
+}
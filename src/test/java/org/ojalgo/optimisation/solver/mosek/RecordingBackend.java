@@ -0,0 +1,362 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+
+import mosek.Env.boundkey;
+import mosek.Env.conetype;
+import mosek.Env.objsense;
+import mosek.Env.variabletype;
+
+/**
+ * An in-memory {@link TaskBackend} - no native library or licence required. Keeps the resulting problem
+ * (bounds, sparse constraint matrix, objective and quadratic terms) so that it can be inspected, and counts
+ * the calls made and the number of array elements passed. Use it to test and profile the translation.
+ *
+ * @author apete
+ */
+final class RecordingBackend implements TaskBackend {
+
+    /**
+     * Translate the model, as {@link SolverMosek.Integration#build(ExpressionsBasedModel)} would, into a new
+     * recording backend.
+     */
+    static RecordingBackend translate(final ExpressionsBasedModel model) {
+        return RecordingBackend.translate(model, true);
+    }
+
+    /**
+     * @param eliminate Allow rows to be eliminated (see
+     *        {@link SolverMosek.Integration#translate(SolverMosek, ExpressionsBasedModel, FreeVariables, List, Expression, boolean)})
+     */
+    static RecordingBackend translate(final ExpressionsBasedModel model, final boolean eliminate) {
+
+        final FreeVariables tmpColumns = FreeVariables.of(model);
+        final List<Expression> tmpConstraints = model.constraints().collect(Collectors.toList());
+
+        final RecordingBackend retVal = new RecordingBackend();
+        retVal.appendvars(tmpColumns.count());
+
+        final SolverMosek tmpSolver = new SolverMosek(retVal, model.options);
+        SolverMosek.INTEGRATION.translate(tmpSolver, model, tmpColumns, tmpConstraints, model.objective(), eliminate);
+
+        return retVal;
+    }
+
+    private final Map<String, Integer> myCalls = new HashMap<>();
+    private boundkey[] myConstraintKeys = new boundkey[0];
+    private double[] myConstraintLower = new double[0];
+    private double[] myConstraintUpper = new double[0];
+    private long myElements = 0L;
+    private int myNumberOfCones = 0;
+    private int myNumberOfConstraints = 0;
+    private int myNumberOfVariables = 0;
+    private double[] myObjective = new double[0];
+    private final Map<Integer, TreeMap<Long, Double>> myQuadraticConstraints = new TreeMap<>();
+    private final TreeMap<Long, Double> myQuadraticObjective = new TreeMap<>();
+    private final Map<Integer, TreeMap<Integer, Double>> myRows = new TreeMap<>();
+    private objsense mySense = objsense.minimize;
+    private boundkey[] myVariableKeys = new boundkey[0];
+    private double[] myVariableLower = new double[0];
+    private variabletype[] myVariableTypes = new variabletype[0];
+    private double[] myVariableUpper = new double[0];
+
+    RecordingBackend() {
+        super();
+    }
+
+    public void appendcone(final conetype type, final double parameter, final int[] members) {
+        this.record("appendcone", members.length);
+        myNumberOfCones++;
+    }
+
+    public void appendcons(final int number) {
+        this.record("appendcons", 0);
+        myNumberOfConstraints += number;
+        myConstraintKeys = Arrays.copyOf(myConstraintKeys, myNumberOfConstraints);
+        myConstraintLower = Arrays.copyOf(myConstraintLower, myNumberOfConstraints);
+        myConstraintUpper = Arrays.copyOf(myConstraintUpper, myNumberOfConstraints);
+        for (int i = myNumberOfConstraints - number; i < myNumberOfConstraints; i++) {
+            myConstraintKeys[i] = boundkey.fr;
+            myConstraintLower[i] = Double.NEGATIVE_INFINITY;
+            myConstraintUpper[i] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    public void appendvars(final int number) {
+        this.record("appendvars", 0);
+        myNumberOfVariables += number;
+        myVariableKeys = Arrays.copyOf(myVariableKeys, myNumberOfVariables);
+        myVariableLower = Arrays.copyOf(myVariableLower, myNumberOfVariables);
+        myVariableUpper = Arrays.copyOf(myVariableUpper, myNumberOfVariables);
+        myVariableTypes = Arrays.copyOf(myVariableTypes, myNumberOfVariables);
+        myObjective = Arrays.copyOf(myObjective, myNumberOfVariables);
+        for (int j = myNumberOfVariables - number; j < myNumberOfVariables; j++) {
+            myVariableKeys[j] = boundkey.fx;
+            myVariableTypes[j] = variabletype.type_cont;
+        }
+    }
+
+    public int getnumcon() {
+        return myNumberOfConstraints;
+    }
+
+    public int getnumvar() {
+        return myNumberOfVariables;
+    }
+
+    public void getvarbound(final int index, final boundkey[] key, final double[] lower, final double[] upper) {
+        this.record("getvarbound", 0);
+        key[0] = myVariableKeys[index];
+        lower[0] = myVariableLower[index];
+        upper[0] = myVariableUpper[index];
+    }
+
+    public void putacolslice(final int first, final int last, final long[] begin, final long[] end, final int[] subscripts, final double[] values) {
+        this.record("putacolslice", 2 * (last - first) + 2 * subscripts.length);
+        for (int j = first; j < last; j++) {
+            for (int e = (int) begin[j - first]; e < end[j - first]; e++) {
+                myRows.computeIfAbsent(subscripts[e], k -> new TreeMap<>()).put(j, values[e]);
+            }
+        }
+    }
+
+    public void putaij(final int row, final int column, final double value) {
+        this.record("putaij", 0);
+        myRows.computeIfAbsent(row, k -> new TreeMap<>()).put(column, value);
+    }
+
+    public void putarow(final int row, final int[] columns, final double[] values) {
+        this.record("putarow", 2 * columns.length);
+        this.setRow(row, columns, values, 0, columns.length);
+    }
+
+    public void putarowslice(final int first, final int last, final long[] begin, final long[] end, final int[] subscripts, final double[] values) {
+        this.record("putarowslice", 2 * (last - first) + 2 * subscripts.length);
+        for (int i = first; i < last; i++) {
+            this.setRow(i, subscripts, values, (int) begin[i - first], (int) end[i - first]);
+        }
+    }
+
+    public void putcj(final int column, final double value) {
+        this.record("putcj", 0);
+        myObjective[column] = value;
+    }
+
+    public void putclist(final int[] columns, final double[] values) {
+        this.record("putclist", 2 * columns.length);
+        for (int e = 0; e < columns.length; e++) {
+            myObjective[columns[e]] = values[e];
+        }
+    }
+
+    public void putconbound(final int row, final boundkey key, final double lower, final double upper) {
+        this.record("putconbound", 0);
+        myConstraintKeys[row] = key;
+        myConstraintLower[row] = lower;
+        myConstraintUpper[row] = upper;
+    }
+
+    public void putconboundslice(final int first, final int last, final boundkey[] keys, final double[] lower, final double[] upper) {
+        this.record("putconboundslice", 3 * (last - first));
+        System.arraycopy(keys, 0, myConstraintKeys, first, last - first);
+        System.arraycopy(lower, 0, myConstraintLower, first, last - first);
+        System.arraycopy(upper, 0, myConstraintUpper, first, last - first);
+    }
+
+    public void putcslice(final int first, final int last, final double[] values) {
+        this.record("putcslice", last - first);
+        System.arraycopy(values, 0, myObjective, first, last - first);
+    }
+
+    public void putobjsense(final objsense sense) {
+        this.record("putobjsense", 0);
+        mySense = sense;
+    }
+
+    public void putqconk(final int row, final int[] rows, final int[] columns, final double[] values) {
+        this.record("putqconk", 3 * rows.length);
+        final TreeMap<Long, Double> tmpTerms = new TreeMap<>();
+        for (int e = 0; e < rows.length; e++) {
+            tmpTerms.put(this.key(rows[e], columns[e]), values[e]);
+        }
+        myQuadraticConstraints.put(row, tmpTerms);
+    }
+
+    public void putqobj(final int[] rows, final int[] columns, final double[] values) {
+        this.record("putqobj", 3 * rows.length);
+        myQuadraticObjective.clear();
+        for (int e = 0; e < rows.length; e++) {
+            myQuadraticObjective.put(this.key(rows[e], columns[e]), values[e]);
+        }
+    }
+
+    public void putvarbound(final int column, final boundkey key, final double lower, final double upper) {
+        this.record("putvarbound", 0);
+        myVariableKeys[column] = key;
+        myVariableLower[column] = lower;
+        myVariableUpper[column] = upper;
+    }
+
+    public void putvarboundslice(final int first, final int last, final boundkey[] keys, final double[] lower, final double[] upper) {
+        this.record("putvarboundslice", 3 * (last - first));
+        System.arraycopy(keys, 0, myVariableKeys, first, last - first);
+        System.arraycopy(lower, 0, myVariableLower, first, last - first);
+        System.arraycopy(upper, 0, myVariableUpper, first, last - first);
+    }
+
+    public void putvartype(final int column, final variabletype type) {
+        this.record("putvartype", 0);
+        myVariableTypes[column] = type;
+    }
+
+    public void putvartypelist(final int[] columns, final variabletype[] types) {
+        this.record("putvartypelist", 2 * columns.length);
+        for (int e = 0; e < columns.length; e++) {
+            myVariableTypes[columns[e]] = types[e];
+        }
+    }
+
+    /**
+     * The number of calls made to the named method
+     */
+    int count(final String method) {
+        return myCalls.getOrDefault(method, 0);
+    }
+
+    /**
+     * The total number of calls made
+     */
+    int countCalls() {
+        return myCalls.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    int countCones() {
+        return myNumberOfCones;
+    }
+
+    /**
+     * The total number of array elements passed (coefficients, bounds, subscripts...)
+     */
+    long countElements() {
+        return myElements;
+    }
+
+    int countNonzeros() {
+        return myRows.values().stream().mapToInt(Map::size).sum();
+    }
+
+    double getCoefficient(final int row, final int column) {
+        final TreeMap<Integer, Double> tmpRow = myRows.get(row);
+        return tmpRow != null ? tmpRow.getOrDefault(column, 0.0) : 0.0;
+    }
+
+    boundkey getConstraintKey(final int row) {
+        return myConstraintKeys[row];
+    }
+
+    double getConstraintLower(final int row) {
+        return myConstraintLower[row];
+    }
+
+    double getConstraintUpper(final int row) {
+        return myConstraintUpper[row];
+    }
+
+    double getObjective(final int column) {
+        return myObjective[column];
+    }
+
+    /**
+     * Lower triangular part, as MOSEK stores it
+     */
+    double getQuadraticConstraint(final int constraint, final int row, final int column) {
+        final TreeMap<Long, Double> tmpTerms = myQuadraticConstraints.get(constraint);
+        return tmpTerms != null ? tmpTerms.getOrDefault(this.key(row, column), 0.0) : 0.0;
+    }
+
+    /**
+     * Lower triangular part, as MOSEK stores it
+     */
+    double getQuadraticObjective(final int row, final int column) {
+        return myQuadraticObjective.getOrDefault(this.key(row, column), 0.0);
+    }
+
+    /**
+     * @return The nonzero coefficients of the row, by column
+     */
+    Map<Integer, Double> getRow(final int row) {
+        final TreeMap<Integer, Double> tmpRow = myRows.get(row);
+        return tmpRow != null ? Collections.unmodifiableMap(tmpRow) : Collections.emptyMap();
+    }
+
+    objsense getSense() {
+        return mySense;
+    }
+
+    boundkey getVariableKey(final int column) {
+        return myVariableKeys[column];
+    }
+
+    double getVariableLower(final int column) {
+        return myVariableLower[column];
+    }
+
+    variabletype getVariableType(final int column) {
+        return myVariableTypes[column];
+    }
+
+    double getVariableUpper(final int column) {
+        return myVariableUpper[column];
+    }
+
+    /**
+     * Row/column pairs as a single key - the row first, so that the terms are sorted row by row.
+     */
+    private long key(final int row, final int column) {
+        return ((long) row << 32) | column;
+    }
+
+    private void record(final String method, final int elements) {
+        myCalls.merge(method, 1, Integer::sum);
+        myElements += elements;
+    }
+
+    private void setRow(final int row, final int[] columns, final double[] values, final int begin, final int end) {
+        final TreeMap<Integer, Double> tmpRow = new TreeMap<>();
+        for (int e = begin; e < end; e++) {
+            tmpRow.put(columns[e], values[e]);
+        }
+        myRows.put(row, tmpRow);
+    }
+
+}
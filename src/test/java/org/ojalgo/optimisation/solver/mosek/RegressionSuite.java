@@ -0,0 +1,326 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.ojalgo.netio.BasicLogger;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Optimisation;
+
+/**
+ * Runs the model collections that {@link NetlibCaseWithMosek}, {@link MIPLIBTheEasySetWithMosek},
+ * {@link BurkardtDatasetsMpsWithMosek} and {@link ExtensionsSolverProblemWithMosek} use for correctness
+ * through {@link SolverMosek}. Just like those tests, the models are solved with
+ * {@link ExpressionsBasedModel#minimise()}, with MOSEK as the preferred solver, so ojAlgo's presolve and
+ * validation are part of the run. Of the MIPLIB models only "the easy set" is solved, with a shorter time
+ * limit. For each model the extraction, translation and optimisation times, the iteration counts, the peak
+ * heap usage and the peak memory MOSEK allocated for the task are recorded and written to a tab separated
+ * report. If there is a baseline report, any model that is slower than the baseline by more than the
+ * threshold is flagged, and the test fails.
+ * <p>
+ * The model files are read from the ojAlgo source tree, just as {@link ExampleMosek} does. Everything can be
+ * changed with system properties:
+ * <ul>
+ * <li>regression.netlib, regression.miplib, regression.burkardt, regression.extensions - the directories</li>
+ * <li>regression.miplib.models - comma separated names (without extension) of the MIPLIB models to solve
+ * (default {@link #MIPLIB_MODELS})</li>
+ * <li>regression.miplib.time - the MIPLIB time limit in ms (default {@link #MIPLIB_TIME_LIMIT})</li>
+ * <li>regression.report - where to write the report (default regression-report.tsv)</li>
+ * <li>regression.baseline - the report to compare with (default regression-baseline.tsv, skipped if it does
+ * not exist). To update the baseline, copy a report.</li>
+ * <li>regression.threshold - the relative slowdown that is flagged (default 0.25)</li>
+ * </ul>
+ * Requires MOSEK to be installed, and takes a long time - disabled by default.
+ *
+ * @author apete
+ */
+@Disabled
+public class RegressionSuite {
+
+    static final class Measurement {
+
+        static final String HEADER = "collection\tmodel\tstate\textraction_ms\ttranslation_ms\toptimisation_ms\tsimplex_iterations\tinterior_point_iterations\tmip_nodes\tpeak_heap_mb\ttask_memory_mb";
+
+        static Measurement parse(final String line) {
+
+            final String[] tmpFields = line.split("\t");
+
+            final Measurement retVal = new Measurement(tmpFields[0], tmpFields[1]);
+            retVal.state = Optimisation.State.valueOf(tmpFields[2]);
+            retVal.extraction = Double.parseDouble(tmpFields[3]);
+            retVal.translation = Double.parseDouble(tmpFields[4]);
+            retVal.optimisation = Double.parseDouble(tmpFields[5]);
+            retVal.simplexIterations = Integer.parseInt(tmpFields[6]);
+            retVal.interiorPointIterations = Integer.parseInt(tmpFields[7]);
+            retVal.mipNodes = Integer.parseInt(tmpFields[8]);
+            retVal.peakHeap = Double.parseDouble(tmpFields[9]);
+            if (tmpFields.length > 10) { // Older reports have no task memory column
+                retVal.taskMemory = Double.parseDouble(tmpFields[10]);
+            }
+            return retVal;
+        }
+
+        final String collection;
+        double extraction = Double.NaN;
+        int interiorPointIterations = 0;
+        int mipNodes = 0;
+        final String model;
+        double optimisation = Double.NaN;
+        double peakHeap = Double.NaN;
+        int simplexIterations = 0;
+        Optimisation.State state = Optimisation.State.FAILED;
+        double taskMemory = Double.NaN;
+        double translation = Double.NaN;
+
+        Measurement(final String collection, final String model) {
+            super();
+            this.collection = collection;
+            this.model = model;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s\t%s\t%s\t%.3f\t%.3f\t%.3f\t%d\t%d\t%d\t%.1f\t%.1f", collection, model, state, extraction, translation,
+                    optimisation, simplexIterations, interiorPointIterations, mipNodes, peakHeap, taskMemory);
+        }
+
+        String key() {
+            return collection + "/" + model;
+        }
+
+        double total() {
+            return extraction + translation + optimisation;
+        }
+
+    }
+
+    /**
+     * Name and default directory
+     */
+    static final String[][] COLLECTIONS = { { "netlib", "./test/org/ojalgo/optimisation/linear/netlib/" },
+            { "miplib", "./test/org/ojalgo/optimisation/integer/miplib/" }, { "burkardt", "./test/org/ojalgo/optimisation/linear/mps/" },
+            { "extensions", "./test/org/ojalgo/optimisation/external/" } };
+    /**
+     * Differences smaller than this (in ms) are noise, and never flagged
+     */
+    static final double MINIMUM_DIFFERENCE = 10.0;
+    /**
+     * The models of ojAlgo's MIPLIBTheEasySet
+     */
+    static final String MIPLIB_MODELS = "b-ball,flugpl,gr4x6,markshare_4_0,neos5,pk1";
+    static final long MIPLIB_TIME_LIMIT = 60_000L;
+    /**
+     * Each model is solved this many times, and the fastest is reported
+     */
+    static final int REPETITIONS = 3;
+    static final long TIME_LIMIT = 300_000L;
+
+    @BeforeAll
+    public static void configure() {
+        ExpressionsBasedModel.addPreferredSolver(SolverMosek.INTEGRATION);
+    }
+
+    public static void main(final String[] args) throws IOException {
+        RegressionSuite.configure();
+        new RegressionSuite().regression();
+    }
+
+    static Map<String, Measurement> readBaseline(final File file) throws IOException {
+
+        final Map<String, Measurement> retVal = new HashMap<>();
+
+        if (file.exists()) {
+            try (BufferedReader tmpReader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String tmpLine = tmpReader.readLine(); // header
+                while ((tmpLine = tmpReader.readLine()) != null) {
+                    if (tmpLine.length() > 0) {
+                        final Measurement tmpMeasurement = Measurement.parse(tmpLine);
+                        retVal.put(tmpMeasurement.key(), tmpMeasurement);
+                    }
+                }
+            }
+        }
+
+        return retVal;
+    }
+
+    static Measurement measure(final String collection, final File file, final long timeLimit) {
+
+        final Measurement retVal = new Measurement(collection, file.getName());
+
+        final SolveMetrics[] tmpMetrics = new SolveMetrics[1];
+        SolverMosek.INTEGRATION.setMetricsListener(metrics -> tmpMetrics[0] = metrics);
+
+        try {
+            for (int r = 0; r < REPETITIONS; r++) {
+
+                // Presolve modifies the model - read it again for every repetition
+                final ExpressionsBasedModel tmpModel = ExpressionsBasedModel.parse(file);
+                tmpModel.options.time_abort = timeLimit;
+
+                tmpMetrics[0] = null;
+                RegressionSuite.resetPeakHeap();
+
+                final Optimisation.Result tmpResult = tmpModel.minimise();
+
+                final SolveMetrics tmpRepetition = tmpMetrics[0];
+                final double tmpPeakHeap = RegressionSuite.getPeakHeap();
+
+                // No metrics if presolve solved the model, and MOSEK was never called
+                final double tmpExtraction = tmpRepetition != null ? tmpRepetition.extraction / 1E6 : 0.0;
+                final double tmpTranslation = tmpRepetition != null ? tmpRepetition.translation / 1E6 : 0.0;
+                final double tmpOptimisation = tmpRepetition != null ? tmpRepetition.optimisation / 1E6 : 0.0;
+
+                if (Double.isNaN(retVal.total()) || ((tmpExtraction + tmpTranslation + tmpOptimisation) < retVal.total())) {
+                    retVal.state = tmpResult.getState();
+                    retVal.extraction = tmpExtraction;
+                    retVal.translation = tmpTranslation;
+                    retVal.optimisation = tmpOptimisation;
+                    retVal.simplexIterations = tmpRepetition != null ? tmpRepetition.simplexIterations : 0;
+                    retVal.interiorPointIterations = tmpRepetition != null ? tmpRepetition.interiorPointIterations : 0;
+                    retVal.mipNodes = tmpRepetition != null ? tmpRepetition.mipNodes : 0;
+                }
+
+                final double tmpTaskMemory = tmpRepetition != null ? tmpRepetition.taskMemory / (1024.0 * 1024.0) : 0.0;
+                retVal.peakHeap = Double.isNaN(retVal.peakHeap) ? tmpPeakHeap : Math.max(retVal.peakHeap, tmpPeakHeap);
+                retVal.taskMemory = Double.isNaN(retVal.taskMemory) ? tmpTaskMemory : Math.max(retVal.taskMemory, tmpTaskMemory);
+            }
+        } catch (final RuntimeException cause) {
+            BasicLogger.error("{} failed: {}", retVal.key(), cause);
+        } finally {
+            SolverMosek.INTEGRATION.setMetricsListener(null);
+        }
+
+        return retVal;
+    }
+
+    /**
+     * @return Peak heap usage, in MB, since the last {@link #resetPeakHeap()}
+     */
+    private static double getPeakHeap() {
+        long retVal = 0L;
+        for (final MemoryPoolMXBean tmpPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (tmpPool.getType() == MemoryType.HEAP) {
+                retVal += tmpPool.getPeakUsage().getUsed();
+            }
+        }
+        return retVal / (1024.0 * 1024.0);
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (final MemoryPoolMXBean tmpPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (tmpPool.getType() == MemoryType.HEAP) {
+                tmpPool.resetPeakUsage();
+            }
+        }
+    }
+
+    @Test
+    public void regression() throws IOException {
+
+        final File tmpReportFile = new File(System.getProperty("regression.report", "regression-report.tsv"));
+        final File tmpBaselineFile = new File(System.getProperty("regression.baseline", "regression-baseline.tsv"));
+        final double tmpThreshold = Double.parseDouble(System.getProperty("regression.threshold", "0.25"));
+
+        final Set<String> tmpMIPLIB = new HashSet<>(Arrays.asList(System.getProperty("regression.miplib.models", MIPLIB_MODELS).split(",")));
+        final long tmpMIPLIBTimeLimit = Long.parseLong(System.getProperty("regression.miplib.time", Long.toString(MIPLIB_TIME_LIMIT)));
+
+        final Map<String, Measurement> tmpBaseline = RegressionSuite.readBaseline(tmpBaselineFile);
+
+        final List<String> tmpRegressions = new ArrayList<>();
+
+        try (PrintWriter tmpReport = new PrintWriter(Files.newBufferedWriter(tmpReportFile.toPath(), StandardCharsets.UTF_8))) {
+
+            tmpReport.println(Measurement.HEADER);
+
+            for (final String[] tmpCollection : COLLECTIONS) {
+
+                final File tmpDirectory = new File(System.getProperty("regression." + tmpCollection[0], tmpCollection[1]));
+                final File[] tmpFiles = tmpDirectory.listFiles(f -> f.isFile() && f.getName().toLowerCase(Locale.ROOT).matches(".*\\.(mps|sif)"));
+
+                if (tmpFiles == null) {
+                    BasicLogger.debug("No such directory: {}", tmpDirectory);
+                    continue;
+                }
+                Arrays.sort(tmpFiles);
+
+                final boolean tmpMIP = "miplib".equals(tmpCollection[0]);
+
+                for (final File tmpFile : tmpFiles) {
+
+                    if (tmpMIP && !tmpMIPLIB.contains(tmpFile.getName().replaceFirst("\\.[^.]*$", ""))) {
+                        continue;
+                    }
+
+                    final Measurement tmpMeasurement = RegressionSuite.measure(tmpCollection[0], tmpFile, tmpMIP ? tmpMIPLIBTimeLimit : TIME_LIMIT);
+                    tmpReport.println(tmpMeasurement);
+                    tmpReport.flush();
+
+                    final Measurement tmpReference = tmpBaseline.get(tmpMeasurement.key());
+                    if (tmpReference != null) {
+                        final double tmpDifference = tmpMeasurement.total() - tmpReference.total();
+                        if (!(tmpDifference <= MINIMUM_DIFFERENCE) && !(tmpDifference <= (tmpThreshold * tmpReference.total()))) {
+                            tmpRegressions.add(String.format(Locale.ROOT, "%s: %.1f ms, was %.1f ms", tmpMeasurement.key(), tmpMeasurement.total(),
+                                    tmpReference.total()));
+                        } else if (tmpMeasurement.state != tmpReference.state) {
+                            tmpRegressions.add(tmpMeasurement.key() + ": " + tmpMeasurement.state + ", was " + tmpReference.state);
+                        }
+                    }
+
+                    BasicLogger.debug(tmpMeasurement);
+                }
+            }
+        }
+
+        BasicLogger.debug("Report written to {}", tmpReportFile.getAbsolutePath());
+
+        if (tmpBaseline.isEmpty()) {
+            BasicLogger.debug("No baseline at {} - copy the report there to create one", tmpBaselineFile.getAbsolutePath());
+        } else if (!tmpRegressions.isEmpty()) {
+            tmpRegressions.forEach(BasicLogger::debug);
+            Assertions.fail(tmpRegressions.size() + " regression(s) compared to " + tmpBaselineFile.getAbsolutePath());
+        }
+    }
+
+}
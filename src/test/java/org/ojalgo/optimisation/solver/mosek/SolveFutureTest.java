@@ -0,0 +1,125 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Optimisation;
+
+/**
+ * Asynchronous solves of a model that takes (much) longer than the test waits: the deadline, {@link
+ * SolveFuture#stop()} and cancelling must all end the solve promptly.
+ *
+ * @author apete
+ */
+public class SolveFutureTest {
+
+    /**
+     * No solve is allowed to take longer than this after it was asked to end
+     */
+    private static final long PROMPTLY = 30_000L;
+
+    private ExecutorService myExecutor;
+
+    @AfterEach
+    public void restore() throws InterruptedException {
+        ExpressionsBasedModel.removeIntegration(SolverMosek.INTEGRATION);
+        if (myExecutor != null) {
+            myExecutor.shutdownNow();
+            myExecutor.awaitTermination(PROMPTLY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @BeforeEach
+    public void setup() {
+        MosekTests.assumeInstalled();
+        ExpressionsBasedModel.addPreferredSolver(SolverMosek.INTEGRATION);
+        myExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException, ExecutionException, TimeoutException {
+
+        final SolveFuture tmpFuture = SolverMosek.INTEGRATION.solveAsync(GeneratedModels.markshare(6, 0L), Long.MAX_VALUE, myExecutor);
+
+        Thread.sleep(500L);
+        Assertions.assertTrue(tmpFuture.cancel(true));
+
+        Assertions.assertTrue(tmpFuture.isCancelled());
+        Assertions.assertThrows(CancellationException.class, tmpFuture::get);
+
+        // The (single) executor thread is freed - the solve did stop
+        Assertions.assertTrue(myExecutor.submit(() -> Boolean.TRUE).get(PROMPTLY, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testDeadline() throws InterruptedException, ExecutionException, TimeoutException {
+
+        final ExpressionsBasedModel tmpModel = GeneratedModels.markshare(6, 0L);
+
+        final long tmpStart = System.currentTimeMillis();
+        final Optimisation.Result tmpResult = SolverMosek.INTEGRATION.solveAsync(tmpModel, 1_000L, myExecutor).get(PROMPTLY, TimeUnit.MILLISECONDS);
+
+        Assertions.assertTrue(System.currentTimeMillis() - tmpStart >= 1_000L);
+        Assertions.assertFalse(tmpResult.getState().isOptimal());
+    }
+
+    @Test
+    public void testSolveAsMinimise() throws InterruptedException, ExecutionException, TimeoutException {
+
+        final ExpressionsBasedModel tmpModel = TranslationTest.makeLP();
+        final Optimisation.Result tmpExpected = TranslationTest.makeLP().minimise();
+
+        final Optimisation.Result tmpActual = SolverMosek.INTEGRATION.solveAsync(tmpModel, Long.MAX_VALUE, myExecutor).get(PROMPTLY, TimeUnit.MILLISECONDS);
+
+        Assertions.assertEquals(tmpExpected.getState(), tmpActual.getState());
+        Assertions.assertEquals(tmpExpected.getValue(), tmpActual.getValue(), 1E-6);
+        // The solution is written back to the model
+        for (int i = 0; i < tmpExpected.count(); i++) {
+            Assertions.assertEquals(tmpExpected.doubleValue(i), tmpModel.getVariable(i).getValue().doubleValue(), 1E-6);
+        }
+    }
+
+    @Test
+    public void testStop() throws InterruptedException, ExecutionException, TimeoutException {
+
+        final SolveFuture tmpFuture = SolverMosek.INTEGRATION.solveAsync(GeneratedModels.markshare(6, 0L), Long.MAX_VALUE, myExecutor);
+
+        Thread.sleep(1_000L);
+        tmpFuture.stop();
+
+        // Completes normally, with the best solution found so far
+        final Optimisation.Result tmpResult = tmpFuture.get(PROMPTLY, TimeUnit.MILLISECONDS);
+        Assertions.assertFalse(tmpResult.getState().isOptimal());
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import mosek.Stream;
+
+/**
+ * Feeds (copies of) MOSEK's own log output through {@link TaskLog#asStream()} - no native library
+ * required.
+ *
+ * @author apete
+ */
+public class TaskLogTest {
+
+    static final String[] INTERIOR_POINT = { "Interior-point optimizer started.", "Presolve started.", "Presolve terminated. Time: 0.00",
+            "Optimizer  - threads                : 1", "Optimizer  - solved problem         : the dual",
+            "Optimizer  - Constraints            : 2", "Factor     - setup time             : 0.00           dense det. time        : 0.00",
+            "ITE PFEAS    DFEAS    GFEAS    PRSTATUS   POBJ              DOBJ              MU       TIME",
+            "0   1.0e+00  3.0e+00  1.0e+00  0.00e+00   0.000000000e+00   -2.000000000e+00  1.0e+00  0.00",
+            "1   1.2e-01  3.6e-01  1.2e-01  8.43e-01   2.596385542e+00   2.361445783e+00   1.2e-01  0.01",
+            "2   4.1e-09  1.2e-08  4.1e-09  1.00e+00   2.999999998e+00   2.999999997e+00   4.1e-09  0.02",
+            "Interior-point optimizer terminated. Time: 0.02." };
+
+    static final String[] SIMPLEX = { "Simplex optimizer started.", "Primal simplex optimizer started.",
+            "Primal simplex optimizer setup started.", "Primal simplex optimizer setup terminated.",
+            "Optimizer  - solved problem         : the primal", "Optimizer  - Constraints            : 3",
+            "Optimizer  - hotstart               : no",
+            "ITER      DEGITER(%)  PFEAS       DFEAS       POBJ                  DOBJ                  TIME      TOTTIME",
+            "0         0.00        1.00e+01    NA          0.000000000000e+00    NA                    0.00      0.01",
+            "3         33.33       0.00e+00    NA          3.000000000000e+00    NA                    0.03      0.04",
+            "Primal simplex optimizer terminated.", "Simplex optimizer terminated. Time: 0.04." };
+
+    static void feed(final TaskLog log, final String... lines) {
+        final Stream tmpStream = log.asStream();
+        for (final String tmpLine : lines) {
+            tmpStream.stream(tmpLine + "\n");
+        }
+    }
+
+    @Test
+    public void testDropped() {
+
+        final TaskLog tmpLog = new TaskLog(4, iteration -> {});
+
+        TaskLogTest.feed(tmpLog, INTERIOR_POINT);
+
+        Assertions.assertEquals(INTERIOR_POINT.length - 4, tmpLog.countDropped());
+
+        // The oldest lines are kept, the rest dropped
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertEquals(INTERIOR_POINT[i], tmpLog.poll());
+        }
+        Assertions.assertNull(tmpLog.poll());
+
+        // Room again
+        TaskLogTest.feed(tmpLog, SIMPLEX[0]);
+        Assertions.assertEquals(SIMPLEX[0], tmpLog.poll());
+        Assertions.assertEquals(INTERIOR_POINT.length - 4, tmpLog.countDropped());
+    }
+
+    @Test
+    public void testInteriorPoint() {
+
+        final List<TaskLog.Iteration> tmpIterations = new ArrayList<>();
+        final TaskLog tmpLog = new TaskLog(64, tmpIterations::add);
+
+        TaskLogTest.feed(tmpLog, INTERIOR_POINT);
+
+        Assertions.assertEquals(3, tmpIterations.size());
+
+        final TaskLog.Iteration tmpFirst = tmpIterations.get(0);
+        Assertions.assertEquals(0, tmpFirst.iteration);
+        Assertions.assertEquals(1.0, tmpFirst.pfeas);
+        Assertions.assertEquals(3.0, tmpFirst.dfeas);
+        Assertions.assertEquals(0.0, tmpFirst.pobj);
+        Assertions.assertEquals(-2.0, tmpFirst.dobj);
+        Assertions.assertEquals(0.0, tmpFirst.time);
+
+        final TaskLog.Iteration tmpLast = tmpIterations.get(2);
+        Assertions.assertSame(tmpLast, tmpLog.getLastIteration());
+        Assertions.assertEquals(2, tmpLast.iteration);
+        Assertions.assertEquals(4.1E-9, tmpLast.pfeas);
+        Assertions.assertEquals(1.2E-8, tmpLast.dfeas);
+        Assertions.assertEquals(2.999999998, tmpLast.pobj);
+        Assertions.assertEquals(2.999999997, tmpLast.dobj);
+        Assertions.assertEquals(0.02, tmpLast.time);
+
+        // Every line is kept, nothing dropped
+        for (int i = 0; i < INTERIOR_POINT.length; i++) {
+            Assertions.assertEquals(INTERIOR_POINT[i], tmpLog.poll());
+        }
+        Assertions.assertNull(tmpLog.poll());
+        Assertions.assertEquals(0L, tmpLog.countDropped());
+    }
+
+    @Test
+    public void testPartialLines() {
+
+        final List<TaskLog.Iteration> tmpIterations = new ArrayList<>();
+        final TaskLog tmpLog = new TaskLog(64, tmpIterations::add);
+
+        final StringBuilder tmpAll = new StringBuilder();
+        for (final String tmpLine : SIMPLEX) {
+            tmpAll.append(tmpLine).append("\r\n");
+        }
+        tmpAll.setLength(tmpAll.length() - 2);
+
+        // MOSEK doesn't necessarily stream whole lines
+        final Stream tmpStream = tmpLog.asStream();
+        for (int i = 0; i < tmpAll.length(); i += 7) {
+            tmpStream.stream(tmpAll.substring(i, Math.min(i + 7, tmpAll.length())));
+        }
+
+        Assertions.assertEquals(2, tmpIterations.size());
+
+        tmpLog.flush();
+
+        for (int i = 0; i < SIMPLEX.length; i++) {
+            Assertions.assertEquals(SIMPLEX[i], tmpLog.poll());
+        }
+        Assertions.assertNull(tmpLog.poll());
+    }
+
+    @Test
+    public void testSimplex() {
+
+        final List<TaskLog.Iteration> tmpIterations = new ArrayList<>();
+        final TaskLog tmpLog = new TaskLog(0, tmpIterations::add);
+
+        TaskLogTest.feed(tmpLog, SIMPLEX);
+
+        Assertions.assertEquals(2, tmpIterations.size());
+
+        final TaskLog.Iteration tmpFirst = tmpIterations.get(0);
+        Assertions.assertEquals(0, tmpFirst.iteration);
+        Assertions.assertEquals(10.0, tmpFirst.pfeas);
+        Assertions.assertTrue(Double.isNaN(tmpFirst.dfeas));
+        Assertions.assertEquals(0.0, tmpFirst.pobj);
+        Assertions.assertTrue(Double.isNaN(tmpFirst.dobj));
+        Assertions.assertEquals(0.0, tmpFirst.time);
+
+        final TaskLog.Iteration tmpLast = tmpIterations.get(1);
+        Assertions.assertEquals(3, tmpLast.iteration);
+        Assertions.assertEquals(0.0, tmpLast.pfeas);
+        Assertions.assertEquals(3.0, tmpLast.pobj);
+        // TIME, not TOTTIME
+        Assertions.assertEquals(0.03, tmpLast.time);
+
+        // Capacity 0 - parsed only, never stored (and nothing counted as dropped)
+        Assertions.assertNull(tmpLog.poll());
+        Assertions.assertEquals(0L, tmpLog.countDropped());
+    }
+
+}
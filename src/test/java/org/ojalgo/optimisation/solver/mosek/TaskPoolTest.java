@@ -0,0 +1,87 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+
+/**
+ * Whatever the mode, once the pools are cleared (and dropped models collected) there are no more native tasks
+ * than before.
+ *
+ * @author apete
+ */
+public class TaskPoolTest {
+
+    private long myBaseline;
+
+    @AfterEach
+    public void restore() {
+        SolverMosek.INTEGRATION.setIncremental(false);
+        SolverMosek.INTEGRATION.setNodeMode(false);
+        ExpressionsBasedModel.removeIntegration(SolverMosek.INTEGRATION);
+        SolverMosek.INTEGRATION.getTaskPool().setCapacity(4);
+    }
+
+    @BeforeEach
+    public void setup() {
+        MosekTests.assumeInstalled();
+        SolverMosek.INTEGRATION.getTaskPool().clear();
+        myBaseline = TaskPool.countLiveTasks();
+    }
+
+    @Test
+    public void testLiveTasks() throws InterruptedException {
+
+        final TaskPool tmpPool = SolverMosek.INTEGRATION.getTaskPool();
+        tmpPool.setCapacity(2);
+
+        for (int m = 0; m < 5; m++) {
+            try (SolverMosek tmpSolver = SolverMosek.INTEGRATION.build(GeneratedModels.sparseLP(20, 30, 0.2, m))) {
+                Assertions.assertTrue(tmpSolver.solve(null).getState().isOptimal());
+            }
+        }
+        // Closed solvers' tasks are pooled, not leaked
+        Assertions.assertEquals(1, tmpPool.size());
+        Assertions.assertEquals(myBaseline + tmpPool.size(), TaskPool.countLiveTasks());
+
+        SolverMosek.INTEGRATION.setIncremental(true);
+        for (int m = 0; m < 5; m++) {
+            try (SolverMosek tmpSolver = SolverMosek.INTEGRATION.build(GeneratedModels.sparseLP(20, 30, 0.2, m))) {
+                Assertions.assertTrue(tmpSolver.solve(null).getState().isOptimal());
+            }
+        }
+        SolverMosek.INTEGRATION.setIncremental(false);
+
+        SolverMosek.INTEGRATION.setNodeMode(true);
+        ExpressionsBasedModel.addPreferredSolver(SolverMosek.INTEGRATION);
+        Assertions.assertTrue(GeneratedModels.sparseMIP(20, 30, 0.2, 0L).minimise().getState().isFeasible());
+        SolverMosek.INTEGRATION.setNodeMode(false);
+
+        tmpPool.clear();
+        IncrementalTasksTest.assertLiveTasks(myBaseline);
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+
+/**
+ * The content hash, and least recently used eviction of (small, made up) task files - no native library
+ * required.
+ *
+ * @author apete
+ */
+public class TaskStoreTest {
+
+    private static final long NOW = System.currentTimeMillis();
+
+    static String key(final ExpressionsBasedModel model) {
+        return TaskStore.key(FreeVariables.of(model).getVariables(), ModelSnapshot.of(model));
+    }
+
+    /**
+     * A 100 byte file, last used the given number of seconds ago
+     */
+    static Path write(final Path directory, final String name, final int secondsAgo) throws IOException {
+        final Path retVal = Files.write(directory.resolve(name), new byte[100]);
+        Files.setLastModifiedTime(retVal, FileTime.fromMillis(NOW - (secondsAgo * 1_000L)));
+        return retVal;
+    }
+
+    @Test
+    public void testEvictionOrder(@TempDir final Path directory) throws IOException {
+
+        // Alphabetical order is not the order of use
+        final Path tmpA = TaskStoreTest.write(directory, "a.task", 20);
+        final Path tmpB = TaskStoreTest.write(directory, "b.task", 40);
+        final Path tmpC = TaskStoreTest.write(directory, "c.task", 30);
+        // Not stored tasks
+        final Path tmpTemporary = TaskStoreTest.write(directory, "d-1-2.tmp.task", 50);
+        final Path tmpOther = TaskStoreTest.write(directory, "e.txt", 50);
+
+        final TaskStore tmpStore = new TaskStore();
+        tmpStore.setDirectory(directory.toFile(), 250L);
+
+        Assertions.assertTrue(tmpStore.isEnabled());
+        Assertions.assertFalse(Files.exists(tmpB));
+        Assertions.assertTrue(Files.exists(tmpA));
+        Assertions.assertTrue(Files.exists(tmpC));
+        Assertions.assertTrue(Files.exists(tmpTemporary));
+        Assertions.assertTrue(Files.exists(tmpOther));
+        Assertions.assertEquals(1L, tmpStore.countEvictions());
+        Assertions.assertEquals(200L, tmpStore.size());
+
+        // a is used, and then f is added
+        Files.setLastModifiedTime(tmpA, FileTime.fromMillis(NOW));
+        final Path tmpF = TaskStoreTest.write(directory, "f.task", 10);
+
+        tmpStore.setDirectory(directory.toFile(), 250L);
+
+        Assertions.assertFalse(Files.exists(tmpC));
+        Assertions.assertTrue(Files.exists(tmpA));
+        Assertions.assertTrue(Files.exists(tmpF));
+        Assertions.assertEquals(2L, tmpStore.countEvictions());
+
+        // Shrinking evicts in the same order
+        tmpStore.setDirectory(directory.toFile(), 150L);
+
+        Assertions.assertFalse(Files.exists(tmpF));
+        Assertions.assertTrue(Files.exists(tmpA));
+        Assertions.assertEquals(3L, tmpStore.countEvictions());
+        Assertions.assertEquals(100L, tmpStore.size());
+
+        tmpStore.clear();
+
+        Assertions.assertFalse(Files.exists(tmpA));
+        Assertions.assertEquals(4L, tmpStore.countEvictions());
+        Assertions.assertEquals(0L, tmpStore.size());
+        Assertions.assertTrue(Files.exists(tmpTemporary));
+        Assertions.assertTrue(Files.exists(tmpOther));
+    }
+
+    @Test
+    public void testKey() {
+
+        final String tmpKey = TaskStoreTest.key(TranslationTest.makeLP());
+
+        Assertions.assertEquals(64, tmpKey.length());
+        Assertions.assertTrue(tmpKey.matches("[0-9a-f]+"));
+
+        // The same model, built again
+        Assertions.assertEquals(tmpKey, TaskStoreTest.key(TranslationTest.makeLP()));
+
+        final ExpressionsBasedModel tmpCoefficient = TranslationTest.makeLP();
+        tmpCoefficient.getExpression("C1").set(0, 1.5);
+        Assertions.assertNotEquals(tmpKey, TaskStoreTest.key(tmpCoefficient));
+
+        final ExpressionsBasedModel tmpBound = TranslationTest.makeLP();
+        tmpBound.getVariable(0).upper(11);
+        Assertions.assertNotEquals(tmpKey, TaskStoreTest.key(tmpBound));
+
+        final ExpressionsBasedModel tmpWeight = TranslationTest.makeLP();
+        tmpWeight.getVariable(1).weight(3);
+        Assertions.assertNotEquals(tmpKey, TaskStoreTest.key(tmpWeight));
+
+        final ExpressionsBasedModel tmpInteger = TranslationTest.makeLP();
+        tmpInteger.getVariable(1).integer(true);
+        Assertions.assertNotEquals(tmpKey, TaskStoreTest.key(tmpInteger));
+    }
+
+}
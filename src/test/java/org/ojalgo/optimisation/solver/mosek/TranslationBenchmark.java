@@ -0,0 +1,85 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+
+/**
+ * Translating an {@link ExpressionsBasedModel} to MOSEK. With target STAND_IN the model is translated, with
+ * exactly the same calls, into a {@link RecordingBackend} - no native calls are made and that runs on machines
+ * without a MOSEK installation/licence. Run with {@link Benchmarks}.
+ *
+ * @author apete
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TranslationBenchmark {
+
+    public enum Target {
+        NATIVE, STAND_IN;
+    }
+
+    @Param({ "SPARSE_LP", "DENSE_QP", "SPARSE_MIP" })
+    public ModelKind kind;
+
+    @Param({ "100", "1000", "10000" })
+    public int size;
+
+    @Param({ "STAND_IN", "NATIVE" })
+    public Target target;
+
+    private ExpressionsBasedModel myModel;
+
+    @Setup
+    public void setup() {
+        myModel = kind.make(kind == ModelKind.DENSE_QP ? size / 10 : size);
+    }
+
+    @Benchmark
+    public Object translate() {
+        if (target == Target.NATIVE) {
+            final SolverMosek tmpSolver = SolverMosek.INTEGRATION.build(myModel);
+            tmpSolver.dispose();
+            return tmpSolver;
+        } else {
+            return RecordingBackend.translate(myModel);
+        }
+    }
+
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ojalgo.optimisation.Expression;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Variable;
+
+import mosek.Env.boundkey;
+import mosek.Env.objsense;
+import mosek.Env.variabletype;
+
+/**
+ * Translates small models into a {@link RecordingBackend} and checks what would have been passed to MOSEK -
+ * no native library or licence required.
+ *
+ * @author apete
+ */
+public class TranslationTest {
+
+    private static final double TOLERANCE = 1E-12;
+
+    /**
+     * min x + 2y s.t. C1: x + 3y &le; 10, C2: 2x + y &ge; 4, C3: x - y = 1 with 0 &le; x &le; 10, y &ge; 0
+     */
+    static ExpressionsBasedModel makeLP() {
+
+        final ExpressionsBasedModel retVal = new ExpressionsBasedModel();
+
+        final Variable tmpX = retVal.addVariable("X").lower(0).upper(10).weight(1);
+        final Variable tmpY = retVal.addVariable("Y").lower(0).weight(2);
+
+        final Expression tmpC1 = retVal.addExpression("C1").upper(10);
+        tmpC1.set(tmpX, 1);
+        tmpC1.set(tmpY, 3);
+
+        final Expression tmpC2 = retVal.addExpression("C2").lower(4);
+        tmpC2.set(tmpX, 2);
+        tmpC2.set(tmpY, 1);
+
+        final Expression tmpC3 = retVal.addExpression("C3").level(1);
+        tmpC3.set(tmpX, 1);
+        tmpC3.set(tmpY, -1);
+
+        return retVal;
+    }
+
+    private static void assertSameProblem(final RecordingBackend expected, final RecordingBackend actual) {
+
+        Assertions.assertEquals(expected.getnumvar(), actual.getnumvar());
+        Assertions.assertEquals(expected.getnumcon(), actual.getnumcon());
+
+        for (int j = 0; j < expected.getnumvar(); j++) {
+            Assertions.assertEquals(expected.getVariableKey(j), actual.getVariableKey(j));
+            Assertions.assertEquals(expected.getVariableLower(j), actual.getVariableLower(j), TOLERANCE);
+            Assertions.assertEquals(expected.getVariableUpper(j), actual.getVariableUpper(j), TOLERANCE);
+            Assertions.assertEquals(expected.getVariableType(j), actual.getVariableType(j));
+            Assertions.assertEquals(expected.getObjective(j), actual.getObjective(j), TOLERANCE);
+        }
+
+        for (int i = 0; i < expected.getnumcon(); i++) {
+            Assertions.assertEquals(expected.getConstraintKey(i), actual.getConstraintKey(i));
+            Assertions.assertEquals(expected.getConstraintLower(i), actual.getConstraintLower(i), TOLERANCE);
+            Assertions.assertEquals(expected.getConstraintUpper(i), actual.getConstraintUpper(i), TOLERANCE);
+            Assertions.assertEquals(expected.getRow(i), actual.getRow(i));
+        }
+
+        Assertions.assertEquals(expected.getSense(), actual.getSense());
+    }
+
+    /**
+     * The task row of the named constraint, when no rows are eliminated - the constraints are translated in
+     * the order {@link ExpressionsBasedModel#constraints()} returns them, which is not the order they were
+     * added.
+     */
+    private static int row(final ExpressionsBasedModel model, final String name) {
+        final List<Expression> tmpConstraints = model.constraints().collect(Collectors.toList());
+        for (int i = 0; i < tmpConstraints.size(); i++) {
+            if (tmpConstraints.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static RecordingBackend translate(final ExpressionsBasedModel model, final SolverMosek.Translation translation, final boolean eliminate) {
+        SolverMosek.INTEGRATION.setTranslation(translation);
+        return RecordingBackend.translate(model, eliminate);
+    }
+
+    @AfterEach
+    public void restoreTranslation() {
+        SolverMosek.INTEGRATION.setTranslation(SolverMosek.Translation.BULK);
+    }
+
+    /**
+     * The constraint matrix and the bounds are pushed with one slice call each (user-001)
+     */
+    @Test
+    public void testBulkLP() {
+
+        final ExpressionsBasedModel tmpModel = TranslationTest.makeLP();
+        final int tmpC1 = TranslationTest.row(tmpModel, "C1");
+        final int tmpC2 = TranslationTest.row(tmpModel, "C2");
+        final int tmpC3 = TranslationTest.row(tmpModel, "C3");
+
+        final RecordingBackend tmpBackend = TranslationTest.translate(tmpModel, SolverMosek.Translation.BULK, false);
+
+        Assertions.assertEquals(2, tmpBackend.getnumvar());
+        Assertions.assertEquals(3, tmpBackend.getnumcon());
+
+        Assertions.assertEquals(boundkey.ra, tmpBackend.getVariableKey(0));
+        Assertions.assertEquals(0.0, tmpBackend.getVariableLower(0), TOLERANCE);
+        Assertions.assertEquals(10.0, tmpBackend.getVariableUpper(0), TOLERANCE);
+        Assertions.assertEquals(boundkey.lo, tmpBackend.getVariableKey(1));
+        Assertions.assertEquals(0.0, tmpBackend.getVariableLower(1), TOLERANCE);
+
+        Assertions.assertEquals(boundkey.up, tmpBackend.getConstraintKey(tmpC1));
+        Assertions.assertEquals(10.0, tmpBackend.getConstraintUpper(tmpC1), TOLERANCE);
+        Assertions.assertEquals(boundkey.lo, tmpBackend.getConstraintKey(tmpC2));
+        Assertions.assertEquals(4.0, tmpBackend.getConstraintLower(tmpC2), TOLERANCE);
+        Assertions.assertEquals(boundkey.fx, tmpBackend.getConstraintKey(tmpC3));
+        Assertions.assertEquals(1.0, tmpBackend.getConstraintLower(tmpC3), TOLERANCE);
+        Assertions.assertEquals(1.0, tmpBackend.getConstraintUpper(tmpC3), TOLERANCE);
+
+        Assertions.assertEquals(6, tmpBackend.countNonzeros());
+        Assertions.assertEquals(1.0, tmpBackend.getCoefficient(tmpC1, 0), TOLERANCE);
+        Assertions.assertEquals(3.0, tmpBackend.getCoefficient(tmpC1, 1), TOLERANCE);
+        Assertions.assertEquals(2.0, tmpBackend.getCoefficient(tmpC2, 0), TOLERANCE);
+        Assertions.assertEquals(1.0, tmpBackend.getCoefficient(tmpC2, 1), TOLERANCE);
+        Assertions.assertEquals(1.0, tmpBackend.getCoefficient(tmpC3, 0), TOLERANCE);
+        Assertions.assertEquals(-1.0, tmpBackend.getCoefficient(tmpC3, 1), TOLERANCE);
+
+        Assertions.assertEquals(1.0, tmpBackend.getObjective(0), TOLERANCE);
+        Assertions.assertEquals(2.0, tmpBackend.getObjective(1), TOLERANCE);
+        Assertions.assertEquals(objsense.minimize, tmpBackend.getSense());
+
+        Assertions.assertEquals(1, tmpBackend.count("putvarboundslice"));
+        Assertions.assertEquals(1, tmpBackend.count("putarowslice"));
+        Assertions.assertEquals(1, tmpBackend.count("putconboundslice"));
+        Assertions.assertEquals(0, tmpBackend.count("putarow"));
+        Assertions.assertEquals(0, tmpBackend.count("putconbound"));
+        Assertions.assertEquals(0, tmpBackend.count("putvarbound"));
+        Assertions.assertEquals(0, tmpBackend.count("putvartypelist"));
+    }
+
+    /**
+     * Cache keys compare the sparsity patterns exactly, and a hit only pushes the values that differ (user-003)
+     */
+    @Test
+    public void testCacheKey() {
+
+        final ExpressionsBasedModel tmpModel = TranslationTest.makeLP();
+        final FreeVariables tmpColumns = FreeVariables.of(tmpModel);
+        final TaskCache.Key tmpKey = TaskCache.Key.of(tmpColumns, tmpModel.constraints().collect(Collectors.toList()), tmpModel.objective());
+        final ModelSnapshot tmpSnapshot = ModelSnapshot.of(tmpModel);
+
+        // Same structure, one changed coefficient
+        final ExpressionsBasedModel tmpChanged = TranslationTest.makeLP();
+        tmpChanged.getExpression("C2").set(tmpChanged.getVariable(0), 5);
+        final FreeVariables tmpChangedColumns = FreeVariables.of(tmpChanged);
+        final TaskCache.Key tmpChangedKey = TaskCache.Key.of(tmpChangedColumns, tmpChanged.constraints().collect(Collectors.toList()),
+                tmpChanged.objective());
+        Assertions.assertEquals(tmpKey, tmpChangedKey);
+        Assertions.assertEquals(tmpKey.hashCode(), tmpChangedKey.hashCode());
+
+        // Same counts and coefficients, but the second nonzero of C1 in another column
+        final ExpressionsBasedModel tmpMoved = new ExpressionsBasedModel();
+        final Variable tmpX = tmpMoved.addVariable("X").lower(0).upper(10).weight(1);
+        final Variable tmpY = tmpMoved.addVariable("Y").lower(0).weight(2);
+        final Variable tmpZ = tmpMoved.addVariable("Z").lower(0);
+        final Expression tmpC1 = tmpMoved.addExpression("C1").upper(10);
+        tmpC1.set(tmpX, 1);
+        tmpC1.set(tmpZ, 3);
+        final Expression tmpC2 = tmpMoved.addExpression("C2").lower(4);
+        tmpC2.set(tmpX, 2);
+        tmpC2.set(tmpY, 1);
+        final Expression tmpC3 = tmpMoved.addExpression("C3").level(1);
+        tmpC3.set(tmpX, 1);
+        tmpC3.set(tmpY, -1);
+        final ExpressionsBasedModel tmpWider = TranslationTest.makeLP();
+        tmpWider.addVariable("Z").lower(0);
+        Assertions.assertNotEquals(TaskCache.Key.of(FreeVariables.of(tmpWider), tmpWider.constraints().collect(Collectors.toList()), tmpWider.objective()),
+                TaskCache.Key.of(FreeVariables.of(tmpMoved), tmpMoved.constraints().collect(Collectors.toList()), tmpMoved.objective()));
+
+        final RecordingBackend tmpBackend = new RecordingBackend();
+        tmpSnapshot.putInto(tmpBackend);
+        final int tmpCallsBefore = tmpBackend.countCalls();
+
+        Assertions.assertEquals(1, ModelSnapshot.of(tmpChanged).putDifferences(tmpBackend, tmpSnapshot));
+        Assertions.assertEquals(tmpCallsBefore + 1, tmpBackend.countCalls());
+        Assertions.assertEquals(1, tmpBackend.count("putaij"));
+        Assertions.assertEquals(5.0, tmpBackend.getCoefficient(TranslationTest.row(tmpChanged, "C2"), 0), TOLERANCE);
+    }
+
+    /**
+     * Fixed variables are not columns - their contribution is moved to the row bounds, rows without free
+     * variables are dropped and rows with a single free variable become bounds (user-015)
+     */
+    @Test
+    public void testFixedVariables() {
+
+        final ExpressionsBasedModel tmpModel = new ExpressionsBasedModel();
+
+        final Variable tmpX = tmpModel.addVariable("X").lower(0).upper(10).weight(1);
+        final Variable tmpY = tmpModel.addVariable("Y").level(2).weight(1);
+        final Variable tmpZ = tmpModel.addVariable("Z").lower(0).weight(1);
+
+        final Expression tmpC1 = tmpModel.addExpression("C1").upper(10);
+        tmpC1.set(tmpX, 1);
+        tmpC1.set(tmpY, 3);
+        tmpC1.set(tmpZ, 1);
+
+        final Expression tmpC2 = tmpModel.addExpression("C2").lower(4);
+        tmpC2.set(tmpX, 2);
+        tmpC2.set(tmpY, 1);
+
+        final Expression tmpC3 = tmpModel.addExpression("C3").upper(9);
+        tmpC3.set(tmpY, 3);
+
+        final RecordingBackend tmpBackend = RecordingBackend.translate(tmpModel);
+
+        // X and Z
+        Assertions.assertEquals(2, tmpBackend.getnumvar());
+        // Only C1 - C2 is a bound on X and C3 has no free variables
+        Assertions.assertEquals(1, tmpBackend.getnumcon());
+
+        Assertions.assertEquals(boundkey.up, tmpBackend.getConstraintKey(0));
+        Assertions.assertEquals(10.0 - (3.0 * 2.0), tmpBackend.getConstraintUpper(0), TOLERANCE);
+        Assertions.assertEquals(2, tmpBackend.countNonzeros());
+        Assertions.assertEquals(1.0, tmpBackend.getCoefficient(0, 0), TOLERANCE);
+        Assertions.assertEquals(1.0, tmpBackend.getCoefficient(0, 1), TOLERANCE);
+
+        // 2x + 2 >= 4 => x >= 1
+        Assertions.assertEquals(boundkey.ra, tmpBackend.getVariableKey(0));
+        Assertions.assertEquals(1.0, tmpBackend.getVariableLower(0), TOLERANCE);
+        Assertions.assertEquals(10.0, tmpBackend.getVariableUpper(0), TOLERANCE);
+
+        // The constant contributed by Y is dropped
+        Assertions.assertEquals(1.0, tmpBackend.getObjective(0), TOLERANCE);
+        Assertions.assertEquals(1.0, tmpBackend.getObjective(1), TOLERANCE);
+    }
+
+    @Test
+    public void testMIP() {
+
+        final ExpressionsBasedModel tmpModel = TranslationTest.makeLP();
+        tmpModel.getVariable(1).integer(true);
+
+        final RecordingBackend tmpBackend = TranslationTest.translate(tmpModel, SolverMosek.Translation.BULK, false);
+
+        Assertions.assertEquals(variabletype.type_cont, tmpBackend.getVariableType(0));
+        Assertions.assertEquals(variabletype.type_int, tmpBackend.getVariableType(1));
+        Assertions.assertEquals(1, tmpBackend.count("putvartypelist"));
+        Assertions.assertEquals(0, tmpBackend.count("putvartype"));
+    }
+
+    /**
+     * Many constraints are extracted in parallel partitions, and then stitched together - the result must be
+     * the same as translating row by row (user-016)
+     */
+    @Test
+    public void testParallelPartitions() {
+
+        final ExpressionsBasedModel tmpModel = GeneratedModels.sparseLP(2 * ConstraintBlock.PARALLEL_THRESHOLD, 1_000, 0.005, 123L);
+
+        final RecordingBackend tmpRowByRow = TranslationTest.translate(tmpModel, SolverMosek.Translation.ROW_BY_ROW, false);
+        final RecordingBackend tmpBulk = TranslationTest.translate(tmpModel, SolverMosek.Translation.BULK, false);
+
+        TranslationTest.assertSameProblem(tmpRowByRow, tmpBulk);
+
+        Assertions.assertEquals(1, tmpBulk.count("putarowslice"));
+        Assertions.assertEquals(1, tmpBulk.count("putconboundslice"));
+        Assertions.assertEquals(tmpModel.constraints().count(), tmpRowByRow.count("putconbound"));
+    }
+
+    /**
+     * The quadratic terms are passed as lower triangular triplets with the diagonal doubled - MOSEK's
+     * 0.5x'Qx form (user-010)
+     */
+    @Test
+    public void testQP() {
+
+        final ExpressionsBasedModel tmpModel = TranslationTest.makeLP();
+        final Variable tmpX = tmpModel.getVariable(0);
+        final Variable tmpY = tmpModel.getVariable(1);
+
+        final Expression tmpRisk = tmpModel.addExpression("Risk").weight(1);
+        tmpRisk.set(tmpX, tmpX, 1);
+        tmpRisk.set(tmpX, tmpY, 1);
+        tmpRisk.set(tmpY, tmpY, 2);
+
+        final Expression tmpBall = tmpModel.addExpression("Ball").upper(4);
+        tmpBall.set(tmpX, tmpX, 1);
+        tmpBall.set(tmpY, tmpY, 1);
+
+        final int tmpBallRow = TranslationTest.row(tmpModel, "Ball");
+
+        final RecordingBackend tmpBackend = TranslationTest.translate(tmpModel, SolverMosek.Translation.BULK, false);
+
+        Assertions.assertEquals(2.0, tmpBackend.getQuadraticObjective(0, 0), TOLERANCE);
+        Assertions.assertEquals(1.0, tmpBackend.getQuadraticObjective(1, 0), TOLERANCE);
+        Assertions.assertEquals(0.0, tmpBackend.getQuadraticObjective(0, 1), TOLERANCE);
+        Assertions.assertEquals(4.0, tmpBackend.getQuadraticObjective(1, 1), TOLERANCE);
+        Assertions.assertEquals(1, tmpBackend.count("putqobj"));
+
+        // Risk has no limits and is not a constraint
+        Assertions.assertEquals(4, tmpBackend.getnumcon());
+        Assertions.assertEquals(2.0, tmpBackend.getQuadraticConstraint(tmpBallRow, 0, 0), TOLERANCE);
+        Assertions.assertEquals(2.0, tmpBackend.getQuadraticConstraint(tmpBallRow, 1, 1), TOLERANCE);
+        Assertions.assertEquals(0.0, tmpBackend.getQuadraticConstraint(tmpBallRow, 1, 0), TOLERANCE);
+        Assertions.assertEquals(boundkey.up, tmpBackend.getConstraintKey(tmpBallRow));
+        Assertions.assertEquals(4.0, tmpBackend.getConstraintUpper(tmpBallRow), TOLERANCE);
+        Assertions.assertEquals(1, tmpBackend.count("putqconk"));
+    }
+
+    /**
+     * Row by row gives the same problem as bulk, with one call per variable and constraint
+     */
+    @Test
+    public void testRowByRowLP() {
+
+        final ExpressionsBasedModel tmpModel = TranslationTest.makeLP();
+
+        final RecordingBackend tmpBulk = TranslationTest.translate(tmpModel, SolverMosek.Translation.BULK, false);
+        final RecordingBackend tmpRowByRow = TranslationTest.translate(tmpModel, SolverMosek.Translation.ROW_BY_ROW, false);
+
+        TranslationTest.assertSameProblem(tmpBulk, tmpRowByRow);
+
+        Assertions.assertEquals(3, tmpRowByRow.count("putarow"));
+        Assertions.assertEquals(3, tmpRowByRow.count("putconbound"));
+        Assertions.assertEquals(2, tmpRowByRow.count("putvarbound"));
+        Assertions.assertEquals(0, tmpRowByRow.count("putarowslice"));
+    }
+
+}
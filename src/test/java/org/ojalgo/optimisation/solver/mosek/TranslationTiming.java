@@ -0,0 +1,74 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import org.ojalgo.netio.BasicLogger;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.solver.mosek.SolverMosek.Translation;
+
+/**
+ * Compares the time it takes to build a MOSEK task using {@link Translation#ROW_BY_ROW} and
+ * {@link Translation#BULK}. Requires MOSEK to be installed, just as {@link ExampleMosek} does.
+ *
+ * @author apete
+ */
+public class TranslationTiming {
+
+    static final int NUMBER_OF_CONSTRAINTS = 200_000;
+    static final int NUMBER_OF_VARIABLES = 50_000;
+    static final int REPETITIONS = 5;
+
+    public static void main(final String[] args) {
+
+        final ExpressionsBasedModel tmpModel = GeneratedModels.sparseLP(NUMBER_OF_CONSTRAINTS, NUMBER_OF_VARIABLES, 0.0002, 123L);
+
+        // Warm up both paths before timing
+        TranslationTiming.time(tmpModel, Translation.ROW_BY_ROW);
+        TranslationTiming.time(tmpModel, Translation.BULK);
+
+        for (int r = 0; r < REPETITIONS; r++) {
+            final double tmpRowByRow = TranslationTiming.time(tmpModel, Translation.ROW_BY_ROW);
+            final double tmpBulk = TranslationTiming.time(tmpModel, Translation.BULK);
+            BasicLogger.debug("Row-by-row: {} ms, bulk: {} ms, ratio: {}", tmpRowByRow, tmpBulk, tmpRowByRow / tmpBulk);
+        }
+
+        SolverMosek.INTEGRATION.setTranslation(Translation.BULK);
+    }
+
+    static double time(final ExpressionsBasedModel model, final Translation translation) {
+
+        SolverMosek.INTEGRATION.setTranslation(translation);
+
+        final long tmpStart = System.nanoTime();
+        final SolverMosek tmpSolver = SolverMosek.INTEGRATION.build(model);
+        final long tmpStop = System.nanoTime();
+
+        tmpSolver.dispose();
+
+        return (tmpStop - tmpStart) / 1_000_000.0;
+    }
+
+    TranslationTiming() {
+        super();
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 1997-2021 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.optimisation.solver.mosek;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ojalgo.array.Primitive64Array;
+import org.ojalgo.optimisation.ExpressionsBasedModel;
+import org.ojalgo.optimisation.Optimisation;
+
+/**
+ * Pools of {@link WorkerPool#local(int, java.util.function.Function)} workers with stand-in solvers - the
+ * protocol, restarts and back-pressure without MOSEK.
+ *
+ * @author apete
+ */
+public class WorkerPoolTest {
+
+    private static final long WAIT = 30_000L;
+
+    /**
+     * A result with the solution [0, 1, 2...] and the number of variables as its value
+     */
+    static Optimisation.Result count(final WorkerProtocol.Request request) {
+
+        final int tmpNumberOfVariables = request.snapshot.countVariables();
+
+        final double[] tmpSolution = new double[tmpNumberOfVariables];
+        for (int j = 0; j < tmpNumberOfVariables; j++) {
+            tmpSolution[j] = j;
+        }
+
+        return new Optimisation.Result(Optimisation.State.OPTIMAL, tmpNumberOfVariables, Primitive64Array.wrap(tmpSolution));
+    }
+
+    static Optimisation.Result solve(final WorkerPool pool, final ExpressionsBasedModel model) {
+        return pool.getIntegration().build(model).solve(null);
+    }
+
+    @Test
+    public void testCrashedWorkerIsReplaced() {
+
+        final AtomicBoolean tmpCrashed = new AtomicBoolean();
+
+        try (WorkerPool tmpPool = WorkerPool.local(1, request -> {
+            if (tmpCrashed.compareAndSet(false, true)) {
+                // Not a RuntimeException - that would be reported back as an error, and the worker kept
+                throw new Error("Crash");
+            }
+            return WorkerPoolTest.count(request);
+        })) {
+
+            final Optimisation.Result tmpFailed = WorkerPoolTest.solve(tmpPool, TranslationTest.makeLP());
+
+            Assertions.assertEquals(Optimisation.State.FAILED, tmpFailed.getState());
+            Assertions.assertEquals(1L, tmpPool.countRestarts());
+
+            // The replacement worker solves
+            final Optimisation.Result tmpSolved = WorkerPoolTest.solve(tmpPool, TranslationTest.makeLP());
+
+            Assertions.assertEquals(Optimisation.State.OPTIMAL, tmpSolved.getState());
+            Assertions.assertEquals(1L, tmpPool.countRestarts());
+            Assertions.assertEquals(2L, tmpPool.countSolves());
+        }
+    }
+
+    @Test
+    public void testRejectedWhenNoWaiting() throws Exception {
+
+        final CountDownLatch tmpStarted = new CountDownLatch(1);
+        final CountDownLatch tmpRelease = new CountDownLatch(1);
+
+        final ExecutorService tmpExecutor = Executors.newSingleThreadExecutor();
+
+        try (WorkerPool tmpPool = WorkerPool.local(1, request -> {
+            tmpStarted.countDown();
+            try {
+                tmpRelease.await();
+            } catch (final InterruptedException cause) {
+                Thread.currentThread().interrupt();
+            }
+            return WorkerPoolTest.count(request);
+        })) {
+
+            tmpPool.setQueueLimits(0, 0L);
+
+            final Future<Optimisation.Result> tmpBusy = tmpExecutor.submit(() -> WorkerPoolTest.solve(tmpPool, TranslationTest.makeLP()));
+            Assertions.assertTrue(tmpStarted.await(WAIT, TimeUnit.MILLISECONDS));
+
+            // The only worker is busy, and nothing may wait for it
+            Assertions.assertThrows(RejectedExecutionException.class, () -> WorkerPoolTest.solve(tmpPool, TranslationTest.makeLP()));
+            Assertions.assertEquals(1L, tmpPool.countRejections());
+
+            tmpRelease.countDown();
+            Assertions.assertEquals(Optimisation.State.OPTIMAL, tmpBusy.get(WAIT, TimeUnit.MILLISECONDS).getState());
+
+        } finally {
+            tmpRelease.countDown();
+            tmpExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+
+        final AtomicReference<WorkerProtocol.Request> tmpReceived = new AtomicReference<>();
+
+        try (WorkerPool tmpPool = WorkerPool.local(2, request -> {
+            tmpReceived.set(request);
+            return WorkerPoolTest.count(request);
+        })) {
+
+            final ExpressionsBasedModel tmpModel = TranslationTest.makeLP();
+            tmpModel.getVariable(1).integer(true);
+            tmpModel.options.time_abort = 12_345L;
+
+            final Optimisation.Result tmpResult = WorkerPoolTest.solve(tmpPool, tmpModel);
+
+            final WorkerProtocol.Request tmpRequest = tmpReceived.get();
+            Assertions.assertNotNull(tmpRequest);
+            Assertions.assertEquals(2, tmpRequest.snapshot.countVariables());
+            Assertions.assertArrayEquals(new int[] { 1 }, tmpRequest.integers);
+            Assertions.assertEquals(12_345L, tmpRequest.timeLimit);
+
+            Assertions.assertEquals(Optimisation.State.OPTIMAL, tmpResult.getState());
+            Assertions.assertEquals(2.0, tmpResult.getValue());
+            Assertions.assertEquals(2L, tmpResult.count());
+            Assertions.assertEquals(0.0, tmpResult.doubleValue(0));
+            Assertions.assertEquals(1.0, tmpResult.doubleValue(1));
+
+            Assertions.assertEquals(1L, tmpPool.countSolves());
+            Assertions.assertEquals(0L, tmpPool.countRestarts());
+            Assertions.assertEquals(0L, tmpPool.countRejections());
+        }
+    }
+
+}